@@ -0,0 +1,137 @@
+/**
+ * The CrossoverBenchmark class times the closed-form capacity 2 solver against
+ * Astar on random rosters of growing size, to show from which size searching
+ * stops being worth it.
+ * 
+ * Astar runs with pruned successors, and only while a single search takes
+ * under a second and generates at most ASTAR_NODE_BUDGET nodes; the first search
+ * over budget, or out of memory, is reported and stops Astar for the larger
+ * sizes. Past 64 people a roster no longer fits a BridgeState, so only the cost
+ * is worked out.
+ * 
+ * @author Kyle McPherson
+ */
+
+package bench;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cm3038.search.Path;
+import btp.*;
+
+public class CrossoverBenchmark 
+{
+	private static final long ASTAR_LIMIT_NANOS = 1000000000L;
+	// Enough nodes for a second of searching, and well inside the default heap
+	private static final int ASTAR_NODE_BUDGET = 2000000;
+	// Every size up to 16, then every 8 up to 64, then doubling up to 10000
+	private static final int[] SIZES = {4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 24, 32, 40, 48, 56, 64, 128, 256, 512, 1024, 2048, 4096, 8192, 10000};
+	
+	/**
+	 * Thrown by the heuristic of a search that has generated too many nodes.
+	 */
+	private static final class OverBudget extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+		
+		OverBudget()
+		{
+			super(null, null, false, false);
+		}
+	}
+	
+	public static void main(String[] args)
+	{
+		Random random = new Random(3038);
+		boolean runAstar = true;
+		int crossover = -1;
+		
+		System.out.println(String.format("%8s %14s %14s %14s %12s", "people", "closed-form us", "path us", "astar us", "astar nodes"));
+		
+		for(int n : SIZES)
+		{
+			int[] times = new int[n];
+			List<Person> westBank = new ArrayList<Person>();
+			for(int i=0; i<n; i++)
+			{
+				times[i] = 1 + random.nextInt(100);
+				westBank.add(new Person(times[i], "P" + i));
+			}
+			
+			double costMicros = time(() -> CapacityTwoSolver.cost(times));
+			String pathMicros = "-", astarMicros = "-", astarNodes = "-";
+			
+			if(n <= Roster.MAX_PEOPLE)
+			{
+				ProblemSpec spec = new ProblemSpec(westBank, new ArrayList<Person>(), 2, TorchDirection.WEST, true);
+				BridgeState initialState = spec.getInitialState();
+				BridgeState goalState = spec.getGoalState();
+				
+				double micros = time(() -> CapacityTwoSolver.solve(initialState, goalState));
+				pathMicros = String.format("%.2f", micros);
+				
+				if(runAstar)
+				{
+					// The heuristic is called once for every node generated, so it counts them
+					Heuristic estimator = new Astar(initialState, goalState).getHeuristic();
+					int[] generated = {0};
+					Astar astar = new Astar(initialState, goalState, (state, goal) ->
+					{
+						if(++generated[0] > ASTAR_NODE_BUDGET)
+							throw new OverBudget();
+						return estimator.estimate(state, goal);
+					});
+					
+					long started = System.nanoTime();
+					Path path = null;
+					try
+					{
+						path = astar.search();
+					}
+					catch(OverBudget | OutOfMemoryError e)
+					{
+						astarMicros = e instanceof OverBudget ? String.format("> %d nodes", ASTAR_NODE_BUDGET) : "out of memory";
+						runAstar = false;
+					}
+					long elapsed = System.nanoTime() - started;
+					
+					if(path != null)
+					{
+						if(path.cost != CapacityTwoSolver.cost(times))
+							throw new IllegalStateException(String.format("Costs differ for %d people: %s and %d", n, path.cost, CapacityTwoSolver.cost(times)));
+						
+						astarMicros = String.format("%.2f", elapsed / 1000.0);
+						astarNodes = String.valueOf(astar.nodeExpanded);
+						
+						if(crossover < 0 && elapsed / 1000.0 > micros)
+							crossover = n;
+						runAstar = elapsed < ASTAR_LIMIT_NANOS;
+					}
+				}
+			}
+			
+			System.out.println(String.format("%8d %14.2f %14s %14s %12s", n, costMicros, pathMicros, astarMicros, astarNodes));
+		}
+		
+		System.out.println(String.format("\nAstar is slower than building the closed-form path from %d people", crossover));
+	}
+	
+	/**
+	 * Time a task, repeating it to warm it up and averaging over the repeats.
+	 * 
+	 * @param task The task to time.
+	 * @return The mean time of one run in microseconds.
+	 */
+	private static double time(Runnable task)
+	{
+		for(int i=0; i<200; i++)
+			task.run();
+		
+		int repeats = 1000;
+		long started = System.nanoTime();
+		for(int i=0; i<repeats; i++)
+			task.run();
+		return (System.nanoTime() - started) / 1000.0 / repeats;
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * The ParallelBenchmark class times the parallel search on 1, 2, 4, 8, 16 and
+ * 32 threads against Astar, on large random rosters that take Astar a while to
+ * solve. Everyone starts on one bank and successors are not pruned, which gives
+ * the hardest searches for their size. Each search is run a few times and the
+ * fastest run is kept, so the numbers are not thrown off by warm-up or other
+ * work on the machine.
+ *
+ * A speedup is only possible up to the number of processors available, which
+ * is printed first.
+ *
+ * @author Kyle McPherson
+ */
+
+package bench;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import cm3038.search.Path;
+import btp.*;
+
+public class ParallelBenchmark
+{
+	private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+	private static final int REPEATS = 3;
+
+	public static void main(String[] args)
+	{
+		System.out.println(String.format("Processors: %d\n", Runtime.getRuntime().availableProcessors()));
+
+		Random random = new Random(3038);
+		for(int people : new int[] {14, 15, 16})
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			for(int i=0; i<people; i++)
+				westBank.add(new Person(1 + random.nextInt(100), "P" + i));
+			ProblemSpec spec = new ProblemSpec(westBank, new ArrayList<Person>(), 2, TorchDirection.WEST, false);
+
+			Astar astar = new Astar(spec.getInitialState(), spec.getGoalState());
+			double sequential = time(() -> new Astar(spec.getInitialState(), spec.getGoalState()));
+			Path expected = astar.search();
+
+			System.out.println(String.format("-- %d PEOPLE, CAPACITY 2 --", people));
+			System.out.println(String.format("%8s %12s %10s %12s", "threads", "ms", "speedup", "expanded"));
+			System.out.println(String.format("%8s %12.1f %10s %12d", "Astar", sequential, "-", astar.nodeExpanded));
+
+			double single = 0;
+			for(int threads : THREADS)
+			{
+				ParallelAstar parallel = new ParallelAstar(spec.getInitialState(), spec.getGoalState(), threads);
+				Path path = parallel.search();
+				if(path.cost != expected.cost)
+					throw new IllegalStateException(String.format("Costs differ on %d threads: %s and %s", threads, path.cost, expected.cost));
+
+				double millis = time(() -> new ParallelAstar(spec.getInitialState(), spec.getGoalState(), threads));
+				if(threads == 1)
+					single = millis;
+				System.out.println(String.format("%8d %12.1f %10.2f %12d", threads, millis, single / millis, parallel.nodeExpanded));
+			}
+			System.out.println();
+		}
+	}
+
+	/**
+	 * Time a search, keeping the fastest of a few runs.
+	 *
+	 * @param search Creates the search to run.
+	 * @return The fastest time in milliseconds.
+	 */
+	private static double time(Supplier<Astar> search)
+	{
+		long fastest = Long.MAX_VALUE;
+		for(int i=0; i<REPEATS; i++)
+		{
+			Astar problem = search.get();
+			long started = System.nanoTime();
+			problem.search();
+			fastest = Math.min(fastest, System.nanoTime() - started);
+		}
+		return fastest / 1e6;
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * The HeuristicBenchmark class measures the cost of estimating one state with
+ * each heuristic Astar can use, over a fixed sample of states a search would
+ * meet.
+ *
+ * @author Kyle McPherson
+ */
+
+package bench.jmh;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import btp.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HeuristicBenchmark
+{
+	private static final int SAMPLE = 1024;
+
+	@Param({"basic", "advanced", "random"})
+	public String distribution;
+
+	@Param({"6", "12", "24", "48"})
+	public int people;
+
+	@Param({"2", "3"})
+	public int capacity;
+
+	@Param({"default", "trip-count", "slowest-crossing", "torch-side"})
+	public String heuristic;
+
+	private Astar astar;
+	private BridgeState[] states;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		ProblemSpec spec = Workload.problem(distribution, people, capacity, false);
+		states = Workload.states(spec, SAMPLE);
+
+		switch(heuristic)
+		{
+			case "default": astar = new Astar(spec.getInitialState(), spec.getGoalState()); break;
+			case "trip-count": astar = new Astar(spec.getInitialState(), spec.getGoalState(), new TripCountHeuristic()); break;
+			case "slowest-crossing": astar = new Astar(spec.getInitialState(), spec.getGoalState(), new SlowestCrossingHeuristic()); break;
+			case "torch-side": astar = new Astar(spec.getInitialState(), spec.getGoalState(), new TorchSideHeuristic()); break;
+			default: throw new IllegalArgumentException(String.format("Unknown heuristic %s", heuristic));
+		}
+	}
+
+	@Benchmark
+	public double heuristic()
+	{
+		next = (next + 1) & (SAMPLE - 1);
+		return astar.heuristic(states[next]);
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * The SearchBenchmark class measures a whole Astar search, from building the
+ * first node to returning the path. A new Astar is made for every call so no
+ * work carries over between calls.
+ *
+ * The rosters are smaller than in the other benchmarks, since the number of
+ * states grows exponentially with the number of people.
+ *
+ * @author Kyle McPherson
+ */
+
+package bench.jmh;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import cm3038.search.Path;
+import btp.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SearchBenchmark
+{
+	@Param({"basic", "advanced", "random"})
+	public String distribution;
+
+	@Param({"4", "6", "8", "10"})
+	public int people;
+
+	@Param({"2", "3"})
+	public int capacity;
+
+	@Param({"false", "true"})
+	public boolean pruned;
+
+	private ProblemSpec spec;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		spec = Workload.problem(distribution, people, capacity, pruned);
+	}
+
+	@Benchmark
+	public Path search()
+	{
+		return new Astar(spec.getInitialState(), spec.getGoalState()).search();
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * The StateBenchmark class measures the operations a search performs on every
+ * node: generating the successors of a state, applying an action, and hashing
+ * and comparing states in the visited map. Each call works on the next of a
+ * fixed sample of states, so the branch predictor cannot learn one state.
+ *
+ * Run with -prof gc to see the bytes allocated per operation.
+ *
+ * @author Kyle McPherson
+ */
+
+package bench.jmh;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cm3038.search.ActionStatePair;
+import btp.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StateBenchmark
+{
+	private static final int SAMPLE = 1024;
+
+	@Param({"basic", "advanced", "random"})
+	public String distribution;
+
+	@Param({"6", "12", "24", "48"})
+	public int people;
+
+	@Param({"2", "3", "4"})
+	public int capacity;
+
+	@Param({"false", "true"})
+	public boolean pruned;
+
+	private BridgeState[] states, copies;
+	private BridgeAction[] actions;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		ProblemSpec spec = Workload.problem(distribution, people, capacity, pruned);
+		states = Workload.states(spec, SAMPLE);
+		copies = Workload.states(spec, SAMPLE);
+		actions = new BridgeAction[SAMPLE];
+
+		for(int i=0; i<SAMPLE; i++)
+		{
+			List<ActionStatePair> children = states[i].successor();
+			actions[i] = children.isEmpty() ? null : (BridgeAction) children.get(i % children.size()).action;
+		}
+	}
+
+	@Benchmark
+	public List<ActionStatePair> successor()
+	{
+		return states[next()].successor();
+	}
+
+	@Benchmark
+	public void nextState(Blackhole blackhole)
+	{
+		int i = next();
+		if(actions[i] != null)
+			blackhole.consume(states[i].nextState(actions[i]));
+	}
+
+	@Benchmark
+	public int hashCodeOf()
+	{
+		return states[next()].hashCode();
+	}
+
+	@Benchmark
+	public boolean equalsCopy()
+	{
+		int i = next();
+		return states[i].equals(copies[i]);
+	}
+
+	@Benchmark
+	public boolean equalsOther()
+	{
+		int i = next();
+		return states[i].equals(copies[(i + 1) & (SAMPLE - 1)]);
+	}
+
+	/**
+	 * Move on to the next state of the sample.
+	 */
+	private int next()
+	{
+		next = (next + 1) & (SAMPLE - 1);
+		return next;
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * The Workload class builds the problems the benchmarks run on, so that every
+ * benchmark with the same parameters sees exactly the same rosters and states.
+ *
+ * basic    - everyone starts on the western bank with the torch, as in the basic problem.
+ * advanced - people start on both banks and swap sides, as in the advanced problem.
+ * random   - people start on random banks with the torch on a random bank, and
+ *            swap sides.
+ *
+ * @author Kyle McPherson
+ */
+
+package bench.jmh;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cm3038.search.ActionStatePair;
+import btp.*;
+
+final class Workload
+{
+	private static final long SEED = 3038;
+
+	private Workload() {}
+
+	/**
+	 * Build a problem with random crossing times.
+	 *
+	 * @param distribution The way people are spread over the banks: basic, advanced or random.
+	 * @param people       The number of people.
+	 * @param capacity     The capacity of the bridge.
+	 * @param pruned       true to prune successors when everyone starts on one bank.
+	 * @return The problem.
+	 */
+	static ProblemSpec problem(String distribution, int people, int capacity, boolean pruned)
+	{
+		Random random = new Random(SEED + people * 31 + capacity);
+		List<Person> westBank = new ArrayList<Person>();
+		List<Person> eastBank = new ArrayList<Person>();
+		TorchDirection torch = TorchDirection.WEST;
+
+		for(int i=0; i<people; i++)
+		{
+			Person person = new Person(1 + random.nextInt(100), "P" + i);
+			switch(distribution)
+			{
+				case "basic": westBank.add(person); break;
+				case "advanced": (i % 3 == 2 ? eastBank : westBank).add(person); break;
+				case "random": (random.nextBoolean() ? eastBank : westBank).add(person); break;
+				default: throw new IllegalArgumentException(String.format("Unknown distribution %s", distribution));
+			}
+		}
+
+		if(distribution.equals("random") && random.nextBoolean())
+			torch = TorchDirection.EAST;
+		return new ProblemSpec(westBank, eastBank, capacity, torch, pruned);
+	}
+
+	/**
+	 * Sample states a search would meet by taking random walks from the initial state
+	 * of a problem.
+	 *
+	 * @param spec  The problem.
+	 * @param count The number of states to sample.
+	 * @return The states.
+	 */
+	static BridgeState[] states(ProblemSpec spec, int count)
+	{
+		Random random = new Random(SEED);
+		BridgeState[] states = new BridgeState[count];
+		BridgeState state = spec.getInitialState();
+
+		for(int i=0; i<count; i++)
+		{
+			List<ActionStatePair> children = state.successor();
+			if(children.isEmpty() || random.nextInt(4 * spec.getRoster().size()) == 0)
+				state = spec.getInitialState();
+			else
+				state = (BridgeState) children.get(random.nextInt(children.size())).state;
+			states[i] = state;
+		}
+		return states;
+	}
+}
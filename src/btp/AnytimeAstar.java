@@ -0,0 +1,251 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cm3038.search.*;
+
+public class AnytimeAstar extends Astar
+{
+	private final List<SolutionListener> listeners = new ArrayList<>();
+
+	private double weight, weightStep = 0.5;
+	private long timeBudget;
+	private int nodeBudget;
+
+	private double bound = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Create an anytime astar object using a start and goal state and a starting weight,
+	 * with the heuristic Astar uses.
+	 *
+	 * @param start  The initial state.
+	 * @param goal   The goal state.
+	 * @param weight The weight the heuristic starts with, at least 1.
+	 */
+	public AnytimeAstar(State start, State goal, double weight)
+	{
+		super(start, goal);
+		this.weight = checkWeight(weight);
+	}
+
+	/**
+	 * Create an anytime astar object using a start and goal state, a heuristic and a
+	 * starting weight.
+	 *
+	 * @param start     The initial state.
+	 * @param goal      The goal state.
+	 * @param heuristic The heuristic used to estimate the cost from a state to the goal.
+	 * @param weight    The weight the heuristic starts with, at least 1.
+	 */
+	public AnytimeAstar(State start, State goal, Heuristic heuristic, double weight)
+	{
+		super(start, goal, heuristic);
+		this.weight = checkWeight(weight);
+	}
+
+	/**
+	 * Search for a path to the goal state, improving on it until the budget runs out.
+	 *
+	 * Nodes are ordered on f = g + w * h. With a weight over 1 the search heads for the
+	 * goal greedily and finds a first solution quickly, but not always the cheapest. Each
+	 * time a cheaper solution is found it is handed to the listeners, the weight is lowered
+	 * and the open list is put back in order, keeping everything searched so far. Nodes
+	 * whose unweighted f-cost is no lower than the best solution are dropped, since they
+	 * cannot lead to a cheaper one.
+	 *
+	 * The best solution costs at most its cost divided by the lowest unweighted f-cost left
+	 * on the open list more than the cheapest, and once the open list is empty it is the
+	 * cheapest. The search stops there or when the time or node budget runs out.
+	 *
+	 * @return The best path found, or null if none was found within the budget.
+	 */
+	@Override
+	public Path search()
+	{
+		long deadline = timeBudget > 0 ? System.nanoTime() + timeBudget : Long.MAX_VALUE;
+		Map<State, SearchNode> visited = new HashMap<>(1 << 12);
+		OpenList open = new OpenList(1 << 12);
+		Crossings crossings = new Crossings();
+
+		SearchNode start = new SearchNode(startState, null, null, 0, heuristic(startState));
+		start.f = key(start);
+		open.add(start);
+		visited.put(startState, start);
+		nodeVisited++;
+
+		Path best = null;
+		double bestCost = Double.POSITIVE_INFINITY;
+
+		for(int iteration=0; !open.isEmpty(); iteration++)
+		{
+			// The clock is only read every so often, as it is slow next to an expansion
+			if((nodeBudget > 0 && nodeExpanded >= nodeBudget) || ((iteration & 63) == 0 && System.nanoTime() >= deadline))
+				break;
+
+			SearchNode node = open.poll();
+			if(node.g + node.h >= bestCost)
+				continue;
+
+			if(isGoal(node.state))
+			{
+				best = constructPath(node);
+				bestCost = node.g;
+
+				bound = bound(bestCost, open);
+				for(SolutionListener listener : listeners)
+					listener.improved(best, bound);
+
+				weight = Math.max(1, weight - weightStep);
+				open.rekey(this::key);
+				continue;
+			}
+
+			node.closed = true;
+			nodeExpanded++;
+
+			BridgeState state = (BridgeState) node.state;
+			TorchDirection direction = BridgeState.switchTorchLocation(state.getTorchLocation());
+			crossings.reset(state);
+			while(crossings.next())
+			{
+				long group = crossings.group();
+				BridgeState child = state.nextState(group);
+				double g = node.g + state.getRoster().slowest(group);
+				nodeVisited++;
+
+				SearchNode existing = visited.get(child);
+				if(existing == null)
+				{
+					SearchNode created = new SearchNode(child, node, new BridgeAction(state.getRoster(), group, direction), g, heuristic(child));
+					visited.put(child, created);
+					if(created.g + created.h < bestCost)
+					{
+						created.f = key(created);
+						open.add(created);
+					}
+				}
+				else if(g < existing.g)
+				{
+					existing.reroute(node, new BridgeAction(state.getRoster(), group, direction), g);
+					existing.f = key(existing);
+					if(existing.isOpen())
+						open.decreaseKey(existing);
+					else if(existing.g + existing.h < bestCost)
+					{
+						existing.closed = false;
+						open.add(existing);
+					}
+				}
+			}
+		}
+
+		// The search since the last solution may have tightened the bound, and if nothing
+		// left could be cheaper the listeners are told the best solution is the cheapest
+		if(best != null && bound(bestCost, open) < bound)
+		{
+			bound = bound(bestCost, open);
+			if(bound == 1)
+				for(SolutionListener listener : listeners)
+					listener.improved(best, bound);
+		}
+		return best;
+	}
+
+	/**
+	 * Work out how far from the cheapest a solution can be at most, from the lowest
+	 * unweighted f-cost on the open list. The heuristic never overestimates, so no
+	 * solution through the open list can cost less than that.
+	 */
+	private static double bound(double cost, OpenList open)
+	{
+		double lowest = Math.min(open.minimum(n -> n.g + n.h), cost);
+		if(cost == 0)
+			return 1;
+		return lowest > 0 ? cost / lowest : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Return the weighted f-cost using f(n) = g(n) + w * h(n).
+	 */
+	@Override
+	public double evaluation(Node node)
+	{
+		return node.getCost() + weight * heuristic(node.state);
+	}
+
+	/**
+	 * The weighted f-cost of a node from its cached costs.
+	 */
+	private double key(SearchNode node)
+	{
+		return node.g + weight * node.h;
+	}
+
+	/**
+	 * Add a listener to be told about each cheaper solution as it is found.
+	 * @param listener The listener.
+	 */
+	public void addListener(SolutionListener listener)
+	{
+		listeners.add(listener);
+	}
+
+	/**
+	 * Set the largest time the search can run for.
+	 * @param nanos The time in nanoseconds, or 0 for no limit.
+	 */
+	public void setTimeBudget(long nanos)
+	{
+		this.timeBudget = nanos;
+	}
+
+	/**
+	 * Set the largest number of nodes the search can expand.
+	 * @param nodes The number of nodes, or 0 for no limit.
+	 */
+	public void setNodeBudget(int nodes)
+	{
+		this.nodeBudget = nodes;
+	}
+
+	/**
+	 * Set how much the weight is lowered by after each solution.
+	 * @param step The amount taken off the weight, down to 1.
+	 */
+	public void setWeightStep(double step)
+	{
+		this.weightStep = step;
+	}
+
+	/**
+	 * Get the weight the heuristic currently has.
+	 * @return The weight.
+	 */
+	public double getWeight()
+	{
+		return this.weight;
+	}
+
+	/**
+	 * Get how far from the cheapest the best solution found can be at most.
+	 * @return The bound as a factor, 1 if the solution is the cheapest, or infinity if
+	 *         no solution has been found.
+	 */
+	public double getBound()
+	{
+		return this.bound;
+	}
+
+	private static double checkWeight(double weight)
+	{
+		if(!(weight >= 1))
+			throw new IllegalArgumentException(String.format("The weight must be at least 1, got %s", weight));
+		return weight;
+	}
+}
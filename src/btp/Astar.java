@@ -3,21 +3,153 @@
  */
 
 package btp;
-import java.util.Set;
+import java.util.HashMap;
+import java.util.Map;
 
 import cm3038.search.*;
 import cm3038.search.informed.BestFirstSearchProblem;
 
 public class Astar extends BestFirstSearchProblem
 {
+	// The number of nodes taken off the open list and expanded
+	public int nodeExpanded;
+	
+	private final Heuristic estimator;
+	
+	// Records how the search went, or null to record nothing
+	private SearchMetrics metrics;
+	
 	/**
 	 * Create an astar object using a start and goal state.
+	 * 
+	 * The states are estimated with the larger of the trip-count and slowest-crossing
+	 * heuristics.
+	 * 
 	 * @param start The initial state.
 	 * @param goal  The goal state.
 	 */
 	public Astar(State start, State goal) 
+	{
+		this(start, goal, new MaxHeuristic(new TripCountHeuristic(), new SlowestCrossingHeuristic()));
+	}
+	
+	/**
+	 * Create an astar object using a start and goal state and a heuristic.
+	 * 
+	 * @param start     The initial state.
+	 * @param goal      The goal state.
+	 * @param heuristic The heuristic used to estimate the cost from a state to the goal.
+	 */
+	public Astar(State start, State goal, Heuristic heuristic) 
 	{
 		super(start, goal);
+		this.estimator = heuristic;
+	}
+	
+	/**
+	 * Search for the cheapest path from the start state to the goal state.
+	 * 
+	 * The fringe is a binary heap keyed on the f-cost cached in each node, so adding a
+	 * node or lowering its cost is O(log n) instead of a scan along a list. Expanded
+	 * nodes are marked closed and are only re-opened if a cheaper path to them is found,
+	 * which keeps the result optimal even if the heuristic is not consistent.
+	 * 
+	 * Children are generated straight from the masks of the groups that can cross, and
+	 * an action is only built for a child that is added to or improves the open list.
+	 * 
+	 * When metrics are set, every step is recorded in them. Each record sits behind a
+	 * check that the metrics are set, so nothing else is done when they are not.
+	 * 
+	 * @return The cheapest path to the goal, or null if the goal cannot be reached.
+	 */
+	@Override
+	public Path search()
+	{
+		if(metrics == null)
+			return search(null);
+		
+		metrics.startSearch();
+		Path path = search(metrics);
+		metrics.endSearch(path);
+		return path;
+	}
+	
+	/**
+	 * Search for the cheapest path, recording the steps in the metrics if there are any.
+	 */
+	private Path search(SearchMetrics metrics)
+	{
+		Map<State, SearchNode> visited = new HashMap<>(1 << 12);
+		OpenList open = new OpenList(1 << 12);
+		Crossings crossings = new Crossings();
+		
+		SearchNode start = new SearchNode(startState, null, null, 0, heuristic(startState));
+		open.add(start);
+		visited.put(startState, start);
+		nodeVisited++;
+		
+		while(!open.isEmpty())
+		{
+			if(metrics != null)
+				metrics.openSize(open.size());
+			SearchNode node = open.poll();
+			
+			if(isGoal(node.state))
+				return constructPath(node);
+			
+			node.closed = true;
+			nodeExpanded++;
+			
+			long started = 0, heuristicBefore = 0;
+			int visitedBefore = nodeVisited;
+			if(metrics != null)
+			{
+				metrics.expanded++;
+				heuristicBefore = metrics.heuristicNanos;
+				started = System.nanoTime();
+			}
+			
+			BridgeState state = (BridgeState) node.state;
+			TorchDirection direction = BridgeState.switchTorchLocation(state.getTorchLocation());
+			crossings.reset(state);
+			while(crossings.next())
+			{
+				long group = crossings.group();
+				BridgeState child = state.nextState(group);
+				double g = node.g + state.getRoster().slowest(group);
+				nodeVisited++;
+				
+				// The action is only built for a child that is kept
+				SearchNode existing = visited.get(child);
+				if(existing == null)
+				{
+					SearchNode created = new SearchNode(child, node, new BridgeAction(state.getRoster(), group, direction), g, heuristic(child));
+					open.add(created);
+					visited.put(child, created);
+				}
+				else if(g < existing.g)
+				{
+					existing.reroute(node, new BridgeAction(state.getRoster(), group, direction), g);
+					if(existing.isOpen())
+						open.decreaseKey(existing);
+					else
+					{
+						existing.closed = false;
+						open.add(existing);
+					}
+				}
+				else if(metrics != null)
+					metrics.duplicates++;
+			}
+			
+			// The time spent on the heuristic is counted on its own
+			if(metrics != null)
+			{
+				metrics.generated += nodeVisited - visitedBefore;
+				metrics.successorNanos += System.nanoTime() - started - (metrics.heuristicNanos - heuristicBefore);
+			}
+		}
+		return null;
 	}
 
 	/**
@@ -40,17 +172,57 @@ public class Astar extends BestFirstSearchProblem
 	 */
 	public double heuristic(State currentState)
 	{
-		BridgeState state = (BridgeState) currentState;
-		
-		Set<Person> people = state.getTorchLocation() == TorchDirection.WEST ? state.getWest() : state.getEast();
-		
-		int min = people.stream().min(RunProblem.comparator).get().getTime();
-		int max = people.stream().max(RunProblem.comparator).get().getTime();
-		
-		if(state.getTorchLocation() == TorchDirection.EAST && !RunProblem.getAdvancedStatus())
-			return max;
-		return min;
+		return heuristic(currentState, metrics);
+	}
+	
+	/**
+	 * Estimate how far a state is from the goal, recording the evaluation in a set of
+	 * metrics. A search running on several threads gives each thread its own metrics.
+	 * 
+	 * @param currentState The current state of the problem
+	 * @param metrics      The metrics to record in, or null to record nothing.
+	 * @return A double value which holds the estimated cost of the current state to the goal.
+	 */
+	double heuristic(State currentState, SearchMetrics metrics)
+	{
+		if(metrics == null)
+			return estimator.estimate((BridgeState) currentState, (BridgeState) this.goalState);
 		
+		long started = System.nanoTime();
+		double estimate = estimator.estimate((BridgeState) currentState, (BridgeState) this.goalState);
+		metrics.heuristicNanos += System.nanoTime() - started;
+		metrics.heuristicCalls++;
+		return estimate;
+	}
+	
+	/**
+	 * Get the heuristic used to estimate the cost from a state to the goal.
+	 * @return The heuristic.
+	 */
+	public Heuristic getHeuristic()
+	{
+		return this.estimator;
+	}
+	
+	/**
+	 * Record how the search goes in a set of metrics. The heuristic evaluations are
+	 * recorded by every search built on Astar, and the rest by Astar's own search.
+	 * ParallelAstar records each thread's evaluations apart and adds them in once its
+	 * threads are done.
+	 * @param metrics The metrics to record in, or null to record nothing (the default).
+	 */
+	public void setMetrics(SearchMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Get the metrics the search is recorded in.
+	 * @return The metrics, or null if nothing is recorded.
+	 */
+	public SearchMetrics getMetrics()
+	{
+		return this.metrics;
 	}
 
 	/**
@@ -0,0 +1,102 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import cm3038.search.Path;
+
+public final class BatchResult
+{
+	private final int index;
+	private final ProblemSpec spec;
+	private final Path path;
+	private final int nodes;
+	private final long nanos;
+	private final Throwable error;
+
+	/**
+	 * Create the result of solving one problem of a batch.
+	 *
+	 * @param index The position of the problem in the batch, counting from 0.
+	 * @param spec  The problem that was solved, or null if it could not be read.
+	 * @param path  The cheapest path to the goal, or null if there is none or solving failed.
+	 * @param nodes The number of nodes explored, 0 if the problem was solved without searching.
+	 * @param nanos The time spent solving the problem in nanoseconds.
+	 * @param error The reason solving failed, or null if it did not.
+	 */
+	public BatchResult(int index, ProblemSpec spec, Path path, int nodes, long nanos, Throwable error)
+	{
+		this.index = index;
+		this.spec = spec;
+		this.path = path;
+		this.nodes = nodes;
+		this.nanos = nanos;
+		this.error = error;
+	}
+
+	/**
+	 * Creates a string to model the BatchResult object.
+	 */
+	@Override
+	public String toString()
+	{
+		if(error != null)
+			return String.format("#%d failed: %s", index, error);
+		return String.format("#%d cost: %s, nodes: %d, time: %.3fms", index, getCost(), nodes, nanos / 1e6);
+	}
+
+	// Getter Methods
+
+	/**
+	 * Get the position of the problem in the batch.
+	 * @return The index of the problem, counting from 0.
+	 */
+	public int getIndex() { return this.index; }
+
+	/**
+	 * Get the problem that was solved.
+	 * @return The problem, or null if it could not be read.
+	 */
+	public ProblemSpec getSpec() { return this.spec; }
+
+	/**
+	 * Get the cheapest path to the goal.
+	 * @return The path, or null if there is none or solving failed.
+	 */
+	public Path getPath() { return this.path; }
+
+	/**
+	 * Get the cost of the cheapest path to the goal.
+	 * @return The cost, infinity if the goal cannot be reached or NaN if solving failed.
+	 */
+	public double getCost()
+	{
+		if(error != null)
+			return Double.NaN;
+		return path == null ? Double.POSITIVE_INFINITY : path.cost;
+	}
+
+	/**
+	 * Get the number of nodes explored while solving the problem.
+	 * @return The number of nodes explored.
+	 */
+	public int getNodes() { return this.nodes; }
+
+	/**
+	 * Get the time spent solving the problem.
+	 * @return The time in nanoseconds.
+	 */
+	public long getNanos() { return this.nanos; }
+
+	/**
+	 * Get the reason solving failed.
+	 * @return The error, or null if solving did not fail.
+	 */
+	public Throwable getError() { return this.error; }
+
+	/**
+	 * Check if the problem was solved without failing.
+	 * @return true if there was no error.
+	 */
+	public boolean isSuccess() { return this.error == null; }
+}
@@ -0,0 +1,280 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import cm3038.search.Path;
+
+public class BatchSolver implements AutoCloseable
+{
+	/**
+	 * The order results are handed back in.
+	 */
+	public enum Order
+	{
+		// The same order the problems were given in
+		INPUT,
+		// The order the problems finish in
+		COMPLETION
+	}
+
+	private final ForkJoinPool pool;
+	private final int window;
+
+	// The totals of every search run, or null to record nothing
+	private volatile SearchMetrics metrics;
+	// The solutions of problems solved before, or null to solve every problem
+	private volatile SolutionCache cache;
+
+	/**
+	 * Create a batch solver that uses one thread per processor.
+	 */
+	public BatchSolver()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a batch solver with a number of threads.
+	 *
+	 * @param parallelism The number of problems solved at the same time.
+	 */
+	public BatchSolver(int parallelism)
+	{
+		this(parallelism, parallelism * 4);
+	}
+
+	/**
+	 * Create a batch solver with a number of threads and a limit on how many problems
+	 * are held at once.
+	 *
+	 * Problems are only taken from the input while fewer than window of them are being
+	 * solved or waiting to be handed back, so a batch can be streamed through without
+	 * ever holding all of it in memory.
+	 *
+	 * @param parallelism The number of problems solved at the same time.
+	 * @param window      The number of problems held at once, at least parallelism.
+	 */
+	public BatchSolver(int parallelism, int window)
+	{
+		if(parallelism < 1 || window < parallelism)
+			throw new IllegalArgumentException(String.format("Need 1 <= parallelism <= window, got %d and %d", parallelism, window));
+
+		this.pool = new ForkJoinPool(parallelism);
+		this.window = window;
+	}
+
+	/**
+	 * Solve a batch of problems, handing each result to a consumer as it is ready.
+	 *
+	 * The consumer is only ever called from the thread that called solve(), so it does
+	 * not need to be thread safe. In input order, a result that finishes early waits
+	 * until every problem before it has been handed back.
+	 *
+	 * If the input throws an IllegalArgumentException for a problem it cannot read, as
+	 * a ProblemReader does for a line not in the input format, that problem is handed
+	 * back as a result with the error and no problem, and the rest of the input is read.
+	 *
+	 * @param specs  The problems to solve.
+	 * @param order  The order results are handed back in.
+	 * @param sink   The consumer of the results.
+	 * @throws InterruptedException If the thread is interrupted while waiting for a result.
+	 */
+	public void solve(Iterable<ProblemSpec> specs, Order order, Consumer<BatchResult> sink) throws InterruptedException
+	{
+		BlockingQueue<BatchResult> finished = new LinkedBlockingQueue<>();
+		Map<Integer, BatchResult> waiting = new HashMap<>();
+		Iterator<ProblemSpec> input = specs.iterator();
+		int submitted = 0, running = 0, nextIndex = 0;
+
+		while(true)
+		{
+			while(running + waiting.size() < window)
+			{
+				int index = submitted;
+				ProblemSpec spec;
+				try
+				{
+					if(!input.hasNext())
+						break;
+					spec = input.next();
+				}
+				catch(IllegalArgumentException e)
+				{
+					// A problem that cannot be read fails like one that cannot be solved
+					submitted++;
+					running++;
+					finished.add(new BatchResult(index, null, null, 0, 0, e));
+					continue;
+				}
+				submitted++;
+				SearchMetrics totals = metrics;
+				SolutionCache solutions = cache;
+				pool.execute(() ->
+				{
+					// Every task adds a result, whatever it throws, or take() below would wait forever
+					BatchResult result;
+					try
+					{
+						result = solveOne(index, spec, totals, solutions);
+					}
+					catch(Throwable e)
+					{
+						result = new BatchResult(index, spec, null, 0, 0, e);
+					}
+					finished.add(result);
+				});
+				running++;
+			}
+
+			if(running == 0)
+				break;
+
+			BatchResult result = finished.take();
+			running--;
+
+			if(order == Order.COMPLETION)
+			{
+				sink.accept(result);
+				continue;
+			}
+
+			waiting.put(result.getIndex(), result);
+			for(BatchResult next; (next = waiting.remove(nextIndex)) != null; nextIndex++)
+				sink.accept(next);
+		}
+	}
+
+	/**
+	 * Solve a stream of problems, handing each result to a consumer as it is ready.
+	 *
+	 * @param specs The problems to solve.
+	 * @param order The order results are handed back in.
+	 * @param sink  The consumer of the results.
+	 * @throws InterruptedException If the thread is interrupted while waiting for a result.
+	 */
+	public void solve(Stream<ProblemSpec> specs, Order order, Consumer<BatchResult> sink) throws InterruptedException
+	{
+		solve(specs::iterator, order, sink);
+	}
+
+	/**
+	 * Solve a batch of problems and collect the results.
+	 *
+	 * @param specs The problems to solve.
+	 * @return The results, in the same order as the problems.
+	 * @throws InterruptedException If the thread is interrupted while waiting for a result.
+	 */
+	public List<BatchResult> solveAll(Iterable<ProblemSpec> specs) throws InterruptedException
+	{
+		List<BatchResult> results = new ArrayList<>();
+		solve(specs, Order.INPUT, results::add);
+		return results;
+	}
+
+	/**
+	 * Solve one problem, without searching if it is the classic capacity 2 problem and
+	 * with Astar otherwise, holding its nodes in a NodeStore when the roster fits.
+	 * Nothing is thrown: a failure is recorded in the result so one bad problem does
+	 * not stop the rest of the batch.
+	 *
+	 * @param index The position of the problem in the batch.
+	 * @param spec  The problem to solve.
+	 * @return The result of solving the problem.
+	 */
+	public static BatchResult solveOne(int index, ProblemSpec spec)
+	{
+		return solveOne(index, spec, null);
+	}
+
+	/**
+	 * Solve one problem, adding the metrics of its search to a set of totals.
+	 *
+	 * @param index   The position of the problem in the batch.
+	 * @param spec    The problem to solve.
+	 * @param totals  The metrics the search is added to, or null to record nothing.
+	 * @return The result of solving the problem.
+	 */
+	public static BatchResult solveOne(int index, ProblemSpec spec, SearchMetrics totals)
+	{
+		return solveOne(index, spec, totals, null);
+	}
+
+	/**
+	 * Solve one problem, looking its solution up in a cache before searching and
+	 * remembering the solution found by a search.
+	 *
+	 * @param index   The position of the problem in the batch.
+	 * @param spec    The problem to solve.
+	 * @param totals  The metrics the search is added to, or null to record nothing.
+	 * @param cache   The solutions of problems solved before, or null to always search.
+	 * @return The result of solving the problem, with no nodes explored on a cache hit.
+	 */
+	public static BatchResult solveOne(int index, ProblemSpec spec, SearchMetrics totals, SolutionCache cache)
+	{
+		long started = System.nanoTime();
+		try
+		{
+			BridgeState start = spec.getInitialState(), goal = spec.getGoalState();
+			if(CapacityTwoSolver.applies(start, goal, spec.getCapacity()))
+				return new BatchResult(index, spec, CapacityTwoSolver.solve(start, goal), 0, System.nanoTime() - started, null);
+
+			Path cached = cache == null ? null : cache.lookup(spec);
+			if(cached != null)
+				return new BatchResult(index, spec, cached, 0, System.nanoTime() - started, null);
+
+			// Each search records its own metrics, so the hot path never waits on a lock
+			Astar problem = NodeStore.fits(spec.getRoster()) ? new CompactAstar(start, goal) : new Astar(start, goal);
+			if(totals != null)
+				problem.setMetrics(new SearchMetrics());
+			Path path = spec.restoreNames(problem.search());
+			if(totals != null)
+				totals.add(problem.getMetrics());
+			if(cache != null)
+				cache.store(spec, path);
+			return new BatchResult(index, spec, path, problem.nodeVisited, System.nanoTime() - started, null);
+		}
+		catch(RuntimeException | OutOfMemoryError | StackOverflowError e)
+		{
+			return new BatchResult(index, spec, null, 0, System.nanoTime() - started, e);
+		}
+	}
+
+	/**
+	 * Add the metrics of every search run from now on to a set of totals.
+	 * @param metrics The totals, or null to record nothing (the default).
+	 */
+	public void setMetrics(SearchMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Look every problem solved from now on up in a cache of solutions before searching.
+	 * @param cache The cache, or null to solve every problem (the default).
+	 */
+	public void setCache(SolutionCache cache)
+	{
+		this.cache = cache;
+	}
+
+	/**
+	 * Stop the threads of the solver once every problem given to it has finished.
+	 */
+	@Override
+	public void close()
+	{
+		pool.shutdown();
+	}
+}
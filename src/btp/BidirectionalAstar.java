@@ -0,0 +1,226 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cm3038.search.*;
+
+public class BidirectionalAstar extends Astar
+{
+	// The number of nodes expanded going forwards from the start and backwards from the goal
+	public int forwardExpanded, backwardExpanded;
+
+	private final Heuristic backward;
+
+	/**
+	 * Create a bidirectional astar object using a start and goal state, estimating the
+	 * distance to either end with the heuristic Astar uses.
+	 *
+	 * @param start The initial state.
+	 * @param goal  The goal state.
+	 */
+	public BidirectionalAstar(State start, State goal)
+	{
+		super(start, goal);
+		this.backward = getHeuristic();
+	}
+
+	/**
+	 * Create a bidirectional astar object using a start and goal state and a heuristic
+	 * for each direction.
+	 *
+	 * @param start    The initial state.
+	 * @param goal     The goal state.
+	 * @param forward  The heuristic estimating the cost from a state to the goal.
+	 * @param backward The heuristic estimating the cost from a state back to the start.
+	 *                 It is given the start state as its goal, so a heuristic built for
+	 *                 one goal, such as a PatternDatabase, cannot be used here.
+	 */
+	public BidirectionalAstar(State start, State goal, Heuristic forward, Heuristic backward)
+	{
+		super(start, goal, forward);
+		this.backward = backward;
+	}
+
+	/**
+	 * Search for the cheapest path from the start state to the goal state from both ends
+	 * at once, meeting in the middle (the MM algorithm).
+	 *
+	 * A crossing can always be undone by the same group crossing back, at the same cost,
+	 * so searching backwards from the goal uses the same successors as searching forwards.
+	 * Each direction orders its open list on max(f, 2g), which stops either search from
+	 * going past the middle of the cheapest path. Whenever a state is reached that the
+	 * other direction has also reached, the two paths joined there give a solution. The
+	 * search stops once the cheapest solution found costs no more than the lowest priority
+	 * on either open list, as nothing left to expand can be cheaper.
+	 *
+	 * Pruned successors are never used, since the pruning only holds going toward one bank.
+	 *
+	 * @return The cheapest path to the goal, or null if the goal cannot be reached.
+	 */
+	@Override
+	public Path search()
+	{
+		BridgeState start = (BridgeState) startState, goal = (BridgeState) goalState;
+		Frontier forwards = new Frontier(start, goal, getHeuristic());
+		Frontier backwards = new Frontier(goal, start, backward);
+		nodeVisited += 2;
+
+		Crossings crossings = new Crossings();
+		double best = start.equals(goal) ? 0 : Double.POSITIVE_INFINITY;
+		SearchNode meetForwards = forwards.visited.get(start), meetBackwards = backwards.visited.get(goal);
+
+		while(!forwards.open.isEmpty() && !backwards.open.isEmpty())
+		{
+			double forwardPriority = forwards.open.peek().f, backwardPriority = backwards.open.peek().f;
+			if(best <= Math.min(forwardPriority, backwardPriority))
+				break;
+
+			boolean isForwards = forwardPriority <= backwardPriority;
+			Frontier side = isForwards ? forwards : backwards, other = isForwards ? backwards : forwards;
+
+			SearchNode node = side.open.poll();
+			node.closed = true;
+			nodeExpanded++;
+			if(isForwards)
+				forwardExpanded++;
+			else
+				backwardExpanded++;
+
+			BridgeState state = (BridgeState) node.state;
+			TorchDirection direction = BridgeState.switchTorchLocation(state.getTorchLocation());
+			crossings.reset(state, false);
+			while(crossings.next())
+			{
+				long group = crossings.group();
+				BridgeState child = state.nextState(group);
+				double g = node.g + state.getRoster().slowest(group);
+				nodeVisited++;
+
+				SearchNode reached = side.reach(node, child, new BridgeAction(state.getRoster(), group, direction), g);
+				if(reached == null)
+					continue;
+
+				SearchNode match = other.visited.get(child);
+				if(match != null && g + match.g < best)
+				{
+					best = g + match.g;
+					meetForwards = isForwards ? reached : match;
+					meetBackwards = isForwards ? match : reached;
+				}
+			}
+		}
+
+		if(best == Double.POSITIVE_INFINITY)
+			return null;
+		return stitch(meetForwards, meetBackwards);
+	}
+
+	/**
+	 * Join the path from the start to where the searches met with the path found
+	 * backwards from there to the goal, turning each backward step around.
+	 *
+	 * @param forwards  The node the forward search reached the meeting state with.
+	 * @param backwards The node the backward search reached the meeting state with.
+	 * @return The path from the start to the goal.
+	 */
+	private Path stitch(SearchNode forwards, SearchNode backwards)
+	{
+		List<ActionStatePair> steps = new ArrayList<>();
+		for(SearchNode node = forwards; node.parent != null; node = (SearchNode) node.parent)
+			steps.add(new ActionStatePair(node.action, node.state));
+		Collections.reverse(steps);
+
+		for(SearchNode node = backwards; node.parent != null; node = (SearchNode) node.parent)
+		{
+			BridgeState from = (BridgeState) node.state, to = (BridgeState) node.parent.state;
+			Roster roster = from.getRoster();
+
+			// The same people cross back; on a symmetric roster the people of each time
+			// who are with the torch stand in for them
+			long group = ((BridgeAction) node.action).maskOn(roster);
+			if(roster.isSymmetric())
+				group = roster.matchGroup(group, from.getTorchSideMask());
+
+			steps.add(new ActionStatePair(new BridgeAction(roster, group, to.getTorchLocation()), to));
+		}
+
+		Path path = new Path();
+		path.head = startState;
+		for(ActionStatePair step : steps)
+		{
+			path.add(step);
+			path.cost += step.action.cost;
+		}
+		return path;
+	}
+
+	/**
+	 * The open list and every node reached by the search in one direction.
+	 */
+	private static final class Frontier
+	{
+		final Map<State, SearchNode> visited = new HashMap<>(1 << 12);
+		final OpenList open = new OpenList(1 << 12);
+		final BridgeState target;
+		final Heuristic heuristic;
+
+		Frontier(BridgeState from, BridgeState target, Heuristic heuristic)
+		{
+			this.target = target;
+			this.heuristic = heuristic;
+
+			SearchNode root = new SearchNode(from, null, null, 0, heuristic.estimate(from, target));
+			prioritise(root);
+			open.add(root);
+			visited.put(from, root);
+		}
+
+		/**
+		 * Add a state reached at a cost to the open list, unless it has already been
+		 * reached as cheaply.
+		 *
+		 * @return The node of the state, or null if the state was not improved.
+		 */
+		SearchNode reach(SearchNode parent, BridgeState state, BridgeAction action, double g)
+		{
+			SearchNode existing = visited.get(state);
+			if(existing == null)
+			{
+				SearchNode created = new SearchNode(state, parent, action, g, heuristic.estimate(state, target));
+				prioritise(created);
+				open.add(created);
+				visited.put(state, created);
+				return created;
+			}
+
+			if(g >= existing.g)
+				return null;
+
+			existing.reroute(parent, action, g);
+			prioritise(existing);
+			if(existing.isOpen())
+				open.decreaseKey(existing);
+			else
+			{
+				existing.closed = false;
+				open.add(existing);
+			}
+			return existing;
+		}
+
+		/**
+		 * Order a node on max(f, 2g) rather than f.
+		 */
+		private static void prioritise(SearchNode node)
+		{
+			node.f = Math.max(node.g + node.h, 2 * node.g);
+		}
+	}
+}
@@ -27,6 +27,16 @@ public class Bridge
 	 */
 	public static String printBridge()
 	{
-		return String.format("|======(%s)======|", getCapacity());
+		return printBridge(getCapacity());
+	}
+	
+	/**
+	 * Create a string to model a bridge of a given capacity.
+	 * @param capacity The number of people allowed on the bridge at a given time.
+	 * @return The bridge.
+	 */
+	public static String printBridge(int capacity)
+	{
+		return String.format("|======(%s)======|", capacity);
 	}
 }
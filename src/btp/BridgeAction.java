@@ -10,9 +10,13 @@ import cm3038.search.*;
 
 public class BridgeAction extends Action
 {
-	public LinkedHashSet<Person> people;
+	private LinkedHashSet<Person> people;
 	private TorchDirection direction;
 	
+	// The roster the mask refers to, or null if the action was built from a set of people
+	private Roster roster;
+	private long mask;
+	
 	/**
 	 * Create a bridgeAction object with the people that are being across the
 	 * bridge and which direction the torch is moving to
@@ -27,13 +31,48 @@ public class BridgeAction extends Action
 		this.findCost();
 	}
 	
+	/**
+	 * Create a bridgeAction object from a mask of people on a roster. The set of
+	 * people is only built if it is asked for.
+	 * 
+	 * @param roster    The roster the mask refers to
+	 * @param mask      The mask of people being moved across the bridge
+	 * @param direction The direction the torch/people are moving to
+	 */
+	BridgeAction(Roster roster, long mask, TorchDirection direction)
+	{
+		this.roster = roster;
+		this.mask = mask;
+		this.direction = direction;
+		this.cost = roster.slowest(mask);
+	}
+	
 	/**
 	 * Calculate the overall cost of the movement across the bridge from the set of people.
 	 * The slowest time out of all the people moving will be overall cost of the action.
 	 */
 	private void findCost() 
 	{
-		this.cost = getPeople().stream().max(RunProblem.comparator).get().getTime();
+		int slowest = 0;
+		for(Person person : people)
+			slowest = Math.max(slowest, person.getTime());
+		this.cost = slowest;
+	}
+	
+	/**
+	 * Get the mask of the people crossing on a given roster.
+	 * 
+	 * @param onRoster The roster of the state the action is applied to.
+	 * @return The mask of the people crossing.
+	 */
+	long maskOn(Roster onRoster)
+	{
+		if(roster == null || !roster.equals(onRoster))
+		{
+			mask = onRoster.maskOf(getPeople());
+			roster = onRoster;
+		}
+		return mask;
 	}
 
 	/**
@@ -43,7 +82,7 @@ public class BridgeAction extends Action
 	public String toString() 
 	{
 		StringBuilder result = new StringBuilder("Move <torch>, ");
-		people.forEach(p -> result.append(String.format("%s ", p.getName())));
+		getPeople().forEach(p -> result.append(String.format("%s ", p.getName())));
 		result.append(String.format("%s to %s (cost:%s)", BridgeState.switchTorchLocation(getTorchDirection()), getTorchDirection(), getCost()));
 		return result.toString();
 	}
@@ -78,6 +117,8 @@ public class BridgeAction extends Action
 	 */
 	public LinkedHashSet<Person> getPeople()
 	{
+		if(this.people == null)
+			this.people = roster.toSet(mask);
 		return this.people;
 	}
 }
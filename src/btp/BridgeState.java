@@ -4,18 +4,21 @@
 
 package btp;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import cm3038.search.*;
 
 public class BridgeState implements State
 {
-	private LinkedHashSet<Person> westBank, eastBank;
+	// Everyone in the problem, sorted by crossing time and shared by every state of the problem.
+	private final Roster roster;
+	// Bit i is set if the i-th fastest person on the roster is on the western bank.
+	private final long westBank;
 	private TorchDirection torchLocation;
-	private List<ActionStatePair> successors = new ArrayList<ActionStatePair>();
 	
 	/**
 	 * Create a new BridgeState object with a western bank, eastern bank and a torch location
@@ -26,8 +29,22 @@ public class BridgeState implements State
 	 */
 	public BridgeState(Set<Person> westBank, Set<Person> eastBank, TorchDirection direction)
 	{
-		this.westBank = RunProblem.sortListByTime(westBank);
-		this.eastBank = RunProblem.sortListByTime(eastBank);
+		this.roster = Roster.of(westBank, eastBank);
+		this.westBank = roster.maskOf(westBank);
+		this.torchLocation = direction;
+	}
+	
+	/**
+	 * Create a new BridgeState object directly from its encoding.
+	 * 
+	 * @param roster    The roster shared by every state of the problem
+	 * @param westBank  The mask of people on the western bank
+	 * @param direction The current torch location
+	 */
+	BridgeState(Roster roster, long westBank, TorchDirection direction)
+	{
+		this.roster = roster;
+		this.westBank = westBank;
 		this.torchLocation = direction;
 	}
 
@@ -37,8 +54,8 @@ public class BridgeState implements State
 	public String toString()
 	{
 		StringBuilder result = new StringBuilder("");
-		this.getWest().forEach(westernPerson -> result.append(westernPerson.toString()));
-		result.append(Bridge.printBridge());
+		appendPeople(result, getWestMask());
+		result.append(Bridge.printBridge(roster.getCapacity()));
 		
 		switch(this.getTorchLocation())
 		{
@@ -46,66 +63,113 @@ public class BridgeState implements State
 			case WEST: result.insert(0, "<Torch> "); break;
 		}
 		
-		this.getEast().forEach(easternPerson -> result.append(easternPerson.toString()));
+		appendPeople(result, getEastMask());
 		return result.toString();
 	}
 	
 	/**
-	 * Create a list of action-state pairs from the current BridgeState
+	 * Append the people in a mask to a string, fastest first.
+	 * 
+	 * @param result The string being built.
+	 * @param mask   The people to append.
+	 */
+	private void appendPeople(StringBuilder result, long mask)
+	{
+		for(long bits = mask; bits != 0; bits &= bits - 1)
+			result.append(roster.get(Long.numberOfTrailingZeros(bits)).toString());
+	}
+	
+	/**
+	 * Create a list of action-state pairs from the current BridgeState.
+	 * 
+	 * A new list is built on every call and nothing is kept in the state, so calling
+	 * it again gives the same successors.
+	 * 
 	 * @return A List<ActionStatePair> that contains all valid action and next-state pairs.
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	public List<ActionStatePair> successor() 
 	{
-		// Get the set of people on the same side as the torch
-		Set<Person> people = getTorchLocation() == TorchDirection.WEST ? this.getWest() : this.getEast();	
-
-		people.forEach(person -> 
+		List<ActionStatePair> successors = new ArrayList<ActionStatePair>();
+		Crossings crossings = new Crossings();
+		crossings.reset(this);
+		
+		while(crossings.next())
+			successors.add(getSuccessor(crossings.group()));
+	
+		return successors;
+	}
+	
+	/**
+	 * Iterate over the action-state pairs of the current BridgeState, building each one
+	 * only when it is asked for, so a caller that stops early never builds the rest.
+	 * 
+	 * @return An iterator over the same successors as successor(), in the same order.
+	 */
+	public Iterator<ActionStatePair> successorIterator()
+	{
+		Crossings crossings = new Crossings();
+		crossings.reset(this);
+		
+		return new Iterator<>()
 		{
-			LinkedHashSet<Person> peopleCrossing = new LinkedHashSet<>();
-			getSuccessor(peopleCrossing, person);
+			private boolean stepped, more;
 			
-			people.forEach(person2 -> 
+			@Override
+			public boolean hasNext()
 			{
-				LinkedHashSet<Person> peopleCrossing2 = (LinkedHashSet<Person>) peopleCrossing.clone();
-				getSuccessor(peopleCrossing2, person2);
-				
-				if(RunProblem.getAdvancedStatus())
+				if(!stepped)
 				{
-					people.forEach(person3 -> 
-					{
-						LinkedHashSet<Person> peopleCrossing3 = (LinkedHashSet<Person>) peopleCrossing2.clone();
-						getSuccessor(peopleCrossing3, person3);
-					});
+					more = crossings.next();
+					stepped = true;
 				}
-			});
-		});
-	
-		return successors;
+				return more;
+			}
+			
+			@Override
+			public ActionStatePair next()
+			{
+				if(!hasNext())
+					throw new NoSuchElementException();
+				stepped = false;
+				return getSuccessor(crossings.group());
+			}
+		};
 	}
 	
 	/**
-	 * Generate valid successor states
+	 * Hand every group of people that can cross from the current BridgeState to a
+	 * visitor, without building an action or state for any of them. The visitor can
+	 * build the next state with nextState(long) for the groups it wants, and stop the
+	 * crossings by returning false.
 	 * 
-	 * @param peopleCrossing The people crossing the bridge
-	 * @param person         The current person
+	 * @param visitor The visitor of the crossings.
+	 * @return true if every crossing was visited, false if the visitor stopped early.
 	 */
-	private void getSuccessor(LinkedHashSet<Person> peopleCrossing, Person person)
+	public boolean forEachCrossing(CrossingVisitor visitor)
 	{
-		if(!peopleCrossing.contains(person))
+		Crossings crossings = new Crossings();
+		crossings.reset(this);
+		
+		while(crossings.next())
 		{
-			peopleCrossing.add(person);
-			BridgeAction action = new BridgeAction(peopleCrossing, switchTorchLocation(this.getTorchLocation()));
-			BridgeState state = this.nextState(action);
-			
-			// Remove duplicate successor states
-			for(int i=0; i<successors.size(); i++)
-				if(successors.get(i).state.equals(state))
-					successors.remove(i);
-			
-			successors.add(new ActionStatePair(action, state));
+			long group = crossings.group();
+			if(!visitor.visit(group, roster.slowest(group)))
+				return false;
 		}
+		return true;
+	}
+	
+	/**
+	 * Generate the successor for a group of people crossing with the torch.
+	 * 
+	 * @param peopleCrossing The mask of people crossing the bridge
+	 * @return The action of the group crossing and the state it leads to
+	 */
+	private ActionStatePair getSuccessor(long peopleCrossing)
+	{
+		BridgeAction action = new BridgeAction(roster, peopleCrossing, switchTorchLocation(this.getTorchLocation()));
+		return new ActionStatePair(action, this.nextState(peopleCrossing));
 	}
 
 	/**
@@ -125,49 +189,58 @@ public class BridgeState implements State
 	 * Apply an action to the current state to transition it into the next state
 	 * @return The new state with the torch location switched to the opposite bank
 	 */
-	@SuppressWarnings("unchecked")
 	public BridgeState nextState(BridgeAction action)
 	{
-		LinkedHashSet<Person> people = action.getPeople();
-		
-		LinkedHashSet<Person> westSide = (LinkedHashSet<Person>) this.westBank.clone();
-		LinkedHashSet<Person> eastSide = (LinkedHashSet<Person>) this.eastBank.clone();
-		
-		LinkedHashSet<Person> src = new LinkedHashSet<>();
-		LinkedHashSet<Person> dest = new LinkedHashSet<>();
-		
-		switch(getTorchLocation())
-		{
-			case EAST: src = eastSide; dest = westSide; break;
-			case WEST: src = westSide; dest = eastSide; break;
-		}
-		
-		src.removeAll(people);
-		dest.addAll(people);
-		
-		return new BridgeState(westSide, eastSide, switchTorchLocation(this.getTorchLocation()));
+		return nextState(action.maskOn(roster));
+	}
+	
+	/**
+	 * Move a group of people across the bridge with the torch.
+	 * 
+	 * If the roster is symmetric the new state is put in its canonical form, so states
+	 * that only differ in which people of the same time are on a bank are equal.
+	 * 
+	 * @param peopleCrossing The mask of people crossing the bridge
+	 * @return The new state with the torch location switched to the opposite bank
+	 */
+	public BridgeState nextState(long peopleCrossing)
+	{
+		return new BridgeState(roster, roster.canonical(westAfter(peopleCrossing)), switchTorchLocation(this.getTorchLocation()));
+	}
+	
+	/**
+	 * Get the western bank after a group of people crosses, keeping everyone's identity.
+	 * 
+	 * @param peopleCrossing The mask of people crossing the bridge
+	 * @return The mask of people on the western bank afterwards
+	 */
+	long westAfter(long peopleCrossing)
+	{
+		return getTorchLocation() == TorchDirection.WEST ? westBank & ~peopleCrossing : westBank | peopleCrossing;
 	}
 	
 	/**
 	 * Create a hash code for the BridgeState that will be stored into a hash map.
 	 * 
-	 * A hash code will be generated for a sequence of input values. In this case the input
-	 * values will be the list of people on the western/eastern banks and what side the torch is on
+	 * The roster is shared by every state of a problem, so the hash is built from the
+	 * western bank mask and what side the torch is on. The mask is mixed so that states
+	 * which differ only in a few people still spread across the table.
 	 * 
 	 * @return An Integer hash value that will be used to identify a BridgeState
 	 */
 	@Override
 	public int hashCode()
 	{
-		return Objects.hash(getWest(), getEast(), getTorchLocation());
+		long hash = (westBank ^ getTorchLocation().ordinal()) * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
 	}
 	
 	/**
 	 * Compare if an Object is equal to a BridgeState.
 	 * 
 	 * If the Object is an instance of BridgeState then it will check if the
-	 * current states western/eastern banks and torch location are all equal
-	 * to the people on the western bank, eastern bank and torch location.
+	 * current states western bank mask, roster and torch location are all equal
+	 * to the other state's. The eastern bank is everyone else on the roster.
 	 * 
 	 * True will be returned if equal otherwise false.
 	 */
@@ -179,10 +252,9 @@ public class BridgeState implements State
 		
 		BridgeState bs = (BridgeState) state;
 		
-		return getWest().equals(bs.westBank) && 
-			   getEast().equals(bs.eastBank) &&
-			   getTorchLocation() == bs.getTorchLocation();
-		
+		return westBank == bs.westBank && 
+			   getTorchLocation() == bs.getTorchLocation() &&
+			   (roster == bs.roster || roster.equals(bs.roster));
 	}
 	
 	// Getter Methods
@@ -191,13 +263,37 @@ public class BridgeState implements State
 	 * Get the list of people on the western bank.
 	 * @return The list of people on the western bank.
 	 */
-	public LinkedHashSet<Person> getWest() { return this.westBank; }
+	public LinkedHashSet<Person> getWest() { return roster.toSet(getWestMask()); }
 	
 	/**
 	 * Get the list of people on the eastern bank.
 	 * @return The list of people on the eastern bank.
 	 */
-	public LinkedHashSet<Person> getEast() { return this.eastBank; }
+	public LinkedHashSet<Person> getEast() { return roster.toSet(getEastMask()); }
+	
+	/**
+	 * Get the mask of people on the western bank.
+	 * @return The mask of people on the western bank.
+	 */
+	public long getWestMask() { return this.westBank; }
+	
+	/**
+	 * Get the mask of people on the eastern bank.
+	 * @return The mask of people on the eastern bank.
+	 */
+	public long getEastMask() { return roster.everyone() & ~this.westBank; }
+	
+	/**
+	 * Get the mask of people on the same bank as the torch.
+	 * @return The mask of people who can cross next.
+	 */
+	public long getTorchSideMask() { return getTorchLocation() == TorchDirection.WEST ? getWestMask() : getEastMask(); }
+	
+	/**
+	 * Get the roster shared by every state of the problem.
+	 * @return The roster.
+	 */
+	public Roster getRoster() { return this.roster; }
 	
 	/**
 	 * Return what bank the torch is currently on.
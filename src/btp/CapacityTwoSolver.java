@@ -0,0 +1,144 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.Arrays;
+
+import cm3038.search.*;
+
+public class CapacityTwoSolver
+{
+	/**
+	 * Check if a problem is the classic one that has a closed-form solution: a bridge for
+	 * two, with everyone and the torch starting on one bank and finishing on the other.
+	 * The closed form names the people it moves, so it is not used on a symmetric roster,
+	 * whose states do not keep track of who is who. With nobody to carry the torch there
+	 * is no solution at all, so an empty roster is left to the search.
+	 *
+	 * @param start    The initial state.
+	 * @param goal     The goal state.
+	 * @param capacity The capacity of the bridge.
+	 * @return true if the problem can be solved without searching.
+	 */
+	public static boolean applies(BridgeState start, BridgeState goal, int capacity)
+	{
+		long everyone = start.getRoster().everyone();
+		return capacity == 2 && start.getRoster().size() > 0 && !start.getRoster().isSymmetric() && start.getRoster().equals(goal.getRoster()) && start.getTorchLocation() != goal.getTorchLocation()
+			&& start.getTorchSideMask() == everyone && goal.getTorchSideMask() == everyone;
+	}
+
+	/**
+	 * Solve a problem, without searching if it is the classic capacity 2 problem and
+	 * with Astar otherwise.
+	 *
+	 * @param start The initial state.
+	 * @param goal  The goal state.
+	 * @return The cheapest path to the goal, or null if there is none.
+	 */
+	public static Path solve(BridgeState start, BridgeState goal)
+	{
+		if(applies(start, goal, start.getRoster().getCapacity()))
+			return solveClassic(start, goal);
+		return new Astar(start, goal).search();
+	}
+
+	/**
+	 * Get the cost of getting everyone across a bridge for two.
+	 *
+	 * While more than three people are left, the two slowest cross using whichever is
+	 * cheaper of the two fastest shuttling (b + a + z + b) or the fastest escorting each
+	 * of them (z + a + y + a). Three people cost a + b + c, two cost b and one costs a.
+	 *
+	 * @param times The crossing times of everyone, in any order.
+	 * @return The cost of the cheapest crossing.
+	 */
+	public static long cost(int[] times)
+	{
+		int[] sorted = times.clone();
+		Arrays.sort(sorted);
+
+		long cost = 0;
+		int left = sorted.length;
+		while(left > 3)
+		{
+			long a = sorted[0], b = sorted[1], y = sorted[left - 2], z = sorted[left - 1];
+			cost += Math.min(a + 2 * b + z, 2 * a + y + z);
+			left -= 2;
+		}
+
+		switch(left)
+		{
+			case 3: cost += sorted[0] + sorted[1] + sorted[2]; break;
+			case 2: cost += sorted[1]; break;
+			case 1: cost += sorted[0]; break;
+		}
+		return cost;
+	}
+
+	/**
+	 * Build the path of the closed-form solution, applying the same choices as cost().
+	 */
+	private static Path solveClassic(BridgeState start, BridgeState goal)
+	{
+		Path path = new Path();
+		path.head = start;
+
+		Roster roster = start.getRoster();
+		BridgeState state = start;
+		long left = roster.everyone();
+		long a = 1L, b = 1L << 1;
+
+		while(Long.bitCount(left) > 3)
+		{
+			long z = Long.highestOneBit(left), y = Long.highestOneBit(left & ~z);
+			int shuttle = roster.fastest(a) + 2 * roster.fastest(b) + roster.slowest(z);
+			int escort = 2 * roster.fastest(a) + roster.slowest(y) + roster.slowest(z);
+
+			if(shuttle <= escort)
+			{
+				state = cross(path, state, a | b);
+				state = cross(path, state, a);
+				state = cross(path, state, y | z);
+				state = cross(path, state, b);
+			}
+			else
+			{
+				state = cross(path, state, a | z);
+				state = cross(path, state, a);
+				state = cross(path, state, a | y);
+				state = cross(path, state, a);
+			}
+			left &= ~(y | z);
+		}
+
+		if(Long.bitCount(left) == 3)
+		{
+			long c = Long.highestOneBit(left);
+			state = cross(path, state, a | c);
+			state = cross(path, state, a);
+			left &= ~c;
+		}
+		if(left != 0)
+			cross(path, state, left);
+
+		return path;
+	}
+
+	/**
+	 * Move a group across the bridge and add the step to the path.
+	 *
+	 * @param path  The path being built.
+	 * @param state The current state.
+	 * @param group The mask of people crossing.
+	 * @return The new state.
+	 */
+	private static BridgeState cross(Path path, BridgeState state, long group)
+	{
+		BridgeAction action = new BridgeAction(state.getRoster(), group, BridgeState.switchTorchLocation(state.getTorchLocation()));
+		BridgeState next = state.nextState(group);
+		path.add(new ActionStatePair(action, next));
+		path.cost += action.cost;
+		return next;
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+
+public final class Combinations 
+{
+	// The single-bit mask of each member of the pool, in increasing bit order
+	private final long[] members = new long[Roster.MAX_PEOPLE];
+	private int poolSize, minSize, maxSize, size;
+	
+	// The current combination of positions in the pool, stepped with Gosper's hack
+	private long positions;
+	private long group;
+	
+	/**
+	 * Start enumerating every non-empty subset of a pool with at most maxSize members.
+	 * 
+	 * Subsets are produced by size, and within a size in colexicographic order, so each
+	 * one is produced exactly once. Nothing is allocated while stepping, so a single
+	 * Combinations object can be reused for every expansion.
+	 * 
+	 * @param pool    The mask of people to choose from.
+	 * @param maxSize The largest subset to produce, i.e. the bridge capacity.
+	 */
+	public void reset(long pool, int maxSize)
+	{
+		reset(pool, 1, maxSize);
+	}
+	
+	/**
+	 * Start enumerating every subset of a pool with between minSize and maxSize members.
+	 * 
+	 * @param pool    The mask of people to choose from.
+	 * @param minSize The smallest subset to produce, at least 1.
+	 * @param maxSize The largest subset to produce.
+	 */
+	public void reset(long pool, int minSize, int maxSize)
+	{
+		this.poolSize = 0;
+		for(long bits = pool; bits != 0; bits &= bits - 1)
+			members[poolSize++] = bits & -bits;
+		
+		this.minSize = Math.max(minSize, 1);
+		this.maxSize = Math.min(maxSize, poolSize);
+		this.size = 0;
+		this.positions = 0;
+		this.group = 0;
+	}
+	
+	/**
+	 * Step to the next subset.
+	 * @return true if there is another subset, which can be read from group().
+	 */
+	public boolean next()
+	{
+		if(size == 0 || positions == last(size))
+		{
+			if(size >= maxSize)
+				return false;
+			
+			size = Math.max(size + 1, minSize);
+			if(size > maxSize)
+				return false;
+			positions = low(size);
+		}
+		else
+		{
+			// Gosper's hack: the next larger number with the same number of bits set
+			long lowest = positions & -positions;
+			long ripple = positions + lowest;
+			positions = (((ripple ^ positions) >>> 2) / lowest) | ripple;
+		}
+		
+		long chosen = 0;
+		for(long bits = positions; bits != 0; bits &= bits - 1)
+			chosen |= members[Long.numberOfTrailingZeros(bits)];
+		group = chosen;
+		return true;
+	}
+	
+	/**
+	 * Get the mask of the current subset.
+	 * @return The people in the current subset.
+	 */
+	public long group() { return group; }
+	
+	/**
+	 * The first combination of k positions, i.e. the k lowest.
+	 */
+	private static long low(int k)
+	{
+		return k == Long.SIZE ? -1L : (1L << k) - 1;
+	}
+	
+	/**
+	 * The last combination of k positions, i.e. the k highest in the pool.
+	 */
+	private long last(int k)
+	{
+		return low(k) << (poolSize - k);
+	}
+}
@@ -0,0 +1,476 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongToIntFunction;
+
+import cm3038.search.*;
+
+public class CompactAstar extends Astar
+{
+	private static final int MAGIC = 0x4243504B; // "BCPK"
+	private static final int VERSION = 1;
+	// How many nodes are expanded between looks at the clock for a checkpoint
+	private static final int CHECKPOINT_CHECK = 1 << 10;
+
+	// Where the search is saved and how often, or null to never save it
+	private java.nio.file.Path checkpointFile;
+	private long checkpointInterval;
+
+	// The size of the store of the last search, to work out the bytes held per node
+	private long storeBytes;
+	private int storeNodes;
+
+	/**
+	 * Create a compact astar object using a start and goal state, with the heuristic
+	 * Astar uses.
+	 *
+	 * @param start The initial state.
+	 * @param goal  The goal state.
+	 * @throws IllegalArgumentException If the roster does not fit a NodeStore.
+	 */
+	public CompactAstar(State start, State goal)
+	{
+		super(start, goal);
+		checkRoster(start);
+		checkCosts(start, NodeStore.MAX_COST);
+	}
+
+	/**
+	 * Create a compact astar object using a start and goal state and a heuristic.
+	 *
+	 * @param start     The initial state.
+	 * @param goal      The goal state.
+	 * @param heuristic The heuristic used to estimate the cost from a state to the goal.
+	 * @throws IllegalArgumentException If the roster does not fit a NodeStore.
+	 */
+	public CompactAstar(State start, State goal, Heuristic heuristic)
+	{
+		super(start, goal, heuristic);
+		checkRoster(start);
+		checkCosts(start, NodeStore.MAX_COST);
+	}
+
+	/**
+	 * Search for the cheapest path from the start state to the goal state, the same way
+	 * as Astar but holding the nodes in a NodeStore instead of as objects.
+	 *
+	 * A node costs 12 bytes of primitive arrays, plus its share of the lookup table and
+	 * open list, rather than a SearchNode, its action and boxed costs. The only objects
+	 * made while searching are the states handed to the successor cursor and the
+	 * heuristic, which are dropped straight away.
+	 * Actions and states are only built for the path that is returned.
+	 *
+	 * Costs are whole numbers, so the estimate of a state is rounded up before it is
+	 * stored, which keeps it from overestimating and keeps f-costs exact.
+	 *
+	 * @return The cheapest path to the goal, or null if the goal cannot be reached.
+	 */
+	@Override
+	public Path search()
+	{
+		SearchMetrics metrics = getMetrics();
+		if(metrics == null)
+			return search(null);
+
+		metrics.startSearch();
+		Path path = search(metrics);
+		metrics.endSearch(path);
+		return path;
+	}
+
+	/**
+	 * Carry on a search from a checkpoint saved by a search of the same problem, which
+	 * may have been in another run of the program. With the same heuristic, the search
+	 * goes on exactly as the one that saved it would have, so it returns the same path,
+	 * and the node counts carry on from where they were.
+	 *
+	 * @param file The checkpoint.
+	 * @return The cheapest path to the goal, or null if the goal cannot be reached.
+	 * @throws IOException If the checkpoint cannot be read or was saved for another problem.
+	 */
+	public Path resume(java.nio.file.Path file) throws IOException
+	{
+		NodeStore store = restore(file);
+		SearchMetrics metrics = getMetrics();
+		if(metrics == null)
+			return search(store, null);
+
+		metrics.startSearch();
+		Path path = search(store, metrics);
+		metrics.endSearch(path);
+		return path;
+	}
+
+	/**
+	 * Search for the cheapest path, recording the steps in the metrics if there are any.
+	 */
+	private Path search(SearchMetrics metrics)
+	{
+		BridgeState start = (BridgeState) startState;
+		NodeStore store = new NodeStore(1 << 12);
+		int root = store.add(NodeStore.pack(start.getWestMask(), start.getTorchLocation()), 0);
+		// A start the heuristic rules out leaves the open list empty
+		int f = estimate(start);
+		if(f <= NodeStore.MAX_COST)
+			store.push(root, f);
+		nodeVisited++;
+		return search(store, metrics);
+	}
+
+	/**
+	 * Carry on searching from the open list of a store, saving a checkpoint whenever the
+	 * interval has passed. The checkpoint is deleted once the search is over.
+	 */
+	private Path search(NodeStore store, SearchMetrics metrics)
+	{
+		BridgeState start = (BridgeState) startState;
+		Roster roster = start.getRoster();
+		long goal = NodeStore.pack(((BridgeState) goalState).getWestMask(), ((BridgeState) goalState).getTorchLocation());
+		Crossings crossings = new Crossings();
+		long nextCheckpoint = checkpointFile == null ? Long.MAX_VALUE : System.nanoTime() + checkpointInterval;
+
+		try
+		{
+			while(true)
+			{
+				// Saved between expansions, so the open list and closed set agree
+				if(nodeExpanded % CHECKPOINT_CHECK == 0 && System.nanoTime() >= nextCheckpoint)
+				{
+					checkpoint(store, metrics);
+					nextCheckpoint = System.nanoTime() + checkpointInterval;
+				}
+
+				int node = store.pop();
+				if(node < 0)
+					break;
+
+				long packed = store.state(node);
+				if(packed == goal)
+				{
+					Path path = buildPath(start, packed, store.cost(node), state -> cost(store, state));
+					deleteCheckpoint();
+					return path;
+				}
+
+				nodeExpanded++;
+				long started = 0, heuristicBefore = 0;
+				int visitedBefore = nodeVisited;
+				if(metrics != null)
+				{
+					metrics.expanded++;
+					heuristicBefore = metrics.heuristicNanos;
+					started = System.nanoTime();
+				}
+
+				BridgeState state = new BridgeState(roster, NodeStore.westBank(packed), NodeStore.torchLocation(packed));
+				TorchDirection direction = BridgeState.switchTorchLocation(state.getTorchLocation());
+				int cost = store.cost(node);
+				crossings.reset(state);
+				while(crossings.next())
+				{
+					long group = crossings.group();
+					long west = roster.canonical(state.westAfter(group));
+					long child = NodeStore.pack(west, direction);
+					int g = Math.addExact(cost, roster.slowest(group));
+					nodeVisited++;
+
+					int existing = store.find(child);
+					if(existing >= 0 && g >= store.cost(existing))
+					{
+						if(metrics != null)
+							metrics.duplicates++;
+						continue;
+					}
+
+					// The estimate is not stored, so it is worked out again for a cheaper path.
+					// The roster's costs fit the buckets, so a child past the last one cannot be
+					// on the cheapest path, such as one a heuristic finds cannot reach the goal
+					long f = (long) g + estimate(new BridgeState(roster, west, direction));
+					if(f > NodeStore.MAX_COST)
+						continue;
+					if(existing < 0)
+						store.push(store.add(child, g), (int) f);
+					else
+					{
+						store.lower(existing, g);
+						store.push(existing, (int) f);
+					}
+				}
+
+				// The time spent on the heuristic is counted on its own
+				if(metrics != null)
+				{
+					metrics.openSize(store.openSize());
+					metrics.generated += nodeVisited - visitedBefore;
+					metrics.successorNanos += System.nanoTime() - started - (metrics.heuristicNanos - heuristicBefore);
+				}
+			}
+			deleteCheckpoint();
+			return null;
+		}
+		finally
+		{
+			storeBytes = store.bytes();
+			storeNodes = store.size();
+		}
+	}
+
+	/**
+	 * Save the search to the checkpoint file: the problem it is for, the node counts and
+	 * the store. The nodes are streamed out through a buffer rather than serialised as
+	 * objects, so saving takes time in proportion to the nodes and holds no copy of them.
+	 * The file is written beside the checkpoint and moved over it in one step, so a run
+	 * killed while saving leaves the last checkpoint whole.
+	 */
+	private void checkpoint(NodeStore store, SearchMetrics metrics)
+	{
+		long started = System.nanoTime();
+		java.nio.file.Path absolute = checkpointFile.toAbsolutePath();
+		try
+		{
+			java.nio.file.Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+			try
+			{
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16)))
+				{
+					writeHeader(out);
+					out.writeInt(nodeVisited);
+					out.writeInt(nodeExpanded);
+					store.writeTo(out);
+				}
+				long bytes = Files.size(temporary);
+				Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+				if(metrics != null)
+				{
+					metrics.checkpoints++;
+					metrics.checkpointBytes += bytes;
+					metrics.checkpointNanos += System.nanoTime() - started;
+				}
+			}
+			finally
+			{
+				Files.deleteIfExists(temporary);
+			}
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Read a checkpoint back into a store, restoring the node counts.
+	 */
+	private NodeStore restore(java.nio.file.Path file) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)))
+		{
+			ByteArrayOutputStream expected = new ByteArrayOutputStream();
+			writeHeader(new DataOutputStream(expected));
+			byte[] saved = new byte[expected.size()];
+			in.readFully(saved);
+
+			ByteBuffer header = ByteBuffer.wrap(saved);
+			if(header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION)
+				throw new IOException(String.format("%s is not a checkpoint", file));
+			if(!Arrays.equals(saved, expected.toByteArray()))
+				throw new IOException(String.format("%s was saved by a search of a different problem", file));
+
+			nodeVisited = in.readInt();
+			nodeExpanded = in.readInt();
+			return NodeStore.readFrom(in);
+		}
+		catch(EOFException e)
+		{
+			throw new IOException(String.format("%s is truncated", file), e);
+		}
+	}
+
+	/**
+	 * Write what a checkpoint has to match to be resumed: the crossing times, the bridge
+	 * capacity, how successors are pruned and the start and goal states.
+	 */
+	private void writeHeader(DataOutputStream out) throws IOException
+	{
+		BridgeState start = (BridgeState) startState, goal = (BridgeState) goalState;
+		Roster roster = start.getRoster();
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(roster.size());
+		for(int i=0; i<roster.size(); i++)
+			out.writeInt(roster.time(i));
+		out.writeInt(roster.getCapacity());
+		out.writeInt(roster.getPrunedToward() == null ? -1 : roster.getPrunedToward().ordinal());
+		out.writeBoolean(roster.isSymmetric());
+		out.writeLong(NodeStore.pack(start.getWestMask(), start.getTorchLocation()));
+		out.writeLong(NodeStore.pack(goal.getWestMask(), goal.getTorchLocation()));
+	}
+
+	private void deleteCheckpoint()
+	{
+		if(checkpointFile == null)
+			return;
+		try
+		{
+			Files.deleteIfExists(checkpointFile);
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Save the search to a file every so often while it runs, so that it can be resumed
+	 * if the program is killed. The file is deleted once the search is over.
+	 *
+	 * @param file  The checkpoint file, or null to stop saving.
+	 * @param nanos The time between checkpoints in nanoseconds. The clock is looked at
+	 *              every 1024 expansions, so 0 saves that often.
+	 */
+	public void setCheckpoint(java.nio.file.Path file, long nanos)
+	{
+		this.checkpointFile = file;
+		this.checkpointInterval = nanos;
+	}
+
+	/**
+	 * Estimate the cost from a state to the goal, rounded up to a whole number.
+	 */
+	private int estimate(BridgeState state)
+	{
+		return roundUp(heuristic(state));
+	}
+
+	/**
+	 * Round an estimate up to a whole number. A fraction below a whole number is taken as
+	 * rounding error rather than rounded up.
+	 */
+	static int roundUp(double estimate)
+	{
+		return (int) Math.min(Math.ceil(estimate - 1e-9), Integer.MAX_VALUE >> 1);
+	}
+
+	/**
+	 * Get the cost of a state in a store.
+	 * @return The cost, or -1 if the state is not in the store.
+	 */
+	private static int cost(NodeStore store, long state)
+	{
+		int node = store.find(state);
+		return node < 0 ? -1 : store.cost(node);
+	}
+
+	/**
+	 * Build the path to a packed state by walking back to the start state. The state
+	 * before each one is any state it can be reached from in one crossing whose cost plus
+	 * that crossing is its own cost; the one it was reached from in the search always is.
+	 * The people who crossed are the western banks either side of the crossing XORed
+	 * together.
+	 *
+	 * @param start The start state.
+	 * @param goal  The packed state to build the path to.
+	 * @param cost  The cost of the goal.
+	 * @param costs Gives the cost each packed state was reached at, or -1 if it was not.
+	 * @return The path.
+	 * @throws IllegalStateException If no state leads to a state on the path.
+	 */
+	static Path buildPath(BridgeState start, long goal, int cost, LongToIntFunction costs)
+	{
+		Roster roster = start.getRoster();
+		long root = NodeStore.pack(start.getWestMask(), start.getTorchLocation());
+		Combinations groups = new Combinations();
+
+		List<Long> states = new ArrayList<>();
+		long packed = goal;
+		while(packed != root)
+		{
+			if(states.contains(packed))
+				throw new IllegalStateException("The path to the goal loops");
+			states.add(packed);
+
+			// The people who last crossed are on the same side as the torch
+			long west = NodeStore.westBank(packed);
+			TorchDirection torch = NodeStore.torchLocation(packed);
+			TorchDirection from = BridgeState.switchTorchLocation(torch);
+			boolean found = false;
+			groups.reset(torch == TorchDirection.WEST ? west : roster.everyone() & ~west, roster.getCapacity());
+			while(!found && groups.next())
+			{
+				long group = groups.group();
+				long previous = NodeStore.pack(roster.canonical(torch == TorchDirection.WEST ? west & ~group : west | group), from);
+				int before = costs.applyAsInt(previous);
+				if(before >= 0 && before + roster.slowest(group) == cost)
+				{
+					packed = previous;
+					cost = before;
+					found = true;
+				}
+			}
+			if(!found)
+				throw new IllegalStateException("No state leads to " + new BridgeState(roster, west, torch));
+		}
+		states.add(root);
+		Collections.reverse(states);
+
+		Path path = new Path();
+		path.head = start;
+		for(int i=1; i<states.size(); i++)
+		{
+			long west = NodeStore.westBank(states.get(i));
+			long group = west ^ NodeStore.westBank(states.get(i - 1));
+			TorchDirection direction = NodeStore.torchLocation(states.get(i));
+
+			BridgeAction action = new BridgeAction(roster, group, direction);
+			path.add(new ActionStatePair(action, new BridgeState(roster, west, direction)));
+			path.cost += action.cost;
+		}
+		return path;
+	}
+
+	/**
+	 * Get the bytes held by the node store of the last search for each node in it.
+	 * @return The bytes per node, or 0 before a search has run.
+	 */
+	public double getBytesPerNode()
+	{
+		return storeNodes == 0 ? 0 : (double) storeBytes / storeNodes;
+	}
+
+	static void checkRoster(State start)
+	{
+		Roster roster = ((BridgeState) start).getRoster();
+		if(roster.size() > NodeStore.MAX_PEOPLE)
+			throw new IllegalArgumentException(String.format("A compact search can hold at most %d people, got %d", NodeStore.MAX_PEOPLE, roster.size()));
+	}
+
+	/**
+	 * Check the f-costs of a search of the roster stay under a limit, such as the buckets
+	 * of a NodeStore, so crossing times in the millions are refused up front rather than
+	 * running out of memory on the open list or overflowing an int.
+	 */
+	static void checkCosts(State start, long limit)
+	{
+		Roster roster = ((BridgeState) start).getRoster();
+		if(NodeStore.costBound(roster) > limit)
+			throw new IllegalArgumentException(String.format("This search takes f-costs up to %d, but the crossing times allow %d", limit, NodeStore.costBound(roster)));
+	}
+}
@@ -0,0 +1,443 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import cm3038.search.ActionStatePair;
+
+public final class CostTable implements Heuristic
+{
+	private static final int MAGIC = 0x42435442; // "BCTB"
+	private static final int VERSION = 1;
+	// The most people a table can cover, keeping every index within an int
+	public static final int MAX_PEOPLE = 30;
+	// The entries in each mapped segment, keeping every segment under the 2GB a buffer can map
+	private static final int SEGMENT_ENTRIES = 1 << 28;
+	// A level with fewer states than this is swept on one thread, as handing it out costs more
+	private static final int PARALLEL_STATES = 1 << 12;
+	// Compares and sets the entries of a mapped table in place, in the byte order it is saved in
+	private static final VarHandle ENTRY = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+	private final Roster roster;
+	private final BridgeState goal;
+	// Each entry is the cost to the goal plus one, so an entry of 0 is a state that cannot
+	// reach the goal. An entry is indexed by the western bank and the torch, like a pattern.
+	private final ByteBuffer[] segments;
+
+	private CostTable(Roster roster, BridgeState goal, ByteBuffer[] segments)
+	{
+		this.roster = roster;
+		this.goal = goal;
+		this.segments = segments;
+	}
+
+	/**
+	 * Work out the cheapest cost to the goal from every state of the goal's roster, and
+	 * save the table to a file as it is filled in.
+	 *
+	 * Crossings can always be reversed at the same cost, so the cost to the goal is found
+	 * by sweeping outwards from the goal with Dijkstra's algorithm, one cost at a time. The
+	 * states whose cost has just been settled are shared between the threads, and a thread
+	 * lowers the entry of a neighbour with a compare and set on the mapped file, so a
+	 * neighbour is only queued again by the thread whose cost for it won. Every crossing is
+	 * tried, whatever the roster prunes, so the table holds every state.
+	 *
+	 * The table has 2^(people + 1) entries of 4 bytes, 2GB for 28 people. The costs still
+	 * to be swept are queued on the heap.
+	 *
+	 * @param goal    The goal state.
+	 * @param threads The number of threads sweeping.
+	 * @param file    The file to save the table in, replaced if it exists.
+	 * @return The table, mapped from the file.
+	 * @throws IOException If the file cannot be written.
+	 * @throws IllegalArgumentException If the roster holds more than MAX_PEOPLE people, or
+	 *                                  there are fewer than 1 threads.
+	 */
+	public static CostTable build(BridgeState goal, int threads, Path file) throws IOException
+	{
+		Roster roster = goal.getRoster();
+		if(roster.size() > MAX_PEOPLE)
+			throw new IllegalArgumentException(String.format("A cost table can cover at most %d people, got %d", MAX_PEOPLE, roster.size()));
+		if(threads < 1)
+			throw new IllegalArgumentException(String.format("A cost table needs at least 1 thread, got %d", threads));
+
+		ByteBuffer[] segments;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			ByteBuffer header = header(roster, goal);
+			header.flip();
+			while(header.hasRemaining())
+				channel.write(header);
+			segments = map(channel, FileChannel.MapMode.READ_WRITE, headerBytes(roster.size()), 2L << roster.size());
+		}
+
+		CostTable table = new CostTable(roster, goal, segments);
+		table.sweep(threads);
+		for(ByteBuffer segment : segments)
+			((MappedByteBuffer) segment).force();
+		return table;
+	}
+
+	/**
+	 * Load a saved table by mapping the file into memory, so nothing is copied onto the
+	 * heap. The file has to have been built for the same crossing times, bridge capacity
+	 * and goal.
+	 *
+	 * @param file The file to load.
+	 * @param goal The goal state the table must hold the costs to.
+	 * @return The table.
+	 * @throws IOException If the file cannot be read or does not match the problem.
+	 */
+	public static CostTable load(Path file, BridgeState goal) throws IOException
+	{
+		Roster roster = goal.getRoster();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			ByteBuffer expected = header(roster, goal);
+			expected.flip();
+			ByteBuffer saved = ByteBuffer.allocate(expected.remaining());
+			while(saved.hasRemaining() && channel.read(saved) >= 0);
+			saved.flip();
+
+			if(saved.remaining() < 2 * Integer.BYTES || saved.getInt(0) != MAGIC || saved.getInt(Integer.BYTES) != VERSION)
+				throw new IOException(String.format("%s is not a cost table", file));
+			if(!saved.equals(expected))
+				throw new IOException(String.format("%s was built for a different problem", file));
+			if(channel.size() != headerBytes(roster.size()) + (2L << roster.size()) * Integer.BYTES)
+				throw new IOException(String.format("%s is truncated", file));
+
+			return new CostTable(roster, goal, map(channel, FileChannel.MapMode.READ_ONLY, headerBytes(roster.size()), 2L << roster.size()));
+		}
+	}
+
+	/**
+	 * Load the table from a file if it has already been built, otherwise build it there.
+	 *
+	 * @param file    The file the table is kept in.
+	 * @param goal    The goal state the table holds the costs to.
+	 * @param threads The number of threads sweeping if the table has to be built.
+	 * @return The table.
+	 * @throws IOException If the file cannot be read or written.
+	 */
+	public static CostTable loadOrBuild(Path file, BridgeState goal, int threads) throws IOException
+	{
+		if(file.toFile().isFile())
+		{
+			try
+			{
+				return load(file, goal);
+			}
+			catch(IOException stale)
+			{
+				// Built for another problem, so build it again below
+			}
+		}
+		return build(goal, threads, file);
+	}
+
+	/**
+	 * Get the cheapest cost from a state to the goal.
+	 * @param state The state.
+	 * @return The cost, or -1 if the goal cannot be reached from the state.
+	 */
+	public int cost(BridgeState state)
+	{
+		return get(index(state.getWestMask(), state.getTorchLocation())) - 1;
+	}
+
+	/**
+	 * Look up the exact cost of a state, which makes a perfect heuristic. The goal passed
+	 * in must be the one the table was built for.
+	 */
+	@Override
+	public double estimate(BridgeState state, BridgeState goal)
+	{
+		int cost = cost(state);
+		return cost < 0 ? Double.POSITIVE_INFINITY : cost;
+	}
+
+	/**
+	 * Build the cheapest path from a state to the goal without searching: from each state
+	 * the crossing taken is any one whose cost plus the cost of the state it leads to is
+	 * the cost of the state itself.
+	 *
+	 * @param start The state to start from.
+	 * @return The cheapest path, or null if the goal cannot be reached.
+	 */
+	public cm3038.search.Path path(BridgeState start)
+	{
+		int cost = cost(start);
+		if(cost < 0)
+			return null;
+
+		cm3038.search.Path path = new cm3038.search.Path();
+		path.head = start;
+		Combinations groups = new Combinations();
+		long west = start.getWestMask();
+		TorchDirection torch = start.getTorchLocation();
+		while(west != goal.getWestMask() || torch != goal.getTorchLocation())
+		{
+			// Crossings that take no time could be followed back and forth for ever
+			if(path.size() > size())
+				throw new IllegalStateException("The path to the goal loops");
+
+			TorchDirection direction = BridgeState.switchTorchLocation(torch);
+			boolean found = false;
+			groups.reset(torch == TorchDirection.WEST ? west : roster.everyone() & ~west, roster.getCapacity());
+			while(!found && groups.next())
+			{
+				long group = groups.group();
+				long next = torch == TorchDirection.WEST ? west & ~group : west | group;
+				int after = get(index(next, direction)) - 1;
+				if(after >= 0 && after + roster.slowest(group) == cost)
+				{
+					BridgeAction action = new BridgeAction(roster, group, direction);
+					path.add(new ActionStatePair(action, new BridgeState(roster, next, direction)));
+					path.cost += action.cost;
+					west = next;
+					torch = direction;
+					cost = after;
+					found = true;
+				}
+			}
+			if(!found)
+				throw new IllegalStateException(String.format("No crossing from %s matches the table", new BridgeState(roster, west, torch)));
+		}
+		return path;
+	}
+
+	/**
+	 * Sweep out from the goal a cost at a time. The states queued at a cost are only
+	 * expanded if their entry still holds that cost, so a state queued again at a lower
+	 * cost is skipped when its old cost comes round. A cost is swept again until nothing
+	 * more is queued at it, as someone who takes no time to cross queues states at the
+	 * cost being swept.
+	 */
+	private void sweep(int threads)
+	{
+		int longest = roster.size() == 0 ? 1 : roster.time(roster.size() - 1) + 1;
+		Sweeper[] sweepers = new Sweeper[threads];
+		for(int i=0; i<threads; i++)
+			sweepers[i] = new Sweeper(longest);
+
+		int goalIndex = index(goal.getWestMask(), goal.getTorchLocation());
+		ENTRY.setVolatile(segments[goalIndex / SEGMENT_ENTRIES], (goalIndex % SEGMENT_ENTRIES) * Integer.BYTES, 1);
+		sweepers[0].queue(0, goalIndex);
+		long queued = sweepers[0].added;
+		sweepers[0].added = 0;
+
+		ExecutorService pool = threads == 1 ? null : Executors.newFixedThreadPool(threads);
+		try
+		{
+			for(int cost=0; queued > 0; )
+			{
+				int[] level = sweepers[0].take(cost);
+				for(int i=1; i<threads; i++)
+				{
+					int[] more = sweepers[i].take(cost);
+					int length = level.length;
+					level = Arrays.copyOf(level, length + more.length);
+					System.arraycopy(more, 0, level, length, more.length);
+				}
+				queued -= level.length;
+				if(level.length == 0)
+				{
+					cost++;
+					continue;
+				}
+
+				if(pool == null || level.length < PARALLEL_STATES)
+					sweepers[0].expand(level, 0, level.length, cost);
+				else
+				{
+					List<Callable<Void>> tasks = new ArrayList<>();
+					for(int i=0; i<threads; i++)
+					{
+						Sweeper sweeper = sweepers[i];
+						int from = (int) ((long) level.length * i / threads), to = (int) ((long) level.length * (i + 1) / threads);
+						int[] states = level;
+						int at = cost;
+						tasks.add(() -> { sweeper.expand(states, from, to, at); return null; });
+					}
+					for(Future<Void> done : pool.invokeAll(tasks))
+						done.get();
+				}
+
+				for(Sweeper sweeper : sweepers)
+				{
+					queued += sweeper.added;
+					sweeper.added = 0;
+				}
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the sweep threads", e);
+		}
+		catch(ExecutionException e)
+		{
+			throw new IllegalStateException("A sweep thread failed", e.getCause());
+		}
+		finally
+		{
+			if(pool != null)
+				pool.shutdown();
+		}
+	}
+
+	private int get(int index)
+	{
+		return segments[index / SEGMENT_ENTRIES].getInt((index % SEGMENT_ENTRIES) * Integer.BYTES);
+	}
+
+	private static ByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long position, long entries) throws IOException
+	{
+		ByteBuffer[] segments = new ByteBuffer[(int) ((entries + SEGMENT_ENTRIES - 1) / SEGMENT_ENTRIES)];
+		for(int i=0; i<segments.length; i++)
+		{
+			long first = (long) i * SEGMENT_ENTRIES;
+			segments[i] = channel.map(mode, position + first * Integer.BYTES, Math.min(SEGMENT_ENTRIES, entries - first) * Integer.BYTES);
+		}
+		return segments;
+	}
+
+	private static ByteBuffer header(Roster roster, BridgeState goal)
+	{
+		ByteBuffer header = ByteBuffer.allocate(headerBytes(roster.size()));
+		header.putInt(MAGIC).putInt(VERSION).putInt(roster.size()).putInt(roster.getCapacity());
+		header.putLong(goal.getWestMask()).putInt(goal.getTorchLocation().ordinal());
+		for(int i=0; i<roster.size(); i++)
+			header.putInt(roster.time(i));
+		return header;
+	}
+
+	private static int headerBytes(int size)
+	{
+		return 4 * Integer.BYTES + Long.BYTES + Integer.BYTES + size * Integer.BYTES;
+	}
+
+	private static int index(long westBank, TorchDirection torch)
+	{
+		return (int) (westBank << 1) | (torch == TorchDirection.WEST ? 1 : 0);
+	}
+
+	// Getter Methods
+
+	/**
+	 * Get the roster the table covers.
+	 * @return The roster.
+	 */
+	public Roster getRoster() { return this.roster; }
+
+	/**
+	 * Get the number of entries in the table, one per western bank and torch side.
+	 * @return The number of entries.
+	 */
+	public long size() { return 2L << roster.size(); }
+
+	@Override
+	public String toString() { return String.format("table[%d people]", roster.size()); }
+
+	/**
+	 * One thread of the sweep, with its own queue of states for each cost still to come.
+	 * The queues are a ring as long as the slowest crossing, which is as far ahead of the
+	 * cost being swept as a state can be queued.
+	 */
+	private final class Sweeper
+	{
+		private final int[][] queues;
+		private final int[] sizes;
+		private final Combinations groups = new Combinations();
+		// The states queued since the sweep last counted them
+		private long added;
+
+		Sweeper(int ring)
+		{
+			queues = new int[ring][16];
+			sizes = new int[ring];
+		}
+
+		void queue(int cost, int index)
+		{
+			int slot = cost % queues.length;
+			if(sizes[slot] == queues[slot].length)
+				queues[slot] = Arrays.copyOf(queues[slot], sizes[slot] * 2);
+			queues[slot][sizes[slot]++] = index;
+			added++;
+		}
+
+		/**
+		 * Take the states queued at a cost, emptying the queue.
+		 */
+		int[] take(int cost)
+		{
+			int slot = cost % queues.length;
+			int[] states = Arrays.copyOf(queues[slot], sizes[slot]);
+			sizes[slot] = 0;
+			if(queues[slot].length > 1 << 16)
+				queues[slot] = new int[16];
+			return states;
+		}
+
+		/**
+		 * Expand the states of a level from one position to another, lowering the entry
+		 * of each neighbour that can be reached more cheaply.
+		 */
+		void expand(int[] states, int from, int to, int cost)
+		{
+			long everyone = roster.everyone();
+			for(int i=from; i<to; i++)
+			{
+				int index = states[i];
+				if(get(index) != cost + 1)
+					continue;
+
+				long west = index >>> 1;
+				boolean torchWest = (index & 1) != 0;
+				TorchDirection torch = torchWest ? TorchDirection.EAST : TorchDirection.WEST;
+				groups.reset(torchWest ? west : everyone & ~west, roster.getCapacity());
+				while(groups.next())
+				{
+					long group = groups.group();
+					int next = index(torchWest ? west & ~group : west | group, torch);
+					int reached = cost + roster.slowest(group);
+					if(lower(next, reached + 1))
+						queue(reached, next);
+				}
+			}
+		}
+
+		/**
+		 * Lower an entry to a value if it is empty or higher.
+		 * @return true if this thread lowered it.
+		 */
+		private boolean lower(int index, int value)
+		{
+			ByteBuffer segment = segments[index / SEGMENT_ENTRIES];
+			int offset = (index % SEGMENT_ENTRIES) * Integer.BYTES;
+			for(int held = (int) ENTRY.getVolatile(segment, offset); held == 0 || held > value; held = (int) ENTRY.getVolatile(segment, offset))
+				if(ENTRY.compareAndSet(segment, offset, held, value))
+					return true;
+			return false;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+
+@FunctionalInterface
+public interface CrossingVisitor
+{
+	/**
+	 * Visit one group of people that can cross the bridge with the torch.
+	 * 
+	 * @param peopleCrossing The mask of people crossing, on the roster of the state.
+	 * @param cost           The cost of the crossing, the time of the slowest person.
+	 * @return true to carry on with the next group, false to stop.
+	 */
+	boolean visit(long peopleCrossing, int cost);
+}
@@ -0,0 +1,180 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+
+public final class Crossings
+{
+	private final Combinations groups = new Combinations();
+
+	private Roster roster;
+	private int capacity;
+	private boolean pruned, forward;
+
+	// The people on the same side as the torch
+	private long pool;
+	// The people not yet on the bank being pruned toward, and those still to be tried as the slowest of a group
+	private long behind, remaining;
+	// The slowest member of the groups being filled, or 0 if no group is being filled
+	private long person;
+	// The one crossing left to produce when the torch has to come back
+	private long single;
+	private long group;
+
+	/**
+	 * Start enumerating the groups of people that can cross from a state.
+	 *
+	 * Without pruning, every group of 1 up to the bridge capacity from the people on the
+	 * same side as the torch is produced. With pruning, only the groups that can be part
+	 * of a cheapest way of getting everyone onto one bank are. The rules are described
+	 * for the eastern bank; for the western bank swap east and west.
+	 *
+	 * Every rule rests on one fact: if two states have the torch on the same bank and
+	 * one has everyone the other has on the eastern bank (and maybe more), the first is
+	 * never more expensive to finish. Any plan from the second can be replayed from the
+	 * first, leaving out people who are already across; a crossing that would then be
+	 * empty is skipped together with the return trip before it.
+	 *
+	 * Going west, only the fastest person on the eastern bank returns. Returning anyone
+	 * else alongside them costs at least as much and leaves fewer people across.
+	 * Returning a slower person x instead of the fastest e can be undone by swapping x
+	 * and e in the rest of the plan until they are on the same bank again: the swap costs
+	 * at most t(x) - t(e) extra, which is what returning e saved.
+	 *
+	 * Going east, a group is identified by its slowest member plus fillers who are no
+	 * slower. If there is room for someone no slower than the slowest member, taking
+	 * them along costs nothing and leaves more people across, so only full groups, or
+	 * groups holding everyone on the bank who is no slower, are kept.
+	 *
+	 * Nothing is allocated while stepping, so one Crossings object can be reused for
+	 * every expansion of a search.
+	 *
+	 * @param state The state the groups cross from.
+	 */
+	public void reset(BridgeState state)
+	{
+		reset(state, true);
+	}
+
+	/**
+	 * Start enumerating the groups of people that can cross from a state, choosing if the
+	 * roster's pruning is applied. A search that also goes backwards from the goal needs
+	 * every crossing, since the pruning only holds going toward one bank.
+	 *
+	 * @param state The state the groups cross from.
+	 * @param prune true to prune if the roster asks for it, false to produce every group.
+	 */
+	public void reset(BridgeState state, boolean prune)
+	{
+		this.roster = state.getRoster();
+		this.capacity = roster.getCapacity();
+		this.group = 0;
+		this.person = 0;
+		this.single = 0;
+		this.pool = state.getTorchSideMask();
+
+		TorchDirection toward = prune ? roster.getPrunedToward() : null;
+		this.pruned = toward != null;
+		if(!pruned)
+		{
+			groups.reset(pool, capacity);
+			return;
+		}
+
+		this.behind = toward == TorchDirection.EAST ? state.getWestMask() : state.getEastMask();
+		this.forward = state.getTorchLocation() != toward;
+		this.remaining = forward && capacity > 0 ? behind : 0;
+
+		if(!forward)
+		{
+			long across = roster.everyone() & ~behind;
+			if(behind != 0 && across != 0 && capacity > 0)
+				this.single = across & -across;
+		}
+	}
+
+	/**
+	 * Step to the next group. If the roster is symmetric, groups that only differ in
+	 * which people of the same crossing time cross are produced once.
+	 * @return true if there is another group, which can be read from group().
+	 */
+	public boolean next()
+	{
+		while(step())
+			if(roster.isCanonicalGroup(group, pool))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Step to the next group, whether it is canonical or not.
+	 */
+	private boolean step()
+	{
+		if(!pruned)
+		{
+			if(!groups.next())
+				return false;
+			group = groups.group();
+			return true;
+		}
+
+		if(!forward)
+		{
+			group = single;
+			single = 0;
+			return group != 0;
+		}
+
+		while(true)
+		{
+			if(person != 0)
+			{
+				if(groups.next())
+				{
+					group = person | groups.group();
+					return true;
+				}
+				person = 0;
+			}
+
+			if(remaining == 0)
+				return false;
+
+			long slowest = remaining & -remaining;
+			remaining &= remaining - 1;
+			long faster = behind & (slowest - 1);
+
+			if(Long.bitCount(faster) >= capacity - 1)
+			{
+				if(capacity == 1)
+				{
+					group = slowest;
+					return true;
+				}
+
+				groups.reset(faster, capacity - 1, capacity - 1);
+				person = slowest;
+			}
+			else
+			{
+				// There is room for everyone faster; the group is only kept if nobody as
+				// slow as this person is left behind
+				int time = roster.time(Long.numberOfTrailingZeros(slowest));
+				long tied = behind & ~(faster | slowest);
+				if(tied == 0 || roster.fastest(tied) != time)
+				{
+					group = slowest | faster;
+					return true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the mask of the current group.
+	 * @return The people in the current group.
+	 */
+	public long group() { return group; }
+}
@@ -0,0 +1,215 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class DiskTable implements Closeable
+{
+	// A slot holds a packed state and its cost plus one, so a cost of 0 marks an empty slot
+	private static final int SLOT_BYTES = 12;
+	// The slots in each mapped segment, keeping every segment under the 2GB a buffer can map
+	private static final int SEGMENT_SLOTS = 1 << 26;
+
+	private final Path file;
+	private FileChannel channel;
+	private MappedByteBuffer[] segments;
+	private long capacity, size;
+	// Counts the files the table has grown into, each twice the size of the last
+	private int generation;
+
+	/**
+	 * Create a table from packed states to the cheapest cost each has been reached at,
+	 * held in a file mapped into memory rather than on the heap.
+	 *
+	 * The operating system pages the file in and out as it is used, so the table can
+	 * hold far more states than the heap could, at the price of a read from disk when a
+	 * state whose page has been dropped is looked up. The table doubles into a new file
+	 * when it is three quarters full.
+	 *
+	 * Java only unmaps a file once the garbage collector frees its buffers, and Windows
+	 * refuses to delete a file that is still mapped. A file the table is done with that
+	 * cannot be deleted yet is left to be deleted when the program exits, which can
+	 * still fail if its mapping has not been freed by then.
+	 *
+	 * @param file     The file to hold the table, replaced if it exists.
+	 * @param capacity The number of states the table can hold before it has to grow.
+	 * @throws IOException If the file cannot be created or mapped.
+	 */
+	public DiskTable(Path file, long capacity) throws IOException
+	{
+		this.file = file;
+		map(Long.highestOneBit(Math.max(capacity, 12) * 4 / 3 - 1) << 1);
+	}
+
+	/**
+	 * Find the cost a state has been reached at.
+	 * @param state The packed state.
+	 * @return The cost, or -1 if the state is not in the table.
+	 */
+	public int get(long state)
+	{
+		for(long slot = slot(state); ; slot = (slot + 1) & (capacity - 1))
+		{
+			int cost = cost(slot);
+			if(cost == 0)
+				return -1;
+			if(state(slot) == state)
+				return cost - 1;
+		}
+	}
+
+	/**
+	 * Record that a state has been reached at a cost, unless it has already been
+	 * reached at least as cheaply.
+	 *
+	 * @param state The packed state.
+	 * @param cost  The cost it was reached at.
+	 * @return true if the state is new or the cost is lower than before.
+	 * @throws IOException If the table has to grow and the new file cannot be mapped.
+	 */
+	public boolean improve(long state, int cost) throws IOException
+	{
+		long slot = slot(state);
+		for(int held; (held = cost(slot)) != 0; slot = (slot + 1) & (capacity - 1))
+			if(state(slot) == state)
+			{
+				if(held - 1 <= cost)
+					return false;
+				put(slot, state, cost);
+				return true;
+			}
+
+		put(slot, state, cost);
+		if(++size * 4 > capacity * 3)
+			grow();
+		return true;
+	}
+
+	/**
+	 * Close the table and delete its file, or leave it to be deleted on exit if it is
+	 * still mapped.
+	 * @throws IOException If the file cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+		segments = null;
+		release(current());
+	}
+
+	/**
+	 * Map a new empty file of a number of slots. Mapping past the end of the file grows
+	 * it, and a file system with sparse files only stores the pages that are written.
+	 */
+	private void map(long slots) throws IOException
+	{
+		capacity = slots;
+		channel = FileChannel.open(current(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		segments = new MappedByteBuffer[(int) ((slots + SEGMENT_SLOTS - 1) / SEGMENT_SLOTS)];
+		for(int i=0; i<segments.length; i++)
+		{
+			long first = (long) i * SEGMENT_SLOTS;
+			segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, first * SLOT_BYTES, Math.min(SEGMENT_SLOTS, slots - first) * SLOT_BYTES);
+		}
+	}
+
+	/**
+	 * Double the table into a new file and delete the old one. The old mapping is let go
+	 * rather than unmapped, which Java leaves to the garbage collector.
+	 */
+	private void grow() throws IOException
+	{
+		FileChannel old = channel;
+		MappedByteBuffer[] oldSegments = segments;
+		long oldCapacity = capacity;
+		Path oldFile = current();
+
+		generation++;
+		map(oldCapacity * 2);
+		for(long from=0; from<oldCapacity; from++)
+		{
+			MappedByteBuffer segment = oldSegments[(int) (from / SEGMENT_SLOTS)];
+			int offset = (int) (from % SEGMENT_SLOTS) * SLOT_BYTES;
+			int cost = segment.getInt(offset + 8);
+			if(cost == 0)
+				continue;
+
+			long state = segment.getLong(offset);
+			long slot = slot(state);
+			while(cost(slot) != 0)
+				slot = (slot + 1) & (capacity - 1);
+			put(slot, state, cost - 1);
+		}
+
+		old.close();
+		release(oldFile);
+	}
+
+	/**
+	 * Delete a file the table is done with. If it cannot be deleted while it is still
+	 * mapped, as on Windows, it is deleted when the program exits instead.
+	 */
+	private static void release(Path file)
+	{
+		try
+		{
+			Files.deleteIfExists(file);
+		}
+		catch(IOException e)
+		{
+			file.toFile().deleteOnExit();
+		}
+	}
+
+	private Path current()
+	{
+		return generation == 0 ? file : file.resolveSibling(file.getFileName() + "." + generation);
+	}
+
+	private long slot(long state)
+	{
+		long hash = state * 0x9E3779B97F4A7C15L;
+		return (hash ^ (hash >>> 32)) & (capacity - 1);
+	}
+
+	private long state(long slot)
+	{
+		return segments[(int) (slot / SEGMENT_SLOTS)].getLong((int) (slot % SEGMENT_SLOTS) * SLOT_BYTES);
+	}
+
+	private int cost(long slot)
+	{
+		return segments[(int) (slot / SEGMENT_SLOTS)].getInt((int) (slot % SEGMENT_SLOTS) * SLOT_BYTES + 8);
+	}
+
+	private void put(long slot, long state, int cost)
+	{
+		MappedByteBuffer segment = segments[(int) (slot / SEGMENT_SLOTS)];
+		int offset = (int) (slot % SEGMENT_SLOTS) * SLOT_BYTES;
+		segment.putLong(offset, state);
+		segment.putInt(offset + 8, cost + 1);
+	}
+
+	// Getter Methods
+
+	/**
+	 * Get the number of states in the table.
+	 * @return The number of states.
+	 */
+	public long size() { return this.size; }
+
+	/**
+	 * Get the size of the file holding the table.
+	 * @return The number of bytes.
+	 */
+	public long bytes() { return this.capacity * SLOT_BYTES; }
+}
@@ -0,0 +1,585 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import cm3038.search.*;
+
+public class ExternalAstar extends Astar
+{
+	// The most states a bucket holds in memory before they are appended to its file
+	private static final int BUFFER_STATES = 1 << 13;
+	// The fewest states a sorted run reads from disk at a time
+	private static final int MIN_READ_STATES = 1 << 9;
+
+	private java.nio.file.Path directory;
+	private long memoryLimit = 64L << 20;
+
+	// What the last search read and wrote, and how big its closed table grew
+	private long bytesRead, bytesWritten, ioNanos, tableBytes;
+
+	// The state of the search being run
+	private java.nio.file.Path workDirectory;
+	private TreeMap<Integer, Bucket> open;
+	private long buffered, bufferLimit, duplicates;
+	private int chunkStates, files;
+	private final ByteBuffer transfer = ByteBuffer.allocate(BUFFER_STATES * Long.BYTES);
+
+	/**
+	 * Create an external astar object using a start and goal state, with the heuristic
+	 * Astar uses.
+	 *
+	 * @param start The initial state.
+	 * @param goal  The goal state.
+	 * @throws IllegalArgumentException If the roster holds more than NodeStore.MAX_PEOPLE people,
+	 *                                  or its costs could overflow an int.
+	 */
+	public ExternalAstar(State start, State goal)
+	{
+		super(start, goal);
+		CompactAstar.checkRoster(start);
+		CompactAstar.checkCosts(start, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Create an external astar object using a start and goal state and a heuristic.
+	 *
+	 * @param start     The initial state.
+	 * @param goal      The goal state.
+	 * @param heuristic The heuristic used to estimate the cost from a state to the goal.
+	 * @throws IllegalArgumentException If the roster holds more than NodeStore.MAX_PEOPLE people,
+	 *                                  or its costs could overflow an int.
+	 */
+	public ExternalAstar(State start, State goal, Heuristic heuristic)
+	{
+		super(start, goal, heuristic);
+		CompactAstar.checkRoster(start);
+		CompactAstar.checkCosts(start, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Search for the cheapest path from the start state to the goal state with the open
+	 * and closed lists on disk, for problems too large for the heap.
+	 *
+	 * The open list is a file of packed states for every f-cost, taken in order of f. A
+	 * state only has one estimate, so its g-cost is not written but worked out again as
+	 * its f-cost less its estimate. States are appended to their bucket without looking
+	 * for duplicates, and the duplicates are only dropped when the bucket's turn comes: it
+	 * is sorted, on disk in runs no larger than the memory limit if need be, the runs are
+	 * merged so repeats sit side by side, and every state left is checked against the
+	 * closed list. The closed list is a DiskTable of the cheapest cost each expanded
+	 * state was reached at, mapped into memory from a file.
+	 *
+	 * Half the memory limit buffers states on their way to their buckets and half sorts
+	 * a bucket. The closed table is left to the operating system to page, so it is not
+	 * counted. The path is built from the closed table the same way as CompactAstar
+	 * builds it from its store.
+	 *
+	 * @return The cheapest path to the goal, or null if the goal cannot be reached.
+	 * @throws UncheckedIOException If a file cannot be read or written.
+	 */
+	@Override
+	public Path search()
+	{
+		SearchMetrics metrics = getMetrics();
+		if(metrics == null)
+			return search(null);
+
+		metrics.startSearch();
+		Path path = search(metrics);
+		metrics.endSearch(path);
+		return path;
+	}
+
+	/**
+	 * Search for the cheapest path, recording the steps in the metrics if there are any.
+	 */
+	private Path search(SearchMetrics metrics)
+	{
+		BridgeState start = (BridgeState) startState;
+		Roster roster = start.getRoster();
+		long goal = NodeStore.pack(((BridgeState) goalState).getWestMask(), ((BridgeState) goalState).getTorchLocation());
+
+		bytesRead = bytesWritten = ioNanos = tableBytes = 0;
+		open = new TreeMap<>();
+		buffered = duplicates = 0;
+		bufferLimit = Math.max(memoryLimit / 2 / Long.BYTES, 1);
+		chunkStates = (int) Math.min(memoryLimit / 2 / Long.BYTES, Integer.MAX_VALUE - 8);
+		Crossings crossings = new Crossings();
+
+		try
+		{
+			workDirectory = directory == null ? Files.createTempDirectory("btp-external") : Files.createTempDirectory(directory, "btp-external");
+			// Files are deleted on exit in the reverse order they were registered, so a table
+			// file the DiskTable could not delete yet goes before the directory holding it
+			workDirectory.toFile().deleteOnExit();
+			try (DiskTable closed = new DiskTable(workDirectory.resolve("closed.table"), 1 << 16))
+			{
+				try
+				{
+					bucket(CompactAstar.roundUp(heuristic(start))).add(NodeStore.pack(start.getWestMask(), start.getTorchLocation()));
+					nodeVisited++;
+
+					while(!open.isEmpty())
+					{
+						Map.Entry<Integer, Bucket> entry = open.pollFirstEntry();
+						int f = entry.getKey();
+						try (Merge states = entry.getValue().sort())
+						{
+							while(states.next())
+							{
+								long packed = states.value();
+								BridgeState state = new BridgeState(roster, NodeStore.westBank(packed), NodeStore.torchLocation(packed));
+								int g = f - CompactAstar.roundUp(heuristic(state));
+								if(!closed.improve(packed, g))
+								{
+									duplicates++;
+									continue;
+								}
+								if(packed == goal)
+									return CompactAstar.buildPath(start, packed, g, closed::get);
+
+								nodeExpanded++;
+								long started = 0, heuristicBefore = 0;
+								int visitedBefore = nodeVisited;
+								if(metrics != null)
+								{
+									metrics.expanded++;
+									heuristicBefore = metrics.heuristicNanos;
+									started = System.nanoTime();
+								}
+
+								TorchDirection direction = BridgeState.switchTorchLocation(state.getTorchLocation());
+								crossings.reset(state);
+								while(crossings.next())
+								{
+									long group = crossings.group();
+									long west = roster.canonical(state.westAfter(group));
+									int cost = Math.addExact(g, roster.slowest(group));
+									bucket(Math.addExact(cost, CompactAstar.roundUp(heuristic(new BridgeState(roster, west, direction))))).add(NodeStore.pack(west, direction));
+									nodeVisited++;
+								}
+
+								// The time spent on the heuristic and writing buckets is counted on its own
+								if(metrics != null)
+								{
+									metrics.openSize((int) Math.min(buffered, Integer.MAX_VALUE));
+									metrics.generated += nodeVisited - visitedBefore;
+									metrics.successorNanos += System.nanoTime() - started - (metrics.heuristicNanos - heuristicBefore);
+								}
+							}
+						}
+					}
+					return null;
+				}
+				finally
+				{
+					tableBytes = closed.bytes();
+				}
+			}
+			finally
+			{
+				if(metrics != null)
+				{
+					metrics.duplicates += duplicates;
+					metrics.bytesRead += bytesRead;
+					metrics.bytesWritten += bytesWritten;
+					metrics.ioNanos += ioNanos;
+				}
+				open = null;
+				delete(workDirectory);
+			}
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Get the bucket of an f-cost, creating it if there is none.
+	 */
+	private Bucket bucket(int f)
+	{
+		return open.computeIfAbsent(f, key -> new Bucket(workDirectory.resolve("bucket-" + f)));
+	}
+
+	/**
+	 * Append states to the end of a file.
+	 */
+	private void write(FileChannel channel, long[] states, int from, int count) throws IOException
+	{
+		long started = System.nanoTime();
+		for(int done=0; done<count; )
+		{
+			int n = Math.min(count - done, BUFFER_STATES);
+			transfer.clear();
+			transfer.asLongBuffer().put(states, from + done, n);
+			transfer.limit(n * Long.BYTES);
+			while(transfer.hasRemaining())
+				channel.write(transfer);
+			done += n;
+		}
+		bytesWritten += (long) count * Long.BYTES;
+		ioNanos += System.nanoTime() - started;
+	}
+
+	/**
+	 * Read states from the position of a file.
+	 */
+	private void read(FileChannel channel, long[] states, int from, int count) throws IOException
+	{
+		long started = System.nanoTime();
+		for(int done=0; done<count; )
+		{
+			int n = Math.min(count - done, BUFFER_STATES);
+			transfer.clear();
+			transfer.limit(n * Long.BYTES);
+			while(transfer.hasRemaining())
+				if(channel.read(transfer) < 0)
+					throw new IOException("A bucket file ended early");
+			transfer.flip();
+			transfer.asLongBuffer().get(states, from + done, n);
+			done += n;
+		}
+		bytesRead += (long) count * Long.BYTES;
+		ioNanos += System.nanoTime() - started;
+	}
+
+	/**
+	 * Delete a directory and the files in it. A directory still holding a table file that
+	 * is mapped is left to be deleted on exit.
+	 */
+	private static void delete(java.nio.file.Path directory) throws IOException
+	{
+		boolean left = false;
+		try (DirectoryStream<java.nio.file.Path> files = Files.newDirectoryStream(directory))
+		{
+			for(java.nio.file.Path file : files)
+			{
+				try
+				{
+					Files.deleteIfExists(file);
+				}
+				catch(AccessDeniedException e)
+				{
+					left = true;
+				}
+			}
+		}
+		if(!left)
+			Files.deleteIfExists(directory);
+	}
+
+	/**
+	 * Set the directory the files of a search are made in. Each search makes its own
+	 * directory in it and deletes it when done.
+	 * @param directory The directory, or null for the default temporary directory.
+	 */
+	public void setDirectory(java.nio.file.Path directory)
+	{
+		this.directory = directory;
+	}
+
+	/**
+	 * Set the most heap memory a search uses for the states of its open list.
+	 * @param bytes The number of bytes, 64MB by default.
+	 * @throws IllegalArgumentException If the limit is below 4KB.
+	 */
+	public void setMemoryLimit(long bytes)
+	{
+		if(bytes < 1 << 12)
+			throw new IllegalArgumentException(String.format("The memory limit must be at least 4KB, got %d bytes", bytes));
+		this.memoryLimit = bytes;
+	}
+
+	// Getter Methods
+
+	/**
+	 * Get the most heap memory a search uses for the states of its open list.
+	 * @return The number of bytes.
+	 */
+	public long getMemoryLimit() { return this.memoryLimit; }
+
+	/**
+	 * Get the number of bytes the last search read from its bucket files.
+	 * @return The number of bytes.
+	 */
+	public long getBytesRead() { return this.bytesRead; }
+
+	/**
+	 * Get the number of bytes the last search wrote to its bucket files.
+	 * @return The number of bytes.
+	 */
+	public long getBytesWritten() { return this.bytesWritten; }
+
+	/**
+	 * Get the time the last search spent reading and writing its bucket files.
+	 * @return The time in nanoseconds.
+	 */
+	public long getIoNanos() { return this.ioNanos; }
+
+	/**
+	 * Get the rate the last search read and wrote its bucket files at.
+	 * @return The bytes read and written per second, or 0 if there were none.
+	 */
+	public double getThroughput() { return ioNanos == 0 ? 0 : (bytesRead + bytesWritten) / (ioNanos / 1e9); }
+
+	/**
+	 * Get the size of the file the closed table of the last search grew to.
+	 * @return The number of bytes.
+	 */
+	public long getTableBytes() { return this.tableBytes; }
+
+	/**
+	 * The states of one f-cost on the open list, kept in memory until there
+	 * are too many and then appended to a file.
+	 */
+	private final class Bucket
+	{
+		private final java.nio.file.Path file;
+		private long[] states = new long[16];
+		private int size;
+		private long written;
+
+		Bucket(java.nio.file.Path file)
+		{
+			this.file = file;
+		}
+
+		/**
+		 * Add a state. If that takes the memory limit, the buckets furthest from their turn
+		 * are written out until half the limit is free.
+		 */
+		void add(long state) throws IOException
+		{
+			if(size == states.length)
+			{
+				if(size < BUFFER_STATES)
+					states = Arrays.copyOf(states, size * 2);
+				else
+					flush();
+			}
+			states[size++] = state;
+
+			if(++buffered > bufferLimit)
+				for(Bucket bucket : open.descendingMap().values())
+				{
+					bucket.flush();
+					if(buffered <= bufferLimit / 2)
+						break;
+				}
+		}
+
+		/**
+		 * Append the states held in memory to the file.
+		 */
+		void flush() throws IOException
+		{
+			if(size == 0)
+				return;
+
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND))
+			{
+				write(channel, states, 0, size);
+			}
+			written += size;
+			buffered -= size;
+			size = 0;
+		}
+
+		/**
+		 * Sort the states of the bucket into runs and merge them. A bucket that fits in
+		 * half the memory limit is sorted in one go; a larger one has its file sorted a
+		 * chunk at a time into run files, which the merge reads back a block at a time.
+		 */
+		Merge sort() throws IOException
+		{
+			List<Run> runs = new ArrayList<>();
+			buffered -= size;
+			try
+			{
+				if(written + size <= chunkStates)
+				{
+					long[] all = new long[(int) written + size];
+					System.arraycopy(states, 0, all, (int) written, size);
+					if(written > 0)
+						try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+						{
+							read(channel, all, 0, (int) written);
+						}
+					Arrays.sort(all);
+					runs.add(new Run(all));
+					return new Merge(runs);
+				}
+
+				int count = (int) ((written + chunkStates - 1) / chunkStates);
+				int readStates = Math.max(chunkStates / (count + 1), MIN_READ_STATES);
+				long[] chunk = new long[(int) Math.min(written, chunkStates)];
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+				{
+					for(long left=written; left>0; )
+					{
+						int n = (int) Math.min(left, chunk.length);
+						read(channel, chunk, 0, n);
+						Arrays.sort(chunk, 0, n);
+
+						java.nio.file.Path run = workDirectory.resolve("run-" + files++);
+						try (FileChannel out = FileChannel.open(run, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))
+						{
+							write(out, chunk, 0, n);
+						}
+						runs.add(new Run(run, n, readStates));
+						left -= n;
+					}
+				}
+
+				Arrays.sort(states, 0, size);
+				runs.add(new Run(Arrays.copyOf(states, size)));
+				return new Merge(runs);
+			}
+			catch(IOException | RuntimeException e)
+			{
+				for(Run run : runs)
+					run.close();
+				throw e;
+			}
+			finally
+			{
+				states = null;
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	/**
+	 * A sorted run of states, either in memory or read from a file a block at a time.
+	 */
+	private final class Run implements Closeable
+	{
+		private final long[] states;
+		private final FileChannel channel;
+		private final java.nio.file.Path file;
+		private int index, length;
+		private long left;
+		private long value;
+
+		Run(long[] sorted)
+		{
+			this.states = sorted;
+			this.length = sorted.length;
+			this.channel = null;
+			this.file = null;
+		}
+
+		Run(java.nio.file.Path file, long count, int readStates) throws IOException
+		{
+			this.states = new long[(int) Math.min(count, readStates)];
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			this.file = file;
+			this.left = count;
+		}
+
+		/**
+		 * Move on to the next state of the run.
+		 * @return false if the run has been used up.
+		 */
+		boolean next() throws IOException
+		{
+			if(index == length)
+			{
+				if(left == 0)
+					return false;
+				length = (int) Math.min(left, states.length);
+				read(channel, states, 0, length);
+				left -= length;
+				index = 0;
+			}
+			value = states[index++];
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if(channel != null)
+			{
+				channel.close();
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	/**
+	 * Merges sorted runs into one sorted sequence of states, leaving out repeats.
+	 */
+	private final class Merge implements Closeable
+	{
+		private final List<Run> runs;
+		private final PriorityQueue<Run> queue = new PriorityQueue<>(Comparator.comparingLong((Run run) -> run.value));
+		private boolean started;
+		private long value;
+
+		Merge(List<Run> runs) throws IOException
+		{
+			this.runs = runs;
+			for(Run run : runs)
+				if(run.next())
+					queue.add(run);
+		}
+
+		/**
+		 * Move on to the next state that differs from the last.
+		 * @return false if every run has been used up.
+		 */
+		boolean next() throws IOException
+		{
+			while(!queue.isEmpty())
+			{
+				Run run = queue.poll();
+				long state = run.value;
+				if(run.next())
+					queue.add(run);
+
+				if(started && state == value)
+				{
+					duplicates++;
+					continue;
+				}
+				started = true;
+				value = state;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Get the state the merge is on.
+		 */
+		long value() { return this.value; }
+
+		@Override
+		public void close() throws IOException
+		{
+			for(Run run : runs)
+				run.close();
+		}
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+
+public interface Heuristic 
+{
+	// Estimates every state as 0, which turns A* into a uniform-cost search
+	Heuristic NONE = new Heuristic()
+	{
+		@Override
+		public double estimate(BridgeState state, BridgeState goal) { return 0; }
+		
+		@Override
+		public String toString() { return "none"; }
+	};
+	
+	/**
+	 * Estimate the cost of getting from a state to the goal state.
+	 * 
+	 * For A* to return the cheapest path the estimate must never be more than the real
+	 * cost. Implementations are called for every generated node, so they should only
+	 * read the masks of the two states and the roster, and must not allocate.
+	 * 
+	 * @param state The state to estimate from.
+	 * @param goal  The goal state.
+	 * @return A lower bound on the cost of reaching the goal.
+	 */
+	double estimate(BridgeState state, BridgeState goal);
+}
@@ -0,0 +1,156 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import cm3038.search.*;
+
+public class IDAstar extends Astar
+{
+	private final TranspositionTable table;
+	private final List<Integer> iterationNodes = new ArrayList<>();
+
+	// The steps from the start state to the state being searched, and the states on it
+	private final Deque<ActionStatePair> steps = new ArrayDeque<>();
+	private final Set<State> onPath = new HashSet<>();
+
+	private double bound, nextBound;
+	private int iteration;
+
+	/**
+	 * Create an iterative deepening astar object using a start and goal state, with the
+	 * same heuristic Astar uses and no transposition table.
+	 *
+	 * @param start The initial state.
+	 * @param goal  The goal state.
+	 */
+	public IDAstar(State start, State goal)
+	{
+		super(start, goal);
+		this.table = null;
+	}
+
+	/**
+	 * Create an iterative deepening astar object using a start and goal state, a
+	 * heuristic and a transposition table.
+	 *
+	 * @param start     The initial state.
+	 * @param goal      The goal state.
+	 * @param heuristic The heuristic used to estimate the cost from a state to the goal.
+	 * @param tableSize The largest number of states the transposition table holds, or 0
+	 *                  for no table.
+	 */
+	public IDAstar(State start, State goal, Heuristic heuristic, int tableSize)
+	{
+		super(start, goal, heuristic);
+		this.table = tableSize > 0 ? new TranspositionTable(tableSize) : null;
+	}
+
+	/**
+	 * Search for the cheapest path from the start state to the goal state.
+	 *
+	 * Each iteration is a depth-first search that gives up on any state whose f-cost is
+	 * over a bound, starting from the estimate of the start state. The next bound is the
+	 * smallest f-cost that went over, so with a heuristic that never over-estimates the
+	 * first goal found is the cheapest. Only the current path is kept, so memory grows
+	 * with the depth of the solution rather than the number of states; states already on
+	 * the path are skipped so the search never goes round in a circle.
+	 *
+	 * @return The cheapest path to the goal, or null if the goal cannot be reached.
+	 */
+	@Override
+	public Path search()
+	{
+		bound = heuristic(startState);
+		nodeVisited++;
+
+		while(true)
+		{
+			iteration++;
+			nextBound = Double.POSITIVE_INFINITY;
+			int visitedBefore = nodeVisited;
+
+			onPath.add(startState);
+			boolean found = search(startState, 0);
+			iterationNodes.add(nodeVisited - visitedBefore);
+
+			if(found)
+				return buildPath();
+
+			onPath.remove(startState);
+			if(nextBound == Double.POSITIVE_INFINITY)
+				return null;
+			bound = nextBound;
+		}
+	}
+
+	/**
+	 * Search below a state for the goal without going over the bound.
+	 *
+	 * @param state The state to search from.
+	 * @param g     The cost of the path to the state.
+	 * @return true if the goal was found, leaving the path to it in steps.
+	 */
+	private boolean search(State state, double g)
+	{
+		double f = g + heuristic(state);
+		if(f > bound)
+		{
+			nextBound = Math.min(nextBound, f);
+			return false;
+		}
+
+		if(isGoal(state))
+			return true;
+
+		nodeExpanded++;
+		for(ActionStatePair child : state.successor())
+		{
+			nodeVisited++;
+			double childG = g + child.action.cost;
+			if(onPath.contains(child.state) || (table != null && !table.visit(child.state, childG, iteration)))
+				continue;
+
+			steps.addLast(child);
+			onPath.add(child.state);
+			if(search(child.state, childG))
+				return true;
+			steps.removeLast();
+			onPath.remove(child.state);
+		}
+		return false;
+	}
+
+	/**
+	 * Build the path from the steps to the goal.
+	 */
+	private Path buildPath()
+	{
+		Path path = new Path();
+		path.head = startState;
+		for(ActionStatePair step : steps)
+		{
+			path.add(step);
+			path.cost += step.action.cost;
+		}
+		return path;
+	}
+
+	/**
+	 * Get the number of nodes generated in each iteration, the last being the one that
+	 * found the goal.
+	 * @return The nodes generated per iteration.
+	 */
+	public List<Integer> getIterationNodes()
+	{
+		return Collections.unmodifiableList(iterationNodes);
+	}
+}
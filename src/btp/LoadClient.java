@@ -0,0 +1,206 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public final class LoadClient
+{
+	private final URI solve, stats;
+	private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+	private final List<String> problems;
+
+	private long[] latencies = new long[0];
+	private long requests, failures, nanos;
+
+	/**
+	 * Create a client that loads a solver on the loopback address with random problems.
+	 *
+	 * The problems are drawn from a fixed set, so the same problem is often asked for
+	 * by two clients at once and the solver can coalesce them. They have 2 to 12 people
+	 * taking 1 to 100 to cross, and a bridge that takes 2 to 4.
+	 *
+	 * @param port     The port the solver listens on.
+	 * @param distinct The number of different problems asked for.
+	 * @param seed     The seed of the random problems.
+	 */
+	public LoadClient(int port, int distinct, long seed)
+	{
+		this.solve = URI.create(String.format("http://127.0.0.1:%d/solve", port));
+		this.stats = URI.create(String.format("http://127.0.0.1:%d/stats", port));
+
+		Random random = new Random(seed);
+		this.problems = new ArrayList<String>(distinct);
+		for(int i=0; i<distinct; i++)
+		{
+			StringBuilder line = new StringBuilder();
+			line.append(2 + random.nextInt(3)).append(";W;");
+			int people = 2 + random.nextInt(11);
+			for(int j=0; j<people; j++)
+				line.append(j == 0 ? "" : ",").append('P').append(j).append(':').append(1 + random.nextInt(100));
+			problems.add(line.append(';').toString());
+		}
+	}
+
+	/**
+	 * Run a load test against a running SolverDaemon and print the latencies.
+	 *
+	 * The arguments are optionally the port (3038), the number of clients sending
+	 * requests at the same time (8), the seconds to measure for (10) and the seconds
+	 * to warm the solver up for first (3), which are not measured.
+	 *
+	 * @param args The arguments the program was run with.
+	 * @throws InterruptedException If the thread is interrupted while waiting for the clients.
+	 * @throws IOException If the solver cannot be reached.
+	 */
+	public static void main(String[] args) throws InterruptedException, IOException
+	{
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 3038;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int warmup = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+		LoadClient load = new LoadClient(port, 256, 3038);
+		if(warmup > 0)
+		{
+			load.run(clients, TimeUnit.SECONDS.toNanos(warmup));
+			System.out.println(String.format("Warm up: %s", load));
+		}
+		load.run(clients, TimeUnit.SECONDS.toNanos(seconds));
+		System.out.println(load);
+		System.out.println(String.format("Solver: %s", load.stats()));
+	}
+
+	/**
+	 * Send requests from a number of clients until a time has passed, each client
+	 * sending its next request as soon as it has the answer to the last. The latencies
+	 * of an earlier run are forgotten.
+	 *
+	 * @param clients The number of clients sending requests at the same time.
+	 * @param nanos   How long to send requests for.
+	 * @throws InterruptedException If the thread is interrupted while waiting for the clients.
+	 */
+	public void run(int clients, long nanos) throws InterruptedException
+	{
+		long[][] timings = new long[clients][];
+		int[] counts = new int[clients], failed = new int[clients];
+		Thread[] threads = new Thread[clients];
+
+		long started = System.nanoTime(), deadline = started + nanos;
+		for(int c=0; c<clients; c++)
+		{
+			int id = c;
+			threads[c] = new Thread(() ->
+			{
+				Random random = new Random(id);
+				long[] times = new long[1024];
+				int count = 0;
+				while(System.nanoTime() < deadline)
+				{
+					HttpRequest request = HttpRequest.newBuilder(solve).POST(HttpRequest.BodyPublishers.ofString(problems.get(random.nextInt(problems.size())))).build();
+					long sent = System.nanoTime();
+					try
+					{
+						HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+						if(response.statusCode() != 200 || !response.body().startsWith("{\"index\":0,\"cost\":"))
+							failed[id]++;
+					}
+					catch(IOException e)
+					{
+						failed[id]++;
+					}
+					catch(InterruptedException e)
+					{
+						break;
+					}
+
+					if(count == times.length)
+						times = Arrays.copyOf(times, count * 2);
+					times[count++] = System.nanoTime() - sent;
+				}
+				timings[id] = times;
+				counts[id] = count;
+			}, "btp-load-" + c);
+			threads[c].start();
+		}
+		for(Thread thread : threads)
+			thread.join();
+		this.nanos = System.nanoTime() - started;
+
+		int total = 0;
+		failures = 0;
+		for(int c=0; c<clients; c++)
+		{
+			total += counts[c];
+			failures += failed[c];
+		}
+		latencies = new long[total];
+		for(int c=0, at=0; c<clients; at += counts[c], c++)
+			System.arraycopy(timings[c], 0, latencies, at, counts[c]);
+		Arrays.sort(latencies);
+		requests = total;
+	}
+
+	/**
+	 * Get what the solver has done, as it reports on GET /stats.
+	 * @return The report.
+	 * @throws IOException If the solver cannot be reached.
+	 * @throws InterruptedException If the thread is interrupted while waiting for the answer.
+	 */
+	public String stats() throws IOException, InterruptedException
+	{
+		return client.send(HttpRequest.newBuilder(stats).build(), HttpResponse.BodyHandlers.ofString()).body().trim();
+	}
+
+	/**
+	 * Creates a string to model the LoadClient object.
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format("%d requests, %d failed, %.0f requests/s, latency p50 %.2fms, p90 %.2fms, p99 %.2fms, max %.2fms", requests, failures, requests / (nanos / 1e9), getPercentile(50) / 1e6, getPercentile(90) / 1e6, getPercentile(99) / 1e6, getPercentile(100) / 1e6);
+	}
+
+	// Getter Methods
+
+	/**
+	 * Get a percentile of the latencies of the last run.
+	 * @param percent The percentile, from 0 to 100.
+	 * @return The latency in nanoseconds, or 0 if no request was sent.
+	 */
+	public long getPercentile(double percent)
+	{
+		if(latencies.length == 0)
+			return 0;
+		int rank = (int) Math.ceil(percent / 100 * latencies.length);
+		return latencies[Math.max(0, Math.min(latencies.length - 1, rank - 1))];
+	}
+
+	/**
+	 * Get the number of requests sent in the last run.
+	 * @return The number of requests.
+	 */
+	public long getRequests() { return this.requests; }
+
+	/**
+	 * Get the number of requests of the last run that failed or were answered wrongly.
+	 * @return The number of failed requests.
+	 */
+	public long getFailures() { return this.failures; }
+
+	/**
+	 * Get the requests answered per second in the last run.
+	 * @return The throughput.
+	 */
+	public double getThroughput() { return nanos == 0 ? 0 : requests / (nanos / 1e9); }
+}
@@ -0,0 +1,34 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.Arrays;
+
+public class MaxHeuristic implements Heuristic
+{
+	private final Heuristic[] heuristics;
+	
+	/**
+	 * Combine several heuristics by taking the largest estimate. If each of them never
+	 * over-estimates then neither does their maximum.
+	 * 
+	 * @param heuristics The heuristics to combine.
+	 */
+	public MaxHeuristic(Heuristic... heuristics)
+	{
+		this.heuristics = heuristics.clone();
+	}
+	
+	@Override
+	public double estimate(BridgeState state, BridgeState goal)
+	{
+		double max = 0;
+		for(int i=0; i<heuristics.length; i++)
+			max = Math.max(max, heuristics[i].estimate(state, goal));
+		return max;
+	}
+	
+	@Override
+	public String toString() { return "max" + Arrays.toString(heuristics); }
+}
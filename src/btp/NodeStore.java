@@ -0,0 +1,388 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+public final class NodeStore
+{
+	// The bit of a packed state set when the torch is on the eastern bank
+	private static final long EAST = Long.MIN_VALUE;
+	// The number of people whose western bank fits beside the torch bit of a packed state
+	public static final int MAX_PEOPLE = Long.SIZE - 1;
+	// The largest f-cost the open list keeps a bucket for
+	public static final int MAX_COST = 1 << 22;
+
+	// One slot per node: its packed state and g
+	private long[] states;
+	private int[] g;
+	// One bit per node, set once it has been expanded
+	private long[] closed;
+	private int size;
+
+	// Open addressing from packed states to nodes, holding node + 1 so 0 is an empty slot
+	private int[] table;
+
+	// The open list as one bucket of nodes per f-cost. A node whose f is lowered is added
+	// to its new bucket, which is emptied first, so by the time its old bucket is reached
+	// it has been closed and is skipped.
+	private int[][] buckets = new int[64][];
+	private int[] bucketSizes = new int[64];
+	private int lowest, open;
+
+	/**
+	 * Create an empty node store.
+	 *
+	 * Every node is a slot in a few primitive arrays instead of an object, so a search
+	 * holding millions of nodes leaves only a handful of arrays for the garbage collector.
+	 * Neither a node's action nor its parent is stored: the parent of a node is found by
+	 * looking up the states it could have been reached from, and the people who crossed
+	 * are the western banks of the two XORed together.
+	 *
+	 * Costs are whole numbers, so the open list is a bucket per f-cost rather than a heap,
+	 * holding 4 bytes per open node. The f-cost of a node is only kept as the bucket it is
+	 * in, so a node is 12 bytes plus its share of the lookup table and open list. There is
+	 * a bucket for every f-cost up to the largest seen, so the store only takes f-costs up
+	 * to MAX_COST; fits() tells if a roster's costs stay under it.
+	 *
+	 * @param capacity The number of nodes the store can hold before it has to grow.
+	 */
+	public NodeStore(int capacity)
+	{
+		capacity = Math.max(capacity, 16);
+		this.states = new long[capacity];
+		this.g = new int[capacity];
+		this.closed = new long[(capacity + 63) >>> 6];
+		this.table = new int[Integer.highestOneBit(capacity - 1) << 2];
+	}
+
+	/**
+	 * Check if the states of a roster can be packed into a store and the f-costs of a
+	 * search of it kept in buckets.
+	 * @param roster The roster.
+	 * @return true if the roster holds at most MAX_PEOPLE people and costBound() is at
+	 *         most MAX_COST.
+	 */
+	public static boolean fits(Roster roster)
+	{
+		return roster.size() <= MAX_PEOPLE && costBound(roster) <= MAX_COST;
+	}
+
+	/**
+	 * Get a bound on the f-costs a search of a roster puts on the open list.
+	 *
+	 * With room for two, the fastest person can walk everyone over one at a time, so the
+	 * goal is at most 2n + 1 crossings away from any state. The search only expands nodes
+	 * up to the cheapest cost, and a child is one crossing further on with at most that
+	 * far left, so no f-cost is over (4n + 3) times the slowest crossing.
+	 *
+	 * @param roster The roster.
+	 * @return The bound.
+	 */
+	public static long costBound(Roster roster)
+	{
+		return (4L * roster.size() + 3) * roster.slowest(roster.everyone());
+	}
+
+	/**
+	 * Pack a state into a long: its western bank mask, with the top bit set if the torch
+	 * is on the eastern bank.
+	 */
+	public static long pack(long westBank, TorchDirection torchLocation)
+	{
+		return torchLocation == TorchDirection.EAST ? westBank | EAST : westBank;
+	}
+
+	/**
+	 * Get the western bank mask of a packed state.
+	 */
+	public static long westBank(long packed)
+	{
+		return packed & ~EAST;
+	}
+
+	/**
+	 * Get the torch location of a packed state.
+	 */
+	public static TorchDirection torchLocation(long packed)
+	{
+		return (packed & EAST) != 0 ? TorchDirection.EAST : TorchDirection.WEST;
+	}
+
+	/**
+	 * Add a node that is not yet in the store. It is not put on the open list.
+	 *
+	 * @param state The packed state of the node.
+	 * @param cost  The cost of the path from the start node, g.
+	 * @return The node.
+	 */
+	public int add(long state, int cost)
+	{
+		if(size == states.length)
+			grow();
+
+		int node = size++;
+		states[node] = state;
+		this.g[node] = cost;
+
+		// Linear probing stays short up to a table 80% full
+		if(size * 5L > table.length * 4L)
+			rehash(table.length * 2);
+		insert(node);
+		return node;
+	}
+
+	/**
+	 * Find the node of a state.
+	 * @param state The packed state.
+	 * @return The node, or -1 if the state is not in the store.
+	 */
+	public int find(long state)
+	{
+		int mask = table.length - 1;
+		for(int slot = slot(state, mask); table[slot] != 0; slot = (slot + 1) & mask)
+			if(states[table[slot] - 1] == state)
+				return table[slot] - 1;
+		return -1;
+	}
+
+	/**
+	 * Give a node a cheaper path from the start node. It should then be pushed again with
+	 * its lower f-cost.
+	 *
+	 * @param node The node.
+	 * @param cost The new cost of the path from the start node.
+	 */
+	public void lower(int node, int cost)
+	{
+		g[node] = cost;
+	}
+
+	/**
+	 * Put a node on the open list, or move it up the list after its f-cost has dropped.
+	 * A closed node is opened again.
+	 * @param node The node.
+	 * @param f    The cost of the node plus its estimate to the goal.
+	 * @throws IllegalArgumentException If f is negative or over MAX_COST.
+	 */
+	public void push(int node, int f)
+	{
+		if(f < 0 || f > MAX_COST)
+			throw new IllegalArgumentException(String.format("An f-cost of %d is past the last bucket, %d", f, MAX_COST));
+		closed[node >>> 6] &= ~(1L << node);
+
+		int key = f;
+		if(key >= buckets.length)
+		{
+			int length = Math.max(key + 1, buckets.length * 2);
+			buckets = Arrays.copyOf(buckets, length);
+			bucketSizes = Arrays.copyOf(bucketSizes, length);
+		}
+
+		int[] bucket = buckets[key];
+		if(bucket == null)
+			bucket = buckets[key] = new int[16];
+		else if(bucketSizes[key] == bucket.length)
+			bucket = buckets[key] = Arrays.copyOf(bucket, bucket.length * 2);
+		bucket[bucketSizes[key]++] = node;
+
+		open++;
+		if(key < lowest)
+			lowest = key;
+	}
+
+	/**
+	 * Take the open node with the lowest f-cost off the open list and close it. Among
+	 * nodes of the same f-cost the last one added is taken, which favours the deepest.
+	 * @return The node, or -1 if the open list is empty.
+	 */
+	public int pop()
+	{
+		while(open > 0)
+		{
+			while(bucketSizes[lowest] == 0)
+			{
+				// A bucket that has been emptied is let go
+				buckets[lowest] = null;
+				lowest++;
+			}
+
+			int node = buckets[lowest][--bucketSizes[lowest]];
+			open--;
+
+			// An entry left behind by a node that was added again at a lower cost
+			if(isClosed(node))
+				continue;
+			closed[node >>> 6] |= 1L << node;
+			return node;
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the number of nodes waiting on the open list, counting any left behind by a
+	 * node added again at a lower cost.
+	 * @return The number of nodes.
+	 */
+	public int openSize()
+	{
+		return this.open;
+	}
+
+	/**
+	 * Get the number of bytes held by the arrays of the store.
+	 * @return The number of bytes.
+	 */
+	public long bytes()
+	{
+		long bytes = states.length * 8L + g.length * 4L + closed.length * 8L + table.length * 4L;
+		bytes += buckets.length * 8L + bucketSizes.length * 4L;
+		for(int[] bucket : buckets)
+			if(bucket != null)
+				bytes += bucket.length * 4L;
+		return bytes;
+	}
+
+	/**
+	 * Write the nodes and open list of the store, so that a search can carry on from
+	 * them later. The buckets are written in the order their nodes will be taken, so the
+	 * search goes on exactly as it would have. The lookup table is not written, as it is
+	 * rebuilt from the states.
+	 *
+	 * @param out The output to write to.
+	 * @throws IOException If the output cannot be written.
+	 */
+	void writeTo(DataOutput out) throws IOException
+	{
+		out.writeInt(size);
+		for(int node=0; node<size; node++)
+		{
+			out.writeLong(states[node]);
+			out.writeInt(g[node]);
+		}
+		for(int word=0; word<(size + 63) >>> 6; word++)
+			out.writeLong(closed[word]);
+
+		out.writeInt(lowest);
+		out.writeInt(open);
+		for(int key=lowest; key<buckets.length; key++)
+		{
+			if(bucketSizes[key] == 0)
+				continue;
+			out.writeInt(key);
+			out.writeInt(bucketSizes[key]);
+			for(int i=0; i<bucketSizes[key]; i++)
+				out.writeInt(buckets[key][i]);
+		}
+		out.writeInt(-1);
+	}
+
+	/**
+	 * Read a store written by writeTo.
+	 *
+	 * @param in The input to read from.
+	 * @return The store.
+	 * @throws IOException If the input cannot be read or is not a store.
+	 */
+	static NodeStore readFrom(DataInput in) throws IOException
+	{
+		int size = in.readInt();
+		if(size < 0)
+			throw new IOException(String.format("A node store cannot hold %d nodes", size));
+
+		NodeStore store = new NodeStore(size + (size >>> 1));
+		for(int node=0; node<size; node++)
+		{
+			store.states[node] = in.readLong();
+			store.g[node] = in.readInt();
+		}
+		for(int word=0; word<(size + 63) >>> 6; word++)
+			store.closed[word] = in.readLong();
+
+		store.size = size;
+		store.table = new int[Math.max(Integer.highestOneBit(size * 5 / 4 + 1) << 1, store.table.length)];
+		for(int node=0; node<size; node++)
+			store.insert(node);
+
+		store.lowest = in.readInt();
+		store.open = in.readInt();
+		for(int key; (key = in.readInt()) >= 0; )
+		{
+			int count = in.readInt();
+			if(key >= store.buckets.length)
+			{
+				store.buckets = Arrays.copyOf(store.buckets, key + 1);
+				store.bucketSizes = Arrays.copyOf(store.bucketSizes, key + 1);
+			}
+			int[] bucket = store.buckets[key] = new int[Math.max(count, 16)];
+			for(int i=0; i<count; i++)
+				if((bucket[i] = in.readInt()) < 0 || bucket[i] >= size)
+					throw new IOException(String.format("Node %d is not in the store", bucket[i]));
+			store.bucketSizes[key] = count;
+		}
+		return store;
+	}
+
+	/**
+	 * Make room for more nodes, growing by half so a large search does not waste much.
+	 */
+	private void grow()
+	{
+		int capacity = states.length + (states.length >>> 1);
+		states = Arrays.copyOf(states, capacity);
+		g = Arrays.copyOf(g, capacity);
+		closed = Arrays.copyOf(closed, (capacity + 63) >>> 6);
+	}
+
+	private void rehash(int length)
+	{
+		table = new int[length];
+		for(int node=0; node<size - 1; node++)
+			insert(node);
+	}
+
+	private void insert(int node)
+	{
+		int mask = table.length - 1;
+		int slot = slot(states[node], mask);
+		while(table[slot] != 0)
+			slot = (slot + 1) & mask;
+		table[slot] = node + 1;
+	}
+
+	private static int slot(long state, int mask)
+	{
+		long hash = state * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	// Getter Methods
+
+	/**
+	 * Get the number of nodes in the store.
+	 * @return The number of nodes.
+	 */
+	public int size() { return this.size; }
+
+	/**
+	 * Get the packed state of a node.
+	 * @return The packed state.
+	 */
+	public long state(int node) { return this.states[node]; }
+
+	/**
+	 * Get the cost of the path from the start node to a node.
+	 * @return The cost, g.
+	 */
+	public int cost(int node) { return this.g[node]; }
+
+	/**
+	 * Check if a node has been expanded.
+	 * @return true if the node is closed.
+	 */
+	public boolean isClosed(int node) { return (closed[node >>> 6] & 1L << node) != 0; }
+}
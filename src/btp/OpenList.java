@@ -0,0 +1,161 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.Arrays;
+import java.util.function.ToDoubleFunction;
+
+public class OpenList 
+{
+	private SearchNode[] heap;
+	private int size;
+	
+	/**
+	 * Create an empty open list.
+	 * @param capacity The number of nodes the list can hold before it has to grow.
+	 */
+	public OpenList(int capacity)
+	{
+		this.heap = new SearchNode[Math.max(capacity, 16)];
+	}
+	
+	/**
+	 * Add a node to the open list.
+	 * @param node The node, which must not already be on the list.
+	 */
+	public void add(SearchNode node)
+	{
+		if(size == heap.length)
+			heap = Arrays.copyOf(heap, size * 2);
+		
+		heap[size] = node;
+		node.heapIndex = size;
+		siftUp(size++);
+	}
+	
+	/**
+	 * Remove the node with the lowest f-cost from the open list.
+	 * @return The best node, or null if the list is empty.
+	 */
+	public SearchNode poll()
+	{
+		if(size == 0)
+			return null;
+		
+		SearchNode best = heap[0];
+		best.heapIndex = -1;
+		
+		SearchNode last = heap[--size];
+		heap[size] = null;
+		
+		if(size > 0)
+		{
+			heap[0] = last;
+			last.heapIndex = 0;
+			siftDown(0);
+		}
+		return best;
+	}
+	
+	/**
+	 * Get the node with the lowest f-cost without removing it.
+	 * @return The best node, or null if the list is empty.
+	 */
+	public SearchNode peek()
+	{
+		return size == 0 ? null : heap[0];
+	}
+	
+	/**
+	 * Move a node towards the front of the list after its f-cost has been lowered.
+	 * @param node The node, which must be on the list.
+	 */
+	public void decreaseKey(SearchNode node)
+	{
+		siftUp(node.heapIndex);
+	}
+	
+	/**
+	 * Give every node on the list a new f-cost and put the list back in order.
+	 * @param key The function that works out the new f-cost of a node.
+	 */
+	public void rekey(ToDoubleFunction<SearchNode> key)
+	{
+		for(int i=0; i<size; i++)
+			heap[i].f = key.applyAsDouble(heap[i]);
+		for(int i=(size >>> 1) - 1; i>=0; i--)
+			siftDown(i);
+	}
+	
+	/**
+	 * Find the lowest value of a function over every node on the list.
+	 * @param value The function to apply to each node.
+	 * @return The lowest value, or infinity if the list is empty.
+	 */
+	public double minimum(ToDoubleFunction<SearchNode> value)
+	{
+		double lowest = Double.POSITIVE_INFINITY;
+		for(int i=0; i<size; i++)
+			lowest = Math.min(lowest, value.applyAsDouble(heap[i]));
+		return lowest;
+	}
+	
+	/**
+	 * Check if there are no nodes left on the open list.
+	 * @return true if the list is empty.
+	 */
+	public boolean isEmpty() { return size == 0; }
+	
+	/**
+	 * Get the number of nodes on the open list.
+	 * @return The number of nodes.
+	 */
+	public int size() { return size; }
+	
+	/**
+	 * Nodes are ordered on f-cost. Ties go to the node with the higher g-cost
+	 * as it is the one closer to a goal.
+	 */
+	private static boolean before(SearchNode a, SearchNode b)
+	{
+		return a.f < b.f || (a.f == b.f && a.g > b.g);
+	}
+	
+	private void siftUp(int i)
+	{
+		SearchNode node = heap[i];
+		while(i > 0)
+		{
+			int parent = (i - 1) >>> 1;
+			if(!before(node, heap[parent]))
+				break;
+			
+			heap[i] = heap[parent];
+			heap[i].heapIndex = i;
+			i = parent;
+		}
+		heap[i] = node;
+		node.heapIndex = i;
+	}
+	
+	private void siftDown(int i)
+	{
+		SearchNode node = heap[i];
+		int half = size >>> 1;
+		while(i < half)
+		{
+			int child = 2 * i + 1;
+			if(child + 1 < size && before(heap[child + 1], heap[child]))
+				child++;
+			if(!before(heap[child], node))
+				break;
+			
+			heap[i] = heap[child];
+			heap[i].heapIndex = i;
+			i = child;
+		}
+		heap[i] = node;
+		node.heapIndex = i;
+	}
+}
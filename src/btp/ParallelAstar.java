@@ -0,0 +1,362 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import cm3038.search.*;
+
+public class ParallelAstar extends Astar
+{
+	private final int threads;
+
+	// The work left anywhere: messages not yet received, expansions under way and
+	// workers holding nodes that could still lead to a cheaper solution
+	private final AtomicLong work = new AtomicLong();
+	private volatile double bestCost = Double.POSITIVE_INFINITY;
+	private SearchNode bestGoal;
+	// The first thing thrown by a worker, which stops every worker
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	private Worker[] workers;
+
+	/**
+	 * Create a parallel astar object using a start and goal state and a number of threads,
+	 * with the heuristic Astar uses.
+	 *
+	 * @param start   The initial state.
+	 * @param goal    The goal state.
+	 * @param threads The number of threads searching.
+	 */
+	public ParallelAstar(State start, State goal, int threads)
+	{
+		super(start, goal);
+		this.threads = checkThreads(threads);
+	}
+
+	/**
+	 * Create a parallel astar object using a start and goal state, a heuristic and a
+	 * number of threads.
+	 *
+	 * @param start     The initial state.
+	 * @param goal      The goal state.
+	 * @param heuristic The heuristic used to estimate the cost from a state to the goal.
+	 *                  It is called from every thread, so it must be thread safe.
+	 * @param threads   The number of threads searching.
+	 */
+	public ParallelAstar(State start, State goal, Heuristic heuristic, int threads)
+	{
+		super(start, goal, heuristic);
+		this.threads = checkThreads(threads);
+	}
+
+	/**
+	 * Search for the cheapest path from the start state to the goal state on several
+	 * threads at once (hash distributed astar).
+	 *
+	 * Every state belongs to one thread, picked from its hash code, and only that thread
+	 * keeps its node, so no lock is needed on the open lists or visited maps. A thread
+	 * expands the best nodes it owns and sends each child to the thread that owns it
+	 * through a lock-free queue. Threads do not expand in exact f-cost order, so the first
+	 * goal found may not be the cheapest: the cost of the best goal so far is shared, and
+	 * the search only ends when no thread holds a node with a lower f-cost and no child is
+	 * on its way to a thread. The result is then the cheapest path, as with Astar.
+	 *
+	 * If a thread throws, including running out of memory, every thread stops and the
+	 * same failure is thrown here.
+	 *
+	 * @return The cheapest path to the goal, or null if the goal cannot be reached.
+	 */
+	@Override
+	public Path search()
+	{
+		failure.set(null);
+		workers = new Worker[threads];
+		for(int i=0; i<threads; i++)
+			workers[i] = new Worker(getMetrics() == null ? null : new SearchMetrics());
+
+		work.incrementAndGet();
+		workers[owner(startState)].inbox.add(new Message(startState, null, null, 0));
+
+		Thread[] running = new Thread[threads];
+		for(int i=0; i<threads; i++)
+		{
+			running[i] = new Thread(workers[i]::run, "hda-" + i);
+			running[i].start();
+		}
+
+		for(Thread thread : running)
+		{
+			try
+			{
+				thread.join();
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the search threads", e);
+			}
+		}
+
+		Throwable thrown = failure.get();
+		if(thrown instanceof RuntimeException)
+			throw (RuntimeException) thrown;
+		if(thrown instanceof Error)
+			throw (Error) thrown;
+		if(thrown != null)
+			throw new IllegalStateException("A search thread failed", thrown);
+
+		for(Worker worker : workers)
+		{
+			nodeVisited += worker.visitedCount;
+			nodeExpanded += worker.expandedCount;
+			if(worker.metrics != null)
+				getMetrics().add(worker.metrics);
+		}
+		return bestGoal == null ? null : buildPath(bestGoal);
+	}
+
+	/**
+	 * Get the number of nodes expanded by each thread, to see how evenly the work was shared.
+	 * @return The nodes expanded per thread, or an empty list before the search has run.
+	 */
+	public List<Integer> getExpandedPerThread()
+	{
+		List<Integer> expanded = new ArrayList<>();
+		if(workers != null)
+			for(Worker worker : workers)
+				expanded.add(worker.expandedCount);
+		return Collections.unmodifiableList(expanded);
+	}
+
+	/**
+	 * Get the number of threads searching.
+	 * @return The number of threads.
+	 */
+	public int getThreads()
+	{
+		return this.threads;
+	}
+
+	/**
+	 * Pick the thread a state belongs to from its hash code.
+	 */
+	private int owner(State state)
+	{
+		int hash = state.hashCode();
+		hash ^= hash >>> 16;
+		return Math.floorMod(hash * 0x9E3779B9, threads);
+	}
+
+	/**
+	 * Record a goal if it is cheaper than the best one so far.
+	 */
+	private synchronized void offerGoal(SearchNode goal)
+	{
+		if(goal.g < bestCost)
+		{
+			bestGoal = goal;
+			bestCost = goal.g;
+		}
+	}
+
+	/**
+	 * Build the path to a goal node by walking back through its parents.
+	 */
+	private Path buildPath(SearchNode goal)
+	{
+		List<ActionStatePair> steps = new ArrayList<>();
+		for(SearchNode node = goal; node.parent != null; node = (SearchNode) node.parent)
+			steps.add(new ActionStatePair(node.action, node.state));
+		Collections.reverse(steps);
+
+		Path path = new Path();
+		path.head = startState;
+		for(ActionStatePair step : steps)
+		{
+			path.add(step);
+			path.cost += step.action.cost;
+		}
+		return path;
+	}
+
+	private static int checkThreads(int threads)
+	{
+		if(threads < 1)
+			throw new IllegalArgumentException(String.format("Need at least 1 thread, got %d", threads));
+		return threads;
+	}
+
+	/**
+	 * A state sent to the thread that owns it, with the path it was reached by.
+	 */
+	private static final class Message
+	{
+		final State state;
+		final SearchNode parent;
+		final Action action;
+		final double g;
+
+		Message(State state, SearchNode parent, Action action, double g)
+		{
+			this.state = state;
+			this.parent = parent;
+			this.action = action;
+			this.g = g;
+		}
+	}
+
+	/**
+	 * One thread of the search, with the open list and visited map of the states it owns.
+	 */
+	private final class Worker
+	{
+		final Queue<Message> inbox = new ConcurrentLinkedQueue<>();
+		final Map<State, SearchNode> visited = new HashMap<>(1 << 12);
+		final OpenList open = new OpenList(1 << 12);
+		final Crossings crossings = new Crossings();
+		// The heuristic evaluations of this thread, added to the search's metrics at the end
+		final SearchMetrics metrics;
+
+		// True while this worker counts towards the work because it holds nodes worth expanding
+		boolean holding;
+		int visitedCount, expandedCount;
+
+		Worker(SearchMetrics metrics)
+		{
+			this.metrics = metrics;
+		}
+
+		void run()
+		{
+			try
+			{
+				expandUntilDone();
+			}
+			catch(Throwable e)
+			{
+				// The work this worker held is never finished, so the others stop on the failure
+				failure.compareAndSet(null, e);
+			}
+		}
+
+		void expandUntilDone()
+		{
+			int idle = 0;
+			while(failure.get() == null)
+			{
+				for(Message message; (message = inbox.poll()) != null; )
+				{
+					receive(message);
+					updateHolding();
+					work.decrementAndGet();
+				}
+
+				if(holding)
+				{
+					expand(open.poll());
+					updateHolding();
+					idle = 0;
+					continue;
+				}
+
+				if(work.get() == 0)
+					return;
+
+				// Nothing to do until another thread sends a state
+				if(++idle < 100)
+					Thread.onSpinWait();
+				else
+					LockSupport.parkNanos(10000);
+			}
+		}
+
+		/**
+		 * Add a state to this worker's open list, unless it has been reached as cheaply.
+		 */
+		void receive(Message message)
+		{
+			SearchNode existing = visited.get(message.state);
+			if(existing == null)
+			{
+				SearchNode created = new SearchNode(message.state, message.parent, message.action, message.g, heuristic(message.state, metrics));
+				visited.put(message.state, created);
+				if(isGoal(message.state))
+					offerGoal(created);
+				else
+					open.add(created);
+			}
+			else if(message.g < existing.g)
+			{
+				existing.reroute(message.parent, message.action, message.g);
+				if(isGoal(message.state))
+					offerGoal(existing);
+				else if(existing.isOpen())
+					open.decreaseKey(existing);
+				else
+				{
+					existing.closed = false;
+					open.add(existing);
+				}
+			}
+		}
+
+		/**
+		 * Generate the children of a node and send each to the thread that owns it.
+		 */
+		void expand(SearchNode node)
+		{
+			node.closed = true;
+			expandedCount++;
+
+			BridgeState state = (BridgeState) node.state;
+			TorchDirection direction = BridgeState.switchTorchLocation(state.getTorchLocation());
+			crossings.reset(state);
+			while(crossings.next())
+			{
+				long group = crossings.group();
+				BridgeState child = state.nextState(group);
+				double g = node.g + state.getRoster().slowest(group);
+				visitedCount++;
+
+				// A child that cannot beat the best goal is never sent
+				if(g >= bestCost)
+					continue;
+
+				Message message = new Message(child, node, new BridgeAction(state.getRoster(), group, direction), g);
+				Worker target = workers[owner(child)];
+				if(target == this)
+					receive(message);
+				else
+				{
+					work.incrementAndGet();
+					target.inbox.add(message);
+				}
+			}
+		}
+
+		/**
+		 * Count this worker towards the work while its best node could still lead to a
+		 * cheaper goal than the best so far.
+		 */
+		void updateHolding()
+		{
+			boolean worthExpanding = !open.isEmpty() && open.peek().f < bestCost;
+			if(worthExpanding && !holding)
+				work.incrementAndGet();
+			else if(!worthExpanding && holding)
+				work.decrementAndGet();
+			holding = worthExpanding;
+		}
+	}
+}
@@ -0,0 +1,369 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class PatternDatabase implements Heuristic
+{
+	private static final int MAGIC = 0x42504442; // "BPDB"
+	private static final int VERSION = 1;
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	// The slice of the roster the database covers: roster positions first .. first + size - 1
+	private final int first, size;
+	// The number of people outside the slice
+	private final int others;
+	private final int capacity;
+	private final long goalPattern;
+	private final TorchDirection goalTorch;
+	private final int[] times;
+	private final int freeTime;
+
+	// Exact abstract cost, indexed by the pattern on the western bank, the number of
+	// people outside the pattern on the western bank and the torch
+	private final IntBuffer table;
+
+	private PatternDatabase(int first, int size, int others, int capacity, long goalPattern, TorchDirection goalTorch, int[] times, int freeTime, IntBuffer table)
+	{
+		this.first = first;
+		this.size = size;
+		this.others = others;
+		this.capacity = capacity;
+		this.goalPattern = goalPattern;
+		this.goalTorch = goalTorch;
+		this.times = times;
+		this.freeTime = freeTime;
+		this.table = table;
+	}
+
+	/**
+	 * Build a pattern database over the k slowest people on the roster.
+	 *
+	 * @param goal     The goal state the database estimates the cost to.
+	 * @param k        The number of people in the pattern.
+	 * @param capacity The capacity of the bridge.
+	 * @return The pattern database.
+	 */
+	public static PatternDatabase slowest(BridgeState goal, int k, int capacity)
+	{
+		int n = goal.getRoster().size();
+		k = Math.min(k, n);
+		return build(goal, n - k, k, capacity);
+	}
+
+	/**
+	 * Build a pattern database over a slice of the roster.
+	 *
+	 * A state is abstracted down to the positions of the people in the slice, how many of
+	 * everyone else are on the western bank, and the torch. The people outside the slice
+	 * are treated as interchangeable copies of the fastest of them, and a group with people
+	 * from the slice costs its slowest member from the slice, so no abstract crossing costs
+	 * more than the real crossing it stands for.
+	 * The abstract space is solved exactly by searching back from the goal, so each entry
+	 * is a lower bound on the real cost of any state that abstracts to it.
+	 *
+	 * Databases over disjoint slices can be combined with a MaxHeuristic. Adding them is
+	 * not safe, as one crossing can carry people from both slices.
+	 *
+	 * @param goal     The goal state the database estimates the cost to.
+	 * @param first    The roster position of the fastest person in the slice.
+	 * @param size     The number of people in the slice. The table has
+	 *                 2^(size + 1) * (people outside the slice + 1) entries.
+	 * @param capacity The capacity of the bridge.
+	 * @return The pattern database.
+	 */
+	public static PatternDatabase build(BridgeState goal, int first, int size, int capacity)
+	{
+		Roster roster = goal.getRoster();
+		if(size < 0 || first < 0 || first + size > roster.size())
+			throw new IllegalArgumentException(String.format("Cannot build a pattern over roster positions %d to %d of %d", first, first + size - 1, roster.size()));
+		
+		int others = roster.size() - size;
+		if(size > 30 || (2L << size) * (others + 1) > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException(String.format("A pattern of %d people out of %d is too large to tabulate", size, roster.size()));
+
+		int[] times = new int[size];
+		for(int i=0; i<size; i++)
+			times[i] = roster.time(first + i);
+
+		// The fastest person outside the slice, who can carry the torch on their own
+		int freeTime = UNREACHABLE;
+		if(first > 0)
+			freeTime = roster.time(0);
+		else if(size < roster.size())
+			freeTime = roster.time(size);
+
+		long goalPattern = pattern(goal.getWestMask(), first, size);
+		int goalOthers = Long.bitCount(goal.getWestMask()) - Long.bitCount(goalPattern);
+		int[] costs = solve(times, others, freeTime, capacity, index(goalPattern, goalOthers, others, goal.getTorchLocation()));
+
+		return new PatternDatabase(first, size, others, capacity, goalPattern, goal.getTorchLocation(), times, freeTime, IntBuffer.wrap(costs));
+	}
+
+	/**
+	 * Work out the exact abstract cost of every pattern with Dijkstra's algorithm from the
+	 * goal. Crossings can always be reversed at the same cost, so the distance from the
+	 * goal is the same as the distance to it.
+	 */
+	private static int[] solve(int[] times, int others, int freeTime, int capacity, int goalIndex)
+	{
+		int size = times.length;
+		long everyone = (1L << size) - 1;
+		int[] costs = new int[(2 << size) * (others + 1)];
+		Arrays.fill(costs, UNREACHABLE);
+
+		PrimitiveHeap queue = new PrimitiveHeap(1 << 16);
+		costs[goalIndex] = 0;
+		queue.add(0, goalIndex);
+
+		Combinations groups = new Combinations();
+		while(!queue.isEmpty())
+		{
+			long entry = queue.poll();
+			int cost = (int) (entry >>> 32), index = (int) entry;
+			if(cost != costs[index])
+				continue;
+
+			boolean torchWest = (index & 1) != 0;
+			int othersWest = (index >>> 1) % (others + 1);
+			long west = (index >>> 1) / (others + 1);
+			long torchSide = torchWest ? west : everyone & ~west;
+			int othersTorchSide = torchWest ? othersWest : others - othersWest;
+			TorchDirection torch = torchWest ? TorchDirection.EAST : TorchDirection.WEST;
+
+			// Only people from outside the pattern cross, and they cost the fastest of them
+			for(int moved=1; moved<=Math.min(othersTorchSide, capacity); moved++)
+				relax(costs, queue, cost + freeTime, index(west, othersWest + (torchWest ? -moved : moved), others, torch));
+
+			groups.reset(torchSide, capacity);
+			while(groups.next())
+			{
+				long group = groups.group();
+				long next = torchWest ? west & ~group : west | group;
+				int time = times[63 - Long.numberOfLeadingZeros(group)];
+				
+				for(int moved=0; moved<=Math.min(othersTorchSide, capacity - Long.bitCount(group)); moved++)
+					relax(costs, queue, cost + time, index(next, othersWest + (torchWest ? -moved : moved), others, torch));
+			}
+		}
+		return costs;
+	}
+
+	private static void relax(int[] costs, PrimitiveHeap queue, int cost, int index)
+	{
+		if(cost < costs[index])
+		{
+			costs[index] = cost;
+			queue.add(cost, index);
+		}
+	}
+
+	/**
+	 * Look up the exact abstract cost of a state. The goal passed in must be the one the
+	 * database was built for.
+	 */
+	@Override
+	public double estimate(BridgeState state, BridgeState goal)
+	{
+		long west = state.getWestMask();
+		long pattern = pattern(west, first, size);
+		int cost = table.get(index(pattern, Long.bitCount(west) - Long.bitCount(pattern), others, state.getTorchLocation()));
+		return cost == UNREACHABLE ? Double.POSITIVE_INFINITY : cost;
+	}
+
+	/**
+	 * Save the database so that later runs can load it instead of building it.
+	 *
+	 * @param file The file to write.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void save(Path file) throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer header = ByteBuffer.allocate(headerBytes(size));
+			header.putInt(MAGIC).putInt(VERSION).putInt(first).putInt(size).putInt(others).putInt(capacity).putInt(freeTime);
+			header.putLong(goalPattern).putInt(goalTorch.ordinal());
+			for(int time : times)
+				header.putInt(time);
+			header.flip();
+			write(channel, header);
+
+			ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 16);
+			for(int i=0; i<table.limit(); i++)
+			{
+				if(!chunk.hasRemaining())
+				{
+					chunk.flip();
+					write(channel, chunk);
+					chunk.clear();
+				}
+				chunk.putInt(table.get(i));
+			}
+			chunk.flip();
+			write(channel, chunk);
+		}
+	}
+
+	/**
+	 * Load a saved database by mapping the file into memory, so nothing is copied onto
+	 * the heap. The file has to have been built for the same slice of the roster, the
+	 * same goal and the same bridge capacity.
+	 *
+	 * @param file     The file to load.
+	 * @param goal     The goal state the database must estimate the cost to.
+	 * @param capacity The capacity of the bridge.
+	 * @return The pattern database.
+	 * @throws IOException If the file cannot be read or does not match the problem.
+	 */
+	public static PatternDatabase load(Path file, BridgeState goal, int capacity) throws IOException
+	{
+		Roster roster = goal.getRoster();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			if(channel.size() < headerBytes(0))
+				throw new IOException(String.format("%s is not a pattern database", file));
+			ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(mapped.getInt() != MAGIC || mapped.getInt() != VERSION)
+				throw new IOException(String.format("%s is not a pattern database", file));
+
+			int first = mapped.getInt(), size = mapped.getInt(), others = mapped.getInt(), savedCapacity = mapped.getInt(), freeTime = mapped.getInt();
+			long goalPattern = mapped.getLong();
+			int torch = mapped.getInt();
+			if(size < 0 || size > roster.size() || torch < 0 || torch >= TorchDirection.values().length)
+				throw new IOException(String.format("%s was built for a different problem", file));
+			if(channel.size() < headerBytes(size))
+				throw new IOException(String.format("%s is truncated", file));
+			TorchDirection goalTorch = TorchDirection.values()[torch];
+
+			int[] times = new int[size];
+			for(int i=0; i<size; i++)
+				times[i] = mapped.getInt();
+
+			boolean matches = savedCapacity == capacity && size + others == roster.size() && first >= 0 && first + size <= roster.size()
+					&& goalPattern == pattern(goal.getWestMask(), first, size) && goalTorch == goal.getTorchLocation();
+			for(int i=0; matches && i<size; i++)
+				matches = times[i] == roster.time(first + i);
+
+			if(!matches)
+				throw new IOException(String.format("%s was built for a different problem", file));
+
+			mapped.position(headerBytes(size));
+			IntBuffer table = mapped.slice().asIntBuffer();
+			if(table.limit() != (2 << size) * (others + 1))
+				throw new IOException(String.format("%s is truncated", file));
+
+			return new PatternDatabase(first, size, others, capacity, goalPattern, goalTorch, times, freeTime, table);
+		}
+	}
+
+	/**
+	 * Load the database from a file if it has already been built, otherwise build the
+	 * database over the k slowest people and save it there.
+	 *
+	 * @param file     The file the database is kept in.
+	 * @param goal     The goal state the database estimates the cost to.
+	 * @param k        The number of people in the pattern.
+	 * @param capacity The capacity of the bridge.
+	 * @return The pattern database.
+	 * @throws IOException If the file cannot be read or written.
+	 */
+	public static PatternDatabase loadOrBuild(Path file, BridgeState goal, int k, int capacity) throws IOException
+	{
+		if(file.toFile().isFile())
+		{
+			try
+			{
+				return load(file, goal, capacity);
+			}
+			catch(IOException stale)
+			{
+				// Built for another problem, so build it again below
+			}
+		}
+
+		PatternDatabase database = slowest(goal, k, capacity);
+		database.save(file);
+		return database;
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	private static int headerBytes(int size)
+	{
+		return 7 * Integer.BYTES + Long.BYTES + Integer.BYTES + size * Integer.BYTES;
+	}
+
+	private static long pattern(long westBank, int first, int size)
+	{
+		return (westBank >>> first) & ((1L << size) - 1);
+	}
+
+	private static int index(long pattern, int othersWest, int others, TorchDirection torch)
+	{
+		return (int) ((pattern * (others + 1) + othersWest) << 1) | (torch == TorchDirection.WEST ? 1 : 0);
+	}
+
+	@Override
+	public String toString() { return String.format("pdb[%d..%d]", first, first + size - 1); }
+
+	/**
+	 * A binary heap of (cost, index) pairs packed into longs, so the Dijkstra search over
+	 * millions of patterns does not box anything.
+	 */
+	private static class PrimitiveHeap
+	{
+		private long[] heap;
+		private int size;
+
+		PrimitiveHeap(int capacity) { heap = new long[capacity]; }
+
+		boolean isEmpty() { return size == 0; }
+
+		void add(int cost, int index)
+		{
+			if(size == heap.length)
+				heap = Arrays.copyOf(heap, size * 2);
+
+			long entry = ((long) cost << 32) | (index & 0xFFFFFFFFL);
+			int i = size++;
+			while(i > 0 && heap[(i - 1) >>> 1] > entry)
+			{
+				heap[i] = heap[(i - 1) >>> 1];
+				i = (i - 1) >>> 1;
+			}
+			heap[i] = entry;
+		}
+
+		long poll()
+		{
+			long top = heap[0];
+			long last = heap[--size];
+			int i = 0, half = size >>> 1;
+			while(i < half)
+			{
+				int child = 2 * i + 1;
+				if(child + 1 < size && heap[child + 1] < heap[child])
+					child++;
+				if(heap[child] >= last)
+					break;
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = last;
+			return top;
+		}
+	}
+}
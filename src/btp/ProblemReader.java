@@ -0,0 +1,295 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public final class ProblemReader implements Iterable<ProblemSpec>, Iterator<ProblemSpec>, Closeable
+{
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final ReadableByteChannel channel;
+	private final boolean pruned;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	// The bytes of the line being read, which can span several reads of the buffer
+	private byte[] line = new byte[256];
+	private int length;
+
+	private boolean endOfInput, iterated;
+	private long lineNumber;
+	private ProblemSpec next;
+
+	/**
+	 * Create a reader of problems from a channel, one problem per line.
+	 *
+	 * A line holds the bridge capacity, the bank the torch starts on and the people on
+	 * the western and eastern banks, separated by semicolons. A bank is a comma separated
+	 * list of name:time pairs and may be empty. Blank lines and lines starting with # are
+	 * skipped. The basic problem is written as:
+	 *
+	 * 2;W;Adam:1,Ben:2,Claire:5,Doris:8;
+	 *
+	 * The channel is read a block at a time as problems are asked for, so a file of any
+	 * size can be solved without holding more than one line of it in memory.
+	 *
+	 * @param channel The channel to read from.
+	 * @param pruned  true to prune successors of the problems read.
+	 */
+	public ProblemReader(ReadableByteChannel channel, boolean pruned)
+	{
+		this.channel = channel;
+		this.pruned = pruned;
+		this.buffer.flip();
+	}
+
+	/**
+	 * Open a reader of problems from a file.
+	 *
+	 * @param file   The file to read from.
+	 * @param pruned true to prune successors of the problems read.
+	 * @return The reader.
+	 * @throws IOException If the file cannot be opened.
+	 */
+	public static ProblemReader open(Path file, boolean pruned) throws IOException
+	{
+		return new ProblemReader(FileChannel.open(file, StandardOpenOption.READ), pruned);
+	}
+
+	/**
+	 * Parse one line of the input format into a problem.
+	 *
+	 * @param line   The line to parse.
+	 * @param pruned true to prune successors of the problem.
+	 * @return The problem.
+	 * @throws IllegalArgumentException If the line is not in the input format.
+	 */
+	public static ProblemSpec parse(String line, boolean pruned)
+	{
+		String[] fields = line.split(";", -1);
+		if(fields.length != 4)
+			throw new IllegalArgumentException(String.format("Expected capacity;torch;west;east, got \"%s\"", line));
+
+		int capacity = Integer.parseInt(fields[0].trim());
+		if(capacity < 1)
+			throw new IllegalArgumentException(String.format("The capacity must be at least 1, got %d", capacity));
+
+		return new ProblemSpec(parseBank(fields[2]), parseBank(fields[3]), capacity, parseTorch(fields[1].trim()), pruned);
+	}
+
+	/**
+	 * Write a problem in the input format, so parse() gives back the same problem.
+	 *
+	 * @param spec The problem to write.
+	 * @return The line, without a line break.
+	 */
+	public static String format(ProblemSpec spec)
+	{
+		StringBuilder result = new StringBuilder();
+		result.append(spec.getCapacity()).append(';').append(spec.getTorchLocation() == TorchDirection.WEST ? 'W' : 'E').append(';');
+		formatBank(result, spec.getWest());
+		result.append(';');
+		formatBank(result, spec.getEast());
+		return result.toString();
+	}
+
+	/**
+	 * Get the problems of the input. The input can only be gone through once.
+	 */
+	@Override
+	public Iterator<ProblemSpec> iterator()
+	{
+		if(iterated)
+			throw new IllegalStateException("The problems of a reader can only be iterated once");
+		iterated = true;
+		return this;
+	}
+
+	/**
+	 * Check if there is another problem, reading the next line with one on it.
+	 *
+	 * @throws UncheckedIOException If the channel cannot be read.
+	 * @throws IllegalArgumentException If a line is not in the input format. The line is
+	 *         skipped, so the next call carries on from the line after it.
+	 */
+	@Override
+	public boolean hasNext()
+	{
+		while(next == null)
+		{
+			String text = readLine();
+			if(text == null)
+				return false;
+
+			text = text.trim();
+			if(text.isEmpty() || text.startsWith("#"))
+				continue;
+
+			try
+			{
+				next = parse(text, pruned);
+			}
+			catch(IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException(String.format("Line %d: %s", lineNumber, e.getMessage()), e);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the next problem of the input.
+	 */
+	@Override
+	public ProblemSpec next()
+	{
+		if(!hasNext())
+			throw new NoSuchElementException();
+
+		ProblemSpec result = next;
+		next = null;
+		return result;
+	}
+
+	/**
+	 * Get the number of lines read so far.
+	 * @return The number of lines.
+	 */
+	public long getLineNumber()
+	{
+		return this.lineNumber;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	/**
+	 * Read the next line of the input, refilling the buffer from the channel when it
+	 * runs out.
+	 *
+	 * @return The line without its line break, or null at the end of the input.
+	 */
+	private String readLine()
+	{
+		while(true)
+		{
+			byte[] bytes = buffer.array();
+			int start = buffer.position(), end = buffer.limit();
+			for(int i=start; i<end; i++)
+			{
+				if(bytes[i] == '\n')
+				{
+					append(bytes, start, i - start);
+					buffer.position(i + 1);
+					return takeLine();
+				}
+			}
+			append(bytes, start, end - start);
+			buffer.position(end);
+
+			if(endOfInput)
+				return length > 0 ? takeLine() : null;
+
+			try
+			{
+				buffer.clear();
+				endOfInput = channel.read(buffer) < 0;
+				buffer.flip();
+			}
+			catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Add bytes to the end of the line being read.
+	 */
+	private void append(byte[] bytes, int offset, int count)
+	{
+		if(length + count > line.length)
+			line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+		System.arraycopy(bytes, offset, line, length, count);
+		length += count;
+	}
+
+	/**
+	 * Decode the line that has been read and start a new one.
+	 */
+	private String takeLine()
+	{
+		int end = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+		String text = new String(line, 0, end, StandardCharsets.UTF_8);
+		length = 0;
+		lineNumber++;
+		return text;
+	}
+
+	/**
+	 * Parse a comma separated list of name:time pairs.
+	 */
+	private static List<Person> parseBank(String field)
+	{
+		List<Person> bank = new ArrayList<Person>();
+		for(String entry : field.split(","))
+		{
+			entry = entry.trim();
+			if(entry.isEmpty())
+				continue;
+
+			int colon = entry.lastIndexOf(':');
+			if(colon < 0)
+				throw new IllegalArgumentException(String.format("Expected name:time, got \"%s\"", entry));
+
+			int time = Integer.parseInt(entry.substring(colon + 1).trim());
+			if(time < 0)
+				throw new IllegalArgumentException(String.format("A crossing time cannot be negative, got %d", time));
+			bank.add(new Person(time, entry.substring(0, colon).trim()));
+		}
+		return bank;
+	}
+
+	/**
+	 * Parse the bank the torch starts on, as W, E, WEST or EAST.
+	 */
+	private static TorchDirection parseTorch(String field)
+	{
+		switch(field.toUpperCase())
+		{
+			case "W": case "WEST": return TorchDirection.WEST;
+			case "E": case "EAST": return TorchDirection.EAST;
+			default: throw new IllegalArgumentException(String.format("Expected W or E for the torch, got \"%s\"", field));
+		}
+	}
+
+	/**
+	 * Write a bank as a comma separated list of name:time pairs.
+	 */
+	private static void formatBank(StringBuilder result, List<Person> bank)
+	{
+		for(int i=0; i<bank.size(); i++)
+		{
+			if(i > 0)
+				result.append(',');
+			result.append(bank.get(i).getName()).append(':').append(bank.get(i).getTime());
+		}
+	}
+}
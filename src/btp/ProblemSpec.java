@@ -0,0 +1,180 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import cm3038.search.*;
+
+public final class ProblemSpec 
+{
+	private final List<Person> westBank, eastBank;
+	private final int capacity;
+	private final TorchDirection torchLocation;
+	private final boolean pruned, symmetric;
+	// The western bank the problem starts with, before it is put in canonical form
+	private final long startWest;
+	
+	private final Roster roster;
+	private final BridgeState initialState, goalState;
+	
+	/**
+	 * Create the specification of one problem. Everything a search needs is held here
+	 * and in the roster of its states rather than in static fields, so any number of
+	 * problems can be solved at the same time.
+	 * 
+	 * The goal is for everyone to swap banks, with the torch ending on the opposite bank
+	 * to the one it started on.
+	 * 
+	 * @param westBank      The people starting on the western bank.
+	 * @param eastBank      The people starting on the eastern bank.
+	 * @param capacity      The number of people allowed on the bridge at a given time.
+	 * @param torchLocation The bank the torch starts on.
+	 * @param pruned        true to prune successors when everyone starts on one bank.
+	 */
+	public ProblemSpec(Collection<Person> westBank, Collection<Person> eastBank, int capacity, TorchDirection torchLocation, boolean pruned)
+	{
+		this(westBank, eastBank, capacity, torchLocation, pruned, false);
+	}
+	
+	/**
+	 * Create the specification of one problem, which can treat people with the same
+	 * crossing time as interchangeable.
+	 * 
+	 * When symmetric, people with the same time who start on the same bank are tied, and
+	 * the search only tracks how many people of each tie are on each bank. Since all of a
+	 * tie have to cross, the cost is the same as without ties. restoreNames() turns a
+	 * path found this way back into one that moves named people.
+	 * 
+	 * @param westBank      The people starting on the western bank.
+	 * @param eastBank      The people starting on the eastern bank.
+	 * @param capacity      The number of people allowed on the bridge at a given time.
+	 * @param torchLocation The bank the torch starts on.
+	 * @param pruned        true to prune successors when everyone starts on one bank.
+	 * @param symmetric     true to treat people with the same crossing time as interchangeable.
+	 */
+	public ProblemSpec(Collection<Person> westBank, Collection<Person> eastBank, int capacity, TorchDirection torchLocation, boolean pruned, boolean symmetric)
+	{
+		this.westBank = Collections.unmodifiableList(new ArrayList<>(westBank));
+		this.eastBank = Collections.unmodifiableList(new ArrayList<>(eastBank));
+		this.capacity = capacity;
+		this.torchLocation = torchLocation;
+		this.pruned = pruned;
+		this.symmetric = symmetric;
+		
+		// Pruning relies on everyone heading for the same bank
+		TorchDirection prunedToward = null;
+		if(pruned && (westBank.isEmpty() != eastBank.isEmpty()))
+			prunedToward = westBank.isEmpty() ? TorchDirection.WEST : TorchDirection.EAST;
+		
+		List<Person> everyone = new ArrayList<>(westBank);
+		everyone.addAll(eastBank);
+		this.roster = new Roster(everyone, capacity, prunedToward, symmetric, westBank);
+		
+		this.startWest = roster.maskOf(westBank);
+		this.initialState = new BridgeState(roster, roster.canonical(startWest), torchLocation);
+		this.goalState = new BridgeState(roster, roster.canonical(roster.maskOf(eastBank)), BridgeState.switchTorchLocation(torchLocation));
+	}
+	
+	/**
+	 * Put the names back into a path found for a symmetric problem.
+	 * 
+	 * Every step of the path is replayed from the people the problem starts with. Each
+	 * crossing moves the same number of people of every tie as the step it replaces,
+	 * taking the first listed of them who are on the same bank as the torch, so the
+	 * cost is unchanged and everyone named in an action really is on that bank.
+	 * 
+	 * @param path The path found for the problem.
+	 * @return The path moving named people, or the path itself if the problem is not symmetric.
+	 */
+	public Path restoreNames(Path path)
+	{
+		if(path == null || !symmetric)
+			return path;
+		
+		BridgeState state = new BridgeState(roster, startWest, torchLocation);
+		Path named = new Path();
+		named.head = state;
+		
+		for(ActionStatePair step : path)
+		{
+			long group = roster.matchGroup(((BridgeAction) step.action).maskOn(roster), state.getTorchSideMask());
+			TorchDirection direction = BridgeState.switchTorchLocation(state.getTorchLocation());
+			BridgeAction action = new BridgeAction(roster, group, direction);
+			
+			state = new BridgeState(roster, state.westAfter(group), direction);
+			named.add(new ActionStatePair(action, state));
+			named.cost += action.cost;
+		}
+		return named;
+	}
+	
+	/**
+	 * Creates a string to model the ProblemSpec object.
+	 */
+	@Override
+	public String toString()
+	{
+		return initialState.toString();
+	}
+	
+	// Getter Methods
+	
+	/**
+	 * Get the state the problem starts in.
+	 * @return The initial state.
+	 */
+	public BridgeState getInitialState() { return this.initialState; }
+	
+	/**
+	 * Get the state the problem has to reach.
+	 * @return The goal state.
+	 */
+	public BridgeState getGoalState() { return this.goalState; }
+	
+	/**
+	 * Get the roster shared by every state of the problem.
+	 * @return The roster.
+	 */
+	public Roster getRoster() { return this.roster; }
+	
+	/**
+	 * Get the people starting on the western bank.
+	 * @return The people starting on the western bank.
+	 */
+	public List<Person> getWest() { return this.westBank; }
+	
+	/**
+	 * Get the people starting on the eastern bank.
+	 * @return The people starting on the eastern bank.
+	 */
+	public List<Person> getEast() { return this.eastBank; }
+	
+	/**
+	 * Get the capacity of the bridge.
+	 * @return The number of people allowed on the bridge at a given time.
+	 */
+	public int getCapacity() { return this.capacity; }
+	
+	/**
+	 * Get the bank the torch starts on.
+	 * @return The starting torch location.
+	 */
+	public TorchDirection getTorchLocation() { return this.torchLocation; }
+	
+	/**
+	 * Check if successors are pruned for this problem.
+	 * @return true if pruning was asked for.
+	 */
+	public boolean isPruned() { return this.pruned; }
+	
+	/**
+	 * Check if people with the same crossing time are treated as interchangeable.
+	 * @return true if the problem is symmetric.
+	 */
+	public boolean isSymmetric() { return this.symmetric; }
+}
@@ -0,0 +1,180 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import cm3038.search.*;
+
+public class RecursiveBestFirst extends Astar
+{
+	private final TranspositionTable table;
+	private final List<Integer> iterationNodes = new ArrayList<>();
+
+	// The steps from the start state to the state being searched, and the states on it
+	private final Deque<ActionStatePair> steps = new ArrayDeque<>();
+	private final Set<State> onPath = new HashSet<>();
+
+	private boolean found;
+
+	/**
+	 * Create a recursive best-first search object using a start and goal state, with the
+	 * same heuristic Astar uses and no transposition table.
+	 *
+	 * @param start The initial state.
+	 * @param goal  The goal state.
+	 */
+	public RecursiveBestFirst(State start, State goal)
+	{
+		super(start, goal);
+		this.table = null;
+	}
+
+	/**
+	 * Create a recursive best-first search object using a start and goal state, a
+	 * heuristic and a transposition table.
+	 *
+	 * @param start     The initial state.
+	 * @param goal      The goal state.
+	 * @param heuristic The heuristic used to estimate the cost from a state to the goal.
+	 * @param tableSize The largest number of states the transposition table holds, or 0
+	 *                  for no table.
+	 */
+	public RecursiveBestFirst(State start, State goal, Heuristic heuristic, int tableSize)
+	{
+		super(start, goal, heuristic);
+		this.table = tableSize > 0 ? new TranspositionTable(tableSize) : null;
+	}
+
+	/**
+	 * Search for the cheapest path from the start state to the goal state.
+	 *
+	 * The search goes down the child with the lowest f-cost for as long as it stays under
+	 * the f-cost of the best alternative anywhere above it. When it goes over, it backs up
+	 * and remembers the lowest f-cost found below that child, so it knows how promising the
+	 * child is if it comes back to it. Only the current path and the children of the states
+	 * on it are kept, so memory grows with the depth of the solution.
+	 *
+	 * @return The cheapest path to the goal, or null if the goal cannot be reached.
+	 */
+	@Override
+	public Path search()
+	{
+		double f = heuristic(startState);
+		nodeVisited++;
+
+		onPath.add(startState);
+		search(startState, 0, f, f, Double.POSITIVE_INFINITY);
+		onPath.remove(startState);
+
+		return found ? buildPath() : null;
+	}
+
+	/**
+	 * Search below a state until the goal is found or the backed-up f-cost goes over a bound.
+	 *
+	 * @param state   The state to search from.
+	 * @param g       The cost of the path to the state.
+	 * @param staticF The f-cost of the state from its heuristic.
+	 * @param backedF The f-cost of the state backed up from earlier searches below it.
+	 * @param bound   The f-cost of the best alternative above the state.
+	 * @return The new backed-up f-cost of the state.
+	 */
+	private double search(State state, double g, double staticF, double backedF, double bound)
+	{
+		if(isGoal(state))
+		{
+			found = true;
+			return backedF;
+		}
+
+		nodeExpanded++;
+		List<ActionStatePair> children = new ArrayList<>();
+		List<Double> costs = new ArrayList<>();
+		for(ActionStatePair child : state.successor())
+		{
+			nodeVisited++;
+			double childG = g + child.action.cost;
+			if(onPath.contains(child.state) || (table != null && !table.visit(child.state, childG, 0)))
+				continue;
+
+			children.add(child);
+			costs.add(childG);
+		}
+
+		int count = children.size();
+		if(count == 0)
+			return Double.POSITIVE_INFINITY;
+
+		double[] staticFs = new double[count], fs = new double[count];
+		for(int i=0; i<count; i++)
+		{
+			staticFs[i] = costs.get(i) + heuristic(children.get(i).state);
+			// A child inherits the f-cost of a state that has been backed up, since it was
+			// searched below before
+			fs[i] = staticF < backedF ? Math.max(backedF, staticFs[i]) : staticFs[i];
+		}
+
+		while(true)
+		{
+			int best = 0;
+			for(int i=1; i<count; i++)
+				if(fs[i] < fs[best])
+					best = i;
+
+			if(fs[best] > bound || fs[best] == Double.POSITIVE_INFINITY)
+				return fs[best];
+
+			double alternative = Double.POSITIVE_INFINITY;
+			for(int i=0; i<count; i++)
+				if(i != best && fs[i] < alternative)
+					alternative = fs[i];
+
+			ActionStatePair child = children.get(best);
+			int visitedBefore = nodeVisited;
+
+			steps.addLast(child);
+			onPath.add(child.state);
+			fs[best] = search(child.state, costs.get(best), staticFs[best], fs[best], Math.min(bound, alternative));
+			if(state == startState)
+				iterationNodes.add(nodeVisited - visitedBefore);
+
+			if(found)
+				return fs[best];
+			steps.removeLast();
+			onPath.remove(child.state);
+		}
+	}
+
+	/**
+	 * Build the path from the steps to the goal.
+	 */
+	private Path buildPath()
+	{
+		Path path = new Path();
+		path.head = startState;
+		for(ActionStatePair step : steps)
+		{
+			path.add(step);
+			path.cost += step.action.cost;
+		}
+		return path;
+	}
+
+	/**
+	 * Get the number of nodes generated each time the search went down from the start
+	 * state, the last being the one that found the goal.
+	 * @return The nodes generated per descent from the start state.
+	 */
+	public List<Integer> getIterationNodes()
+	{
+		return Collections.unmodifiableList(iterationNodes);
+	}
+}
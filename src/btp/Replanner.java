@@ -0,0 +1,400 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cm3038.search.*;
+
+public final class Replanner
+{
+	private ProblemSpec spec;
+	private Path path;
+	private int nodeExpanded;
+
+	// Lower bounds on the cost to the goal from the states of the last search, or null if
+	// they cannot be reused
+	private Map<BridgeState, Double> bounds;
+
+	/**
+	 * Create a replanner by solving a problem from scratch.
+	 *
+	 * People are told apart by name from one problem to the next, so every name on the
+	 * roster should be different.
+	 *
+	 * @param spec The problem.
+	 */
+	public Replanner(ProblemSpec spec)
+	{
+		solve(spec, null, null, 0, 1, null);
+	}
+
+	/**
+	 * Solve the problem again with one more person.
+	 *
+	 * @param person The person added.
+	 * @param bank   The bank they start on.
+	 * @return The cheapest path for the new problem, or null if there is none.
+	 */
+	public Path addPerson(Person person, TorchDirection bank)
+	{
+		List<Person> westBank = new ArrayList<>(spec.getWest()), eastBank = new ArrayList<>(spec.getEast());
+		(bank == TorchDirection.WEST ? westBank : eastBank).add(person);
+		return resolve(respec(westBank, eastBank));
+	}
+
+	/**
+	 * Solve the problem again without a person.
+	 *
+	 * @param name The name of the person removed.
+	 * @return The cheapest path for the new problem, or null if there is none.
+	 */
+	public Path removePerson(String name)
+	{
+		List<Person> westBank = new ArrayList<>(spec.getWest()), eastBank = new ArrayList<>(spec.getEast());
+		if(!westBank.removeIf(person -> name.equals(person.getName())) & !eastBank.removeIf(person -> name.equals(person.getName())))
+			throw new IllegalArgumentException(String.format("No one is called %s", name));
+		return resolve(respec(westBank, eastBank));
+	}
+
+	/**
+	 * Solve the problem again with the crossing time of a person changed.
+	 *
+	 * @param name The name of the person.
+	 * @param time Their new crossing time.
+	 * @return The cheapest path for the new problem, or null if there is none.
+	 */
+	public Path changeTime(String name, int time)
+	{
+		List<Person> westBank = new ArrayList<>(spec.getWest()), eastBank = new ArrayList<>(spec.getEast());
+		if(!retime(westBank, name, time) & !retime(eastBank, name, time))
+			throw new IllegalArgumentException(String.format("No one is called %s", name));
+		return resolve(respec(westBank, eastBank));
+	}
+
+	/**
+	 * Solve a problem that differs from the last one in who takes part and their crossing
+	 * times, reusing what is known about the last one.
+	 *
+	 * Two things are carried over. The last path, with people who left dropped, people who
+	 * joined added to the cheapest crossing leaving their bank with room, and the new times,
+	 * is a solution of the new problem if it still works; its cost is then an upper bound,
+	 * and no node whose f-cost reaches it is searched. Second, every state reached by the
+	 * last search at cost g has at least C - g left to the goal, where C was the cost of
+	 * the last path. When no one joined, a new state is matched to the last problem's state
+	 * with everyone who left already on their goal bank, and that bound, shrunk in step with
+	 * any time that got shorter, raises the heuristic. Both keep the result the cheapest
+	 * path, and together they mean far fewer nodes are expanded than in a search from
+	 * scratch after a small change.
+	 *
+	 * @param next The new problem, with the same capacity and torch bank as the last one.
+	 * @return The cheapest path for the new problem, or null if there is none.
+	 * @throws IllegalArgumentException If the capacity or torch bank differ from the last problem.
+	 */
+	public Path resolve(ProblemSpec next)
+	{
+		// The bounds and the repaired path only hold for the same bridge and torch
+		if(next.getCapacity() != spec.getCapacity() || next.getTorchLocation() != spec.getTorchLocation())
+			throw new IllegalArgumentException(String.format("Expected capacity %d and the torch on the %s bank, got %d and %s", spec.getCapacity(), spec.getTorchLocation(), next.getCapacity(), next.getTorchLocation()));
+
+		Roster oldRoster = spec.getRoster(), newRoster = next.getRoster();
+		Map<String, Integer> oldIndex = new HashMap<>();
+		for(int i=0; i<oldRoster.size(); i++)
+			oldIndex.put(oldRoster.get(i).getName(), i);
+
+		// Match each person of the new roster to the last, scaling the bounds down by the
+		// most any crossing time shrank
+		boolean joined = false;
+		int[] index = new int[newRoster.size()];
+		double scale = 1;
+		long matched = 0;
+		for(int i=0; i<newRoster.size(); i++)
+		{
+			Integer old = oldIndex.get(newRoster.get(i).getName());
+			index[i] = old == null ? -1 : old;
+			if(old == null)
+				joined = true;
+			else
+			{
+				matched |= 1L << old;
+				scale = Math.min(scale, (double) newRoster.time(i) / oldRoster.time(old));
+			}
+		}
+
+		// Everyone who left is put on the bank they were heading for
+		long leftWest = oldRoster.everyone() & ~matched & oldRoster.maskOf(spec.getEast());
+
+		boolean reuse = !joined && bounds != null && oldIndex.size() == oldRoster.size() && !next.isSymmetric();
+		return solve(next, repair(next), reuse ? index : null, leftWest, scale, oldRoster);
+	}
+
+	/**
+	 * Solve a problem, keeping what the search learns for the next one.
+	 */
+	private Path solve(ProblemSpec next, Path incumbent, int[] index, long leftWest, double scale, Roster oldRoster)
+	{
+		Search search = new Search(next, incumbent, index == null ? null : bounds, oldRoster, index, leftWest, scale);
+		Path found = search.search();
+
+		this.spec = next;
+		this.path = next.restoreNames(found);
+		this.nodeExpanded = search.nodeExpanded;
+		this.bounds = next.isSymmetric() ? null : search.recorded;
+		return this.path;
+	}
+
+	/**
+	 * Replay the last path on a new problem by names, dropping the people who left and
+	 * adding the people who joined to the crossing leaving their bank that costs the least
+	 * extra, where there is room.
+	 *
+	 * @return The path, or null if it does not reach the goal of the new problem.
+	 */
+	private Path repair(ProblemSpec next)
+	{
+		if(path == null)
+			return null;
+
+		Roster roster = next.getRoster();
+		Map<String, Integer> newIndex = new HashMap<>();
+		for(int i=0; i<roster.size(); i++)
+			newIndex.put(roster.get(i).getName(), i);
+
+		List<Long> groups = new ArrayList<>();
+		List<TorchDirection> directions = new ArrayList<>();
+		for(ActionStatePair step : path)
+		{
+			long group = 0;
+			for(Person person : ((BridgeAction) step.action).getPeople())
+			{
+				Integer i = newIndex.get(person.getName());
+				if(i != null)
+					group |= 1L << i;
+			}
+			groups.add(group);
+			directions.add(((BridgeAction) step.action).getTorchDirection());
+		}
+
+		long known = 0;
+		for(Person person : spec.getWest())
+			known |= newIndex.containsKey(person.getName()) ? 1L << newIndex.get(person.getName()) : 0;
+		for(Person person : spec.getEast())
+			known |= newIndex.containsKey(person.getName()) ? 1L << newIndex.get(person.getName()) : 0;
+
+		long westBank = roster.maskOf(next.getWest());
+		for(int i=0; i<roster.size(); i++)
+		{
+			if((known & 1L << i) != 0)
+				continue;
+
+			// A new person crosses once, away from the bank they start on
+			TorchDirection away = (westBank & 1L << i) != 0 ? TorchDirection.EAST : TorchDirection.WEST;
+			int best = -1, extra = Integer.MAX_VALUE;
+			for(int step=0; step<groups.size(); step++)
+			{
+				long group = groups.get(step);
+				if(directions.get(step) != away || Long.bitCount(group) >= next.getCapacity())
+					continue;
+				int cost = Math.max(roster.slowest(group), roster.time(i)) - roster.slowest(group);
+				if(cost < extra)
+				{
+					best = step;
+					extra = cost;
+				}
+			}
+			if(best < 0)
+				return null;
+			groups.set(best, groups.get(best) | 1L << i);
+		}
+
+		BridgeState state = new BridgeState(roster, westBank, next.getTorchLocation());
+		Path repaired = new Path();
+		repaired.head = state;
+		for(long group : groups)
+		{
+			if(group == 0 || (group & ~state.getTorchSideMask()) != 0)
+				return null;
+
+			TorchDirection direction = BridgeState.switchTorchLocation(state.getTorchLocation());
+			BridgeAction action = new BridgeAction(roster, group, direction);
+			state = new BridgeState(roster, state.westAfter(group), direction);
+			repaired.add(new ActionStatePair(action, state));
+			repaired.cost += action.cost;
+		}
+
+		// A symmetric goal only needs the right number of people of each tie on each bank
+		BridgeState goal = next.getGoalState();
+		boolean reached = next.isSymmetric() ? roster.canonical(state.getWestMask()) == goal.getWestMask() && state.getTorchLocation() == goal.getTorchLocation() : state.equals(goal);
+		return reached ? repaired : null;
+	}
+
+	/**
+	 * Build the next problem with the same settings as the last.
+	 */
+	private ProblemSpec respec(List<Person> westBank, List<Person> eastBank)
+	{
+		return new ProblemSpec(westBank, eastBank, spec.getCapacity(), spec.getTorchLocation(), spec.isPruned(), spec.isSymmetric());
+	}
+
+	/**
+	 * Give a person on a bank a new crossing time, keeping their place on the bank.
+	 * @return true if the person is on the bank.
+	 */
+	private static boolean retime(List<Person> bank, String name, int time)
+	{
+		for(int i=0; i<bank.size(); i++)
+		{
+			if(name.equals(bank.get(i).getName()))
+			{
+				bank.set(i, new Person(time, name));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Getter Methods
+
+	/**
+	 * Get the problem solved last.
+	 * @return The problem.
+	 */
+	public ProblemSpec getSpec() { return this.spec; }
+
+	/**
+	 * Get the cheapest path of the problem solved last.
+	 * @return The path, or null if there is none.
+	 */
+	public Path getPath() { return this.path; }
+
+	/**
+	 * Get the number of nodes expanded solving the problem last.
+	 * @return The number of nodes.
+	 */
+	public int getNodeExpanded() { return this.nodeExpanded; }
+
+	/**
+	 * Astar bounded above by the cost of a known path and with a heuristic raised by the
+	 * bounds learnt from the last search, recording its own bounds for the next one.
+	 */
+	private static final class Search extends Astar
+	{
+		private final Path incumbent;
+		private final Map<BridgeState, Double> bounds;
+		private final Roster oldRoster;
+		private final int[] index;
+		private final long leftWest;
+		private final double scale;
+
+		Map<BridgeState, Double> recorded;
+
+		Search(ProblemSpec spec, Path incumbent, Map<BridgeState, Double> bounds, Roster oldRoster, int[] index, long leftWest, double scale)
+		{
+			super(spec.getInitialState(), spec.getGoalState());
+			this.incumbent = incumbent;
+			this.bounds = bounds;
+			this.oldRoster = oldRoster;
+			this.index = index;
+			this.leftWest = leftWest;
+			this.scale = scale;
+		}
+
+		/**
+		 * Search for the cheapest path, returning the known path if nothing is cheaper.
+		 */
+		@Override
+		public Path search()
+		{
+			double upper = incumbent == null ? Double.POSITIVE_INFINITY : incumbent.cost;
+			Map<State, SearchNode> visited = new HashMap<>(1 << 12);
+			OpenList open = new OpenList(1 << 12);
+			Crossings crossings = new Crossings();
+
+			SearchNode start = new SearchNode(startState, null, null, 0, heuristic(startState));
+			open.add(start);
+			visited.put(startState, start);
+			nodeVisited++;
+
+			Path found = incumbent;
+			while(!open.isEmpty())
+			{
+				SearchNode node = open.poll();
+				if(node.f >= upper)
+					break;
+
+				if(isGoal(node.state))
+				{
+					found = constructPath(node);
+					break;
+				}
+
+				node.closed = true;
+				nodeExpanded++;
+
+				BridgeState state = (BridgeState) node.state;
+				TorchDirection direction = BridgeState.switchTorchLocation(state.getTorchLocation());
+				crossings.reset(state);
+				while(crossings.next())
+				{
+					long group = crossings.group();
+					BridgeState child = state.nextState(group);
+					double g = node.g + state.getRoster().slowest(group);
+					nodeVisited++;
+
+					SearchNode existing = visited.get(child);
+					if(existing == null)
+					{
+						SearchNode created = new SearchNode(child, node, new BridgeAction(state.getRoster(), group, direction), g, heuristic(child));
+						visited.put(child, created);
+						if(created.f < upper)
+							open.add(created);
+					}
+					else if(g < existing.g)
+					{
+						existing.reroute(node, new BridgeAction(state.getRoster(), group, direction), g);
+						if(existing.isOpen())
+							open.decreaseKey(existing);
+						else if(existing.f < upper)
+						{
+							existing.closed = false;
+							open.add(existing);
+						}
+					}
+				}
+			}
+
+			// Every state reached at cost g has at least C - g left to the goal
+			if(found != null)
+			{
+				recorded = new HashMap<>(visited.size() * 2);
+				for(SearchNode node : visited.values())
+					recorded.put((BridgeState) node.state, Math.max(node.h, found.cost - node.g));
+			}
+			return found;
+		}
+
+		/**
+		 * Raise the default estimate with the bound learnt for the matching state of the last
+		 * problem, if it was reached.
+		 */
+		@Override
+		public double heuristic(State currentState)
+		{
+			double estimate = super.heuristic(currentState);
+			if(bounds == null)
+				return estimate;
+
+			BridgeState state = (BridgeState) currentState;
+			long west = leftWest;
+			for(long rest = state.getWestMask(); rest != 0; rest &= rest - 1)
+				west |= 1L << index[Long.numberOfTrailingZeros(rest)];
+
+			Double bound = bounds.get(new BridgeState(oldRoster, west, state.getTorchLocation()));
+			return bound == null ? estimate : Math.max(estimate, scale * bound);
+		}
+	}
+}
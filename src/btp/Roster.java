@@ -0,0 +1,326 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public final class Roster
+{
+	// The number of people that fit into the long bitmask used by a BridgeState.
+	public static final int MAX_PEOPLE = Long.SIZE;
+
+	// Orders people by crossing time, breaking ties so the order never depends on which bank they started on.
+	private static final Comparator<Person> ORDER = RunProblem.comparator
+			.thenComparing(Person::getName, Comparator.nullsFirst(Comparator.naturalOrder()))
+			.thenComparingInt(System::identityHashCode);
+
+	private final Person[] people;
+	private final int[] times;
+	private final int capacity;
+	private final TorchDirection prunedToward;
+	private final boolean symmetric;
+	// The masks of people sharing a crossing time and a starting bank, for every such tie of more than one person
+	private final long[] ties;
+	private final Map<Person, Integer> index;
+	private final long everyone;
+	private final int hash;
+
+	/**
+	 * Create a roster from everyone taking part in a problem.
+	 *
+	 * The people are sorted from the shortest to longest crossing time so that bit i
+	 * of a bank mask always refers to the i-th fastest person. The roster also carries
+	 * the settings of the problem, so every state of one problem shares them and
+	 * problems with different settings can be solved at the same time.
+	 *
+	 * @param people       Everyone taking part in the problem.
+	 * @param capacity     The number of people allowed on the bridge at a given time.
+	 * @param prunedToward The bank everyone is trying to reach if successors should be
+	 *                     pruned, or null to generate every successor.
+	 */
+	public Roster(Collection<Person> people, int capacity, TorchDirection prunedToward)
+	{
+		this(people, capacity, prunedToward, false, people);
+	}
+
+	/**
+	 * Create a roster that can treat people with the same crossing time as interchangeable.
+	 *
+	 * Everyone has to end on the bank they did not start on, so only people with the same
+	 * time who also start on the same bank can stand in for each other. When symmetric,
+	 * every state keeps the people of such a tie who are on the western bank in its lowest
+	 * bits, so a state only records how many people of each tie are on each bank.
+	 *
+	 * @param people       Everyone taking part in the problem.
+	 * @param capacity     The number of people allowed on the bridge at a given time.
+	 * @param prunedToward The bank everyone is trying to reach if successors should be
+	 *                     pruned, or null to generate every successor.
+	 * @param symmetric    true to treat people with the same crossing time as interchangeable.
+	 * @param westBank     The people starting on the western bank.
+	 */
+	public Roster(Collection<Person> people, int capacity, TorchDirection prunedToward, boolean symmetric, Collection<Person> westBank)
+	{
+		if(people.size() > MAX_PEOPLE)
+			throw new IllegalArgumentException(String.format("A roster can hold at most %d people, got %d", MAX_PEOPLE, people.size()));
+
+		this.capacity = capacity;
+		this.prunedToward = prunedToward;
+		this.symmetric = symmetric;
+		this.people = people.toArray(new Person[0]);
+		Arrays.sort(this.people, ORDER);
+
+		this.times = new int[this.people.length];
+		this.index = new IdentityHashMap<>();
+
+		for(int i=0; i<this.people.length; i++)
+		{
+			this.times[i] = this.people[i].getTime();
+			this.index.put(this.people[i], i);
+		}
+
+		this.everyone = this.people.length == MAX_PEOPLE ? -1L : (1L << this.people.length) - 1;
+		this.hash = Arrays.hashCode(this.people);
+
+		// A run of people with the same time is split into those starting on each bank
+		long west = maskOf(westBank);
+		List<Long> runs = new ArrayList<>();
+		for(int start=0, end; start<this.times.length; start=end)
+		{
+			for(end=start+1; end<this.times.length && this.times[end] == this.times[start]; end++);
+			long run = low(end - start) << start;
+			for(long tie : new long[] { run & west, run & ~west })
+				if(Long.bitCount(tie) > 1)
+					runs.add(tie);
+		}
+		this.ties = runs.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	/**
+	 * Create a roster from the people on both banks, taking its settings from
+	 * Bridge.getCapacity() and RunProblem's pruned and advanced status.
+	 *
+	 * @param westBank The set of people on the western bank.
+	 * @param eastBank The set of people on the eastern bank.
+	 * @return The roster holding everyone on either bank.
+	 */
+	public static Roster of(Set<Person> westBank, Set<Person> eastBank)
+	{
+		List<Person> everyone = new ArrayList<>(westBank);
+		eastBank.forEach(person ->
+		{
+			if(!westBank.contains(person))
+				everyone.add(person);
+		});
+		TorchDirection prunedToward = RunProblem.getPrunedStatus() && !RunProblem.getAdvancedStatus() ? TorchDirection.EAST : null;
+		return new Roster(everyone, Bridge.getCapacity(), prunedToward);
+	}
+
+	/**
+	 * Build the bitmask of a collection of people on the roster.
+	 *
+	 * @param group The people to encode.
+	 * @return A mask with bit i set for every person i in the group.
+	 */
+	public long maskOf(Collection<Person> group)
+	{
+		long mask = 0;
+		for(Person person : group)
+		{
+			Integer i = index.get(person);
+			if(i == null)
+				throw new IllegalArgumentException(String.format("%sis not on the roster", person));
+			mask |= 1L << i;
+		}
+		return mask;
+	}
+
+	/**
+	 * Decode a bitmask back into the people it refers to.
+	 *
+	 * @param mask The mask to decode.
+	 * @return The people in the mask, sorted from the shortest to longest time.
+	 */
+	public LinkedHashSet<Person> toSet(long mask)
+	{
+		LinkedHashSet<Person> group = new LinkedHashSet<>();
+		for(long bits = mask; bits != 0; bits &= bits - 1)
+			group.add(people[Long.numberOfTrailingZeros(bits)]);
+		return group;
+	}
+
+	/**
+	 * Get the crossing time of the slowest person in a mask.
+	 * @param mask The group of people.
+	 * @return The slowest crossing time, or 0 if the mask is empty.
+	 */
+	public int slowest(long mask)
+	{
+		return mask == 0 ? 0 : times[63 - Long.numberOfLeadingZeros(mask)];
+	}
+
+	/**
+	 * Get the crossing time of the fastest person in a mask.
+	 * @param mask The group of people.
+	 * @return The fastest crossing time, or 0 if the mask is empty.
+	 */
+	public int fastest(long mask)
+	{
+		return mask == 0 ? 0 : times[Long.numberOfTrailingZeros(mask)];
+	}
+
+	/**
+	 * Get the canonical form of a western bank mask, where the people of each tie on the
+	 * western bank are the first listed of that tie. Two masks with the same number of
+	 * people of every tie on the western bank have the same form.
+	 *
+	 * @param westBank The mask of people on the western bank.
+	 * @return The canonical mask, or the mask itself if the roster is not symmetric.
+	 */
+	public long canonical(long westBank)
+	{
+		if(!symmetric)
+			return westBank;
+
+		for(long run : ties)
+		{
+			int count = Long.bitCount(westBank & run);
+			westBank = (westBank & ~run) | lowest(run, count);
+		}
+		return westBank;
+	}
+
+	/**
+	 * Check if a group is the one kept out of the groups that only differ in which people
+	 * of the same tie cross: the one taking the first listed of each tie.
+	 *
+	 * @param group The mask of people crossing.
+	 * @param pool  The mask of people who could cross, a canonical bank.
+	 * @return true if the group should be kept, always true if the roster is not symmetric.
+	 */
+	public boolean isCanonicalGroup(long group, long pool)
+	{
+		if(!symmetric)
+			return true;
+
+		for(long run : ties)
+		{
+			long available = pool & run;
+			long chosen = group & run;
+			if(chosen != 0 && chosen != lowest(available, Long.bitCount(chosen)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Find the people a group crossing on a canonical state stands for on a state where
+	 * people keep their identities: the same number of people of each tie, taking the
+	 * first listed who are in the pool.
+	 *
+	 * @param group The mask of people crossing on the canonical state.
+	 * @param pool  The mask of people who can cross on the state with identities.
+	 * @return The mask of people crossing on the state with identities.
+	 */
+	public long matchGroup(long group, long pool)
+	{
+		long matched = group;
+		for(long run : ties)
+			matched = (matched & ~run) | lowest(pool & run, Long.bitCount(group & run));
+		return matched;
+	}
+
+	/**
+	 * The mask of the k lowest bits.
+	 */
+	private static long low(int k)
+	{
+		return k == Long.SIZE ? -1L : (1L << k) - 1;
+	}
+
+	/**
+	 * The mask of the k lowest bits set in a mask.
+	 */
+	private static long lowest(long mask, int k)
+	{
+		long chosen = 0;
+		for(; k > 0 && mask != 0; k--, mask &= mask - 1)
+			chosen |= mask & -mask;
+		return chosen;
+	}
+
+	/**
+	 * Two rosters are equal if they hold the same people in the same order.
+	 */
+	@Override
+	public boolean equals(Object other)
+	{
+		if(this == other)
+			return true;
+		if(!(other instanceof Roster))
+			return false;
+
+		Roster roster = (Roster) other;
+		return hash == roster.hash && Arrays.equals(people, roster.people);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+
+	// Getter Methods
+
+	/**
+	 * Get the number of people on the roster.
+	 * @return The number of people.
+	 */
+	public int size() { return people.length; }
+
+	/**
+	 * Get the i-th fastest person on the roster.
+	 * @param i The position of the person.
+	 * @return The person.
+	 */
+	public Person get(int i) { return people[i]; }
+
+	/**
+	 * Get the crossing time of the i-th fastest person on the roster.
+	 * @param i The position of the person.
+	 * @return The crossing time.
+	 */
+	public int time(int i) { return times[i]; }
+
+	/**
+	 * Get the mask that has a bit set for everyone on the roster.
+	 * @return The mask of everyone.
+	 */
+	public long everyone() { return everyone; }
+
+	/**
+	 * Get the capacity of the bridge in this problem.
+	 * @return The number of people allowed on the bridge at a given time.
+	 */
+	public int getCapacity() { return capacity; }
+
+	/**
+	 * Get the bank everyone is trying to reach when successors are pruned.
+	 * @return The bank, or null if successors are not pruned.
+	 */
+	public TorchDirection getPrunedToward() { return prunedToward; }
+
+	/**
+	 * Check if people with the same crossing time are treated as interchangeable.
+	 * @return true if states only record how many people of each tie are on each bank.
+	 */
+	public boolean isSymmetric() { return symmetric; }
+}
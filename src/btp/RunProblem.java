@@ -3,11 +3,15 @@
  */
 
 package btp;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
-import java.util.TreeSet;
 
 import cm3038.search.*;
 
@@ -16,27 +20,34 @@ public class RunProblem
 	// Create a Comparator object that will compare the crossing times of a Person object
 	public static Comparator<Person> comparator = Comparator.comparing( Person::getTime );
 	
-	private static LinkedHashSet<Person> westBank = new LinkedHashSet<Person>();
-	private static LinkedHashSet<Person> eastBank = new LinkedHashSet<Person>();
 	private static boolean advancedStatus = false;
+	private static boolean prunedStatus = false;
+	private static boolean symmetricStatus = false;
 	
-	public static void main(String[] args)
+	public static void main(String[] args) throws IOException, InterruptedException
     {
+		if(args.length > 0)
+		{
+			solveFile(args);
+			return;
+		}
+		
+		ProblemSpec spec = null;
 		switch(createMenu())
 		{
-			case 1: configureBasicProblem(); break;
-			case 2: configureAdvancedProblem(); break;
+			case 1: spec = configureBasicProblem(); break;
+			case 2: spec = configureAdvancedProblem(); break;
 		}
 		
-		BridgeState initialState = new BridgeState(westBank, eastBank, TorchDirection.WEST);
-		BridgeState goalState = new BridgeState(eastBank, westBank, TorchDirection.EAST);
+		BridgeState initialState = spec.getInitialState();
+		BridgeState goalState = spec.getGoalState();
 		
 		System.out.println(String.format("\nInit: %s", initialState.toString()));
 		System.out.println(String.format("Goal: %s\n", goalState.toString()));
 		
 		Astar problem = new Astar(initialState, goalState);
 		
-		Path path = problem.search();
+		Path path = spec.restoreNames(problem.search());
 		
 		if (path == null)							
 			System.out.println("No solution.");
@@ -48,20 +59,74 @@ public class RunProblem
 		}
     }
 	
+	/**
+	 * Solve every problem in a file with the BatchSolver, streaming the solutions out
+	 * as they are found and reporting the throughput when done.
+	 * 
+	 * The arguments are the input file, then optionally the output file (- for the
+	 * console, the default), the format (csv, the default, or jsonl) and pruned to
+	 * prune successors. An input file of - is read from the console.
+	 * 
+	 * Run with -Dbtp.metrics=file to write the metrics of every search to a file when
+	 * done, in the Prometheus text format if the file ends in .prom and as JSON otherwise.
+	 * Run with -Dbtp.cache=entries to reuse the solutions of problems that only differ
+	 * in names, and -Dbtp.cache.dir=directory to also keep them on disk between runs.
+	 * 
+	 * @param args The arguments the program was run with.
+	 * @throws IOException If a file cannot be read or written.
+	 * @throws InterruptedException If the thread is interrupted while waiting for a result.
+	 */
+	private static void solveFile(String[] args) throws IOException, InterruptedException
+	{
+		String output = args.length > 1 ? args[1] : "-";
+		SolutionWriter.Format format = args.length > 2 ? SolutionWriter.Format.valueOf(args[2].toUpperCase()) : SolutionWriter.Format.CSV;
+		boolean pruned = args.length > 3 && args[3].equalsIgnoreCase("pruned");
+		
+		String metricsFile = System.getProperty("btp.metrics");
+		SearchMetrics metrics = metricsFile == null ? null : new SearchMetrics();
+		
+		String cacheSize = System.getProperty("btp.cache"), cacheDirectory = System.getProperty("btp.cache.dir");
+		SolutionCache cache = null;
+		if(cacheSize != null || cacheDirectory != null)
+			cache = new SolutionCache(cacheSize == null ? 1 << 16 : Integer.parseInt(cacheSize), cacheDirectory == null ? null : Paths.get(cacheDirectory));
+		
+		long started = System.nanoTime();
+		try (ProblemReader reader = args[0].equals("-") ? new ProblemReader(Channels.newChannel(System.in), pruned) : ProblemReader.open(Paths.get(args[0]), pruned);
+			SolutionWriter writer = output.equals("-") ? new SolutionWriter(Channels.newChannel(System.out), format) : SolutionWriter.open(Paths.get(output), format);
+			BatchSolver solver = new BatchSolver())
+		{
+			solver.setMetrics(metrics);
+			solver.setCache(cache);
+			solver.solve(reader, BatchSolver.Order.INPUT, writer);
+			writer.flush();
+			
+			double seconds = (System.nanoTime() - started) / 1e9;
+			System.err.println(String.format("Solved %d instances in %.3fs (%.1f instances/s)", writer.getWritten(), seconds, writer.getWritten() / seconds));
+			if(cache != null)
+				System.err.println(String.format("Cache %s", cache));
+		}
+		
+		if(metrics != null)
+			metrics.write(Paths.get(metricsFile), metricsFile.endsWith(".prom") ? SearchMetrics.Format.PROMETHEUS : SearchMetrics.Format.JSON);
+	}
+	
 	/**
 	 * Configure and set up the basic problem.
 	 * 
 	 * The basic problem deals with 4 people on the western bank and a bridge
 	 * capacity of 2
+	 * 
+	 * @return The specification of the basic problem.
 	 */
-	private static void configureBasicProblem()
+	public static ProblemSpec configureBasicProblem()
 	{
+		List<Person> westBank = new ArrayList<Person>();
 		westBank.add(new Person(1, "Adam"));
 		westBank.add(new Person(2, "Ben")); 
 		westBank.add(new Person(5, "Claire"));
 		westBank.add(new Person(8, "Doris"));
 		
-		Bridge.setCapacity(2);
+		return new ProblemSpec(westBank, new ArrayList<Person>(), 2, TorchDirection.WEST, getPrunedStatus(), getSymmetricStatus());
 	}
 	
 	/**
@@ -69,18 +134,19 @@ public class RunProblem
 	 * 
 	 * The advanced problem deals with 4 people on the western bank and 2 people on the eastern.
 	 * The bridge has a capacity of 3.
+	 * 
+	 * @return The specification of the advanced problem.
 	 */
-	private static void configureAdvancedProblem()
+	public static ProblemSpec configureAdvancedProblem()
 	{
 		// Configure the basic problem to set up the western bank
-		configureBasicProblem();
-		
-		setAdvancedStatus(true);
+		List<Person> westBank = configureBasicProblem().getWest();
 		
+		List<Person> eastBank = new ArrayList<Person>();
 		eastBank.add(new Person(9, "Edward"));
 		eastBank.add(new Person(10, "Fiona"));
 		
-		Bridge.setCapacity(3);
+		return new ProblemSpec(westBank, eastBank, 3, TorchDirection.WEST, getPrunedStatus(), getSymmetricStatus());
 	}
 	
 	/**
@@ -124,18 +190,67 @@ public class RunProblem
 		return advancedStatus;
 	}
 	
+	/**
+	 * Set the parameter for if successor states are pruned.
+	 * 
+	 * When set, BridgeState.successor() leaves out crossings that can never do better
+	 * than one it keeps, which cuts the branching factor without changing the cost of
+	 * the best solution. The rules assume everyone is trying to reach the eastern bank,
+	 * so they are not applied while the advanced problem is running.
+	 * 
+	 * @param pruning boolean value to indicate if successors are pruned or not.
+	 *                True to prune, default: false.
+	 */
+	public static void setPrunedStatus(boolean pruning)
+	{
+		prunedStatus = pruning;
+	}
+	
+	/**
+	 * Return the pruned status to check if successor states are pruned.
+	 * @return true if successors are pruned otherwise false.
+	 */
+	public static boolean getPrunedStatus()
+	{
+		return prunedStatus;
+	}
+	
+	/**
+	 * Set the parameter for if people with the same crossing time are interchangeable.
+	 * 
+	 * When set, the problems are built so that a state only records how many people of
+	 * each time are on each bank, and the names are put back into the solution once it
+	 * has been found.
+	 * 
+	 * @param symmetric boolean value to indicate if people with the same time are interchangeable.
+	 *                  True to treat them as interchangeable, default: false.
+	 */
+	public static void setSymmetricStatus(boolean symmetric)
+	{
+		symmetricStatus = symmetric;
+	}
+	
+	/**
+	 * Return the symmetric status to check if people with the same time are interchangeable.
+	 * @return true if people with the same crossing time are interchangeable otherwise false.
+	 */
+	public static boolean getSymmetricStatus()
+	{
+		return symmetricStatus;
+	}
+	
 	/**
 	 * Manipulate a set of people to sort them from the shortest to longest time
-	 * using a sorting comparator.
+	 * using a sorting comparator. People with the same time keep the order they
+	 * were in, and none of them are lost.
 	 * 
 	 * @param people The set of people to be manipulated.
 	 * @return The LinkedHashSet<Person> with the people sorted.
 	 */
 	public static LinkedHashSet<Person> sortListByTime(Set<Person> people)
 	{
-		TreeSet<Person> sorted = new TreeSet<>(comparator);
-		sorted.addAll(people);
+		List<Person> sorted = new ArrayList<>(people);
+		sorted.sort(comparator);
 		return new LinkedHashSet<>(sorted);
-		
 	}
 }
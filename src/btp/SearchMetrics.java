@@ -0,0 +1,398 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public final class SearchMetrics
+{
+	/**
+	 * The formats the metrics can be written in.
+	 */
+	public enum Format
+	{
+		// One JSON object
+		JSON,
+		// The Prometheus text exposition format, for the node exporter's textfile collector
+		PROMETHEUS
+	}
+
+	// Reads the bytes allocated by a thread, or null if the JVM cannot
+	private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationBean();
+
+	// Counted by the search as it runs, so they are left open to the package
+	long expanded, generated, duplicates, heuristicCalls, heuristicNanos, successorNanos;
+	// Only counted by searches that spill to disk
+	long bytesRead, bytesWritten, ioNanos;
+	// Only counted by searches that save checkpoints
+	long checkpoints, checkpointBytes, checkpointNanos;
+	int openPeak;
+
+	private long searches, solved, searchNanos, allocatedBytes;
+	private double branchingSum;
+
+	// Where the search being recorded started from
+	private long startedNanos, startedBytes, startedGenerated;
+
+	/**
+	 * Mark the start of a search.
+	 */
+	void startSearch()
+	{
+		searches++;
+		startedGenerated = generated;
+		startedBytes = allocatedBytes();
+		startedNanos = System.nanoTime();
+	}
+
+	/**
+	 * Mark the end of a search, working out its effective branching factor from the
+	 * nodes it generated and the length of the path it found.
+	 *
+	 * @param path The path found, or null if there is none.
+	 */
+	void endSearch(cm3038.search.Path path)
+	{
+		searchNanos += System.nanoTime() - startedNanos;
+		if(startedBytes >= 0)
+			allocatedBytes += allocatedBytes() - startedBytes;
+
+		if(path != null && !path.isEmpty())
+		{
+			solved++;
+			branchingSum += branchingFactor(generated - startedGenerated, path.size());
+		}
+	}
+
+	/**
+	 * Note the size of the open list, keeping the largest seen.
+	 */
+	void openSize(int size)
+	{
+		if(size > openPeak)
+			openPeak = size;
+	}
+
+	/**
+	 * Add the metrics of another search to these, so that searches run on different
+	 * threads can each record their own metrics and be totalled afterwards.
+	 *
+	 * @param other The metrics to add.
+	 */
+	public synchronized void add(SearchMetrics other)
+	{
+		expanded += other.expanded;
+		generated += other.generated;
+		duplicates += other.duplicates;
+		heuristicCalls += other.heuristicCalls;
+		heuristicNanos += other.heuristicNanos;
+		successorNanos += other.successorNanos;
+		bytesRead += other.bytesRead;
+		bytesWritten += other.bytesWritten;
+		ioNanos += other.ioNanos;
+		checkpoints += other.checkpoints;
+		checkpointBytes += other.checkpointBytes;
+		checkpointNanos += other.checkpointNanos;
+		openPeak = Math.max(openPeak, other.openPeak);
+		searches += other.searches;
+		solved += other.solved;
+		searchNanos += other.searchNanos;
+		allocatedBytes += other.allocatedBytes;
+		branchingSum += other.branchingSum;
+	}
+
+	/**
+	 * Creates the metrics as a JSON object.
+	 */
+	public synchronized String toJson()
+	{
+		StringBuilder json = new StringBuilder("{");
+		for(Metric metric : metrics())
+		{
+			if(json.length() > 1)
+				json.append(',');
+			json.append('"').append(metric.name).append("\":").append(metric.format());
+		}
+		return json.append('}').toString();
+	}
+
+	/**
+	 * Creates the metrics in the Prometheus text format, each with its help and type lines.
+	 */
+	public synchronized String toPrometheus()
+	{
+		StringBuilder text = new StringBuilder();
+		for(Metric metric : metrics())
+		{
+			String name = "btp_search_" + metric.name;
+			text.append("# HELP ").append(name).append(' ').append(metric.help).append('\n');
+			text.append("# TYPE ").append(name).append(' ').append(metric.counter ? "counter" : "gauge").append('\n');
+			text.append(name).append(' ').append(metric.format()).append('\n');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Write the metrics to a file, replacing it in one step so that a scraper never
+	 * reads a half written file.
+	 *
+	 * @param file   The file to write to.
+	 * @param format The format to write in.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void write(Path file, Format format) throws IOException
+	{
+		String text = format == Format.JSON ? toJson() + "\n" : toPrometheus();
+		Path absolute = file.toAbsolutePath();
+		Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+		try
+		{
+			Files.write(temporary, text.getBytes(StandardCharsets.UTF_8));
+			Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Creates a string to model the SearchMetrics object.
+	 */
+	@Override
+	public String toString()
+	{
+		return toJson();
+	}
+
+	// Getter Methods
+
+	/**
+	 * Get the number of searches recorded.
+	 * @return The number of searches.
+	 */
+	public synchronized long getSearches() { return this.searches; }
+
+	/**
+	 * Get the number of nodes taken off the open list and expanded.
+	 * @return The number of nodes.
+	 */
+	public synchronized long getExpanded() { return this.expanded; }
+
+	/**
+	 * Get the number of children generated from the expanded nodes.
+	 * @return The number of nodes.
+	 */
+	public synchronized long getGenerated() { return this.generated; }
+
+	/**
+	 * Get the number of children dropped because their state had already been reached
+	 * at least as cheaply.
+	 * @return The number of nodes.
+	 */
+	public synchronized long getDuplicates() { return this.duplicates; }
+
+	/**
+	 * Get the largest number of nodes on the open list at once.
+	 * @return The number of nodes.
+	 */
+	public synchronized int getOpenPeak() { return this.openPeak; }
+
+	/**
+	 * Get the number of times the heuristic was evaluated.
+	 * @return The number of evaluations.
+	 */
+	public synchronized long getHeuristicCalls() { return this.heuristicCalls; }
+
+	/**
+	 * Get the time spent evaluating the heuristic.
+	 * @return The time in nanoseconds.
+	 */
+	public synchronized long getHeuristicNanos() { return this.heuristicNanos; }
+
+	/**
+	 * Get the time spent generating children, not counting the heuristic.
+	 * @return The time in nanoseconds.
+	 */
+	public synchronized long getSuccessorNanos() { return this.successorNanos; }
+
+	/**
+	 * Get the time spent searching.
+	 * @return The time in nanoseconds.
+	 */
+	public synchronized long getSearchNanos() { return this.searchNanos; }
+
+	/**
+	 * Get the mean effective branching factor of the searches that found a path: the
+	 * branching factor a uniform tree as deep as the path would need to hold as many
+	 * nodes as were generated.
+	 * @return The branching factor, or 0 if no search found a path.
+	 */
+	public synchronized double getBranchingFactor() { return solved == 0 ? 0 : branchingSum / solved; }
+
+	/**
+	 * Get the number of bytes allocated by the searches.
+	 * @return The number of bytes, or 0 if the JVM cannot measure them.
+	 */
+	public synchronized long getAllocatedBytes() { return this.allocatedBytes; }
+
+	/**
+	 * Get the number of bytes allocated for each node expanded.
+	 * @return The number of bytes.
+	 */
+	public synchronized double getBytesPerExpansion() { return expanded == 0 ? 0 : (double) allocatedBytes / expanded; }
+
+	/**
+	 * Get the number of bytes read back from disk by searches that spill to it.
+	 * @return The number of bytes.
+	 */
+	public synchronized long getBytesRead() { return this.bytesRead; }
+
+	/**
+	 * Get the number of bytes written to disk by searches that spill to it.
+	 * @return The number of bytes.
+	 */
+	public synchronized long getBytesWritten() { return this.bytesWritten; }
+
+	/**
+	 * Get the time spent reading and writing disk.
+	 * @return The time in nanoseconds.
+	 */
+	public synchronized long getIoNanos() { return this.ioNanos; }
+
+	/**
+	 * Get the number of checkpoints saved.
+	 * @return The number of checkpoints.
+	 */
+	public synchronized long getCheckpoints() { return this.checkpoints; }
+
+	/**
+	 * Get the number of bytes written to checkpoints.
+	 * @return The number of bytes.
+	 */
+	public synchronized long getCheckpointBytes() { return this.checkpointBytes; }
+
+	/**
+	 * Get the time spent saving checkpoints.
+	 * @return The time in nanoseconds.
+	 */
+	public synchronized long getCheckpointNanos() { return this.checkpointNanos; }
+
+	/**
+	 * List every metric with its name, help text and value.
+	 */
+	private List<Metric> metrics()
+	{
+		List<Metric> metrics = new ArrayList<>();
+		metrics.add(new Metric("searches_total", "Searches run.", true, searches));
+		metrics.add(new Metric("nodes_expanded_total", "Nodes taken off the open list and expanded.", true, expanded));
+		metrics.add(new Metric("nodes_generated_total", "Children generated from expanded nodes.", true, generated));
+		metrics.add(new Metric("duplicates_pruned_total", "Children dropped as their state was already reached as cheaply.", true, duplicates));
+		metrics.add(new Metric("open_list_peak", "Largest number of nodes on the open list at once.", false, openPeak));
+		metrics.add(new Metric("heuristic_evaluations_total", "Heuristic evaluations.", true, heuristicCalls));
+		metrics.add(new Metric("heuristic_seconds_total", "Time spent evaluating the heuristic.", true, heuristicNanos / 1e9));
+		metrics.add(new Metric("successor_seconds_total", "Time spent generating children, not counting the heuristic.", true, successorNanos / 1e9));
+		metrics.add(new Metric("search_seconds_total", "Time spent searching.", true, searchNanos / 1e9));
+		metrics.add(new Metric("effective_branching_factor", "Mean effective branching factor of the searches that found a path.", false, getBranchingFactor()));
+		metrics.add(new Metric("allocated_bytes_total", "Bytes allocated by the searches.", true, allocatedBytes));
+		metrics.add(new Metric("allocated_bytes_per_expansion", "Bytes allocated for each node expanded.", false, getBytesPerExpansion()));
+		metrics.add(new Metric("disk_read_bytes_total", "Bytes read back from disk by searches that spill to it.", true, bytesRead));
+		metrics.add(new Metric("disk_written_bytes_total", "Bytes written to disk by searches that spill to it.", true, bytesWritten));
+		metrics.add(new Metric("disk_seconds_total", "Time spent reading and writing disk.", true, ioNanos / 1e9));
+		metrics.add(new Metric("checkpoints_total", "Checkpoints saved.", true, checkpoints));
+		metrics.add(new Metric("checkpoint_bytes_total", "Bytes written to checkpoints.", true, checkpointBytes));
+		metrics.add(new Metric("checkpoint_seconds_total", "Time spent saving checkpoints.", true, checkpointNanos / 1e9));
+		return metrics;
+	}
+
+	/**
+	 * Find the branching factor b where a uniform tree of a depth holds as many nodes as
+	 * were generated, b + b^2 + ... + b^depth = generated, by bisection.
+	 */
+	static double branchingFactor(long generated, int depth)
+	{
+		if(generated <= depth)
+			return 1;
+
+		double low = 1, high = Math.max(2, generated);
+		for(int i=0; i<100 && high - low > 1e-9; i++)
+		{
+			double middle = (low + high) / 2, nodes = 0, level = 1;
+			for(int d=0; d<depth && nodes <= generated; d++)
+			{
+				level *= middle;
+				nodes += level;
+			}
+			if(nodes > generated)
+				high = middle;
+			else
+				low = middle;
+		}
+		return (low + high) / 2;
+	}
+
+	/**
+	 * Read the bytes the current thread has allocated.
+	 * @return The number of bytes, or -1 if the JVM cannot measure them.
+	 */
+	private static long allocatedBytes()
+	{
+		return ALLOCATIONS == null ? -1 : ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean allocationBean()
+	{
+		try
+		{
+			if(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)
+			{
+				com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+				if(bean.isThreadAllocatedMemorySupported())
+				{
+					bean.setThreadAllocatedMemoryEnabled(true);
+					return bean;
+				}
+			}
+		}
+		catch(UnsupportedOperationException | SecurityException e)
+		{
+			// Allocations are then left out
+		}
+		return null;
+	}
+
+	/**
+	 * One metric ready to be written.
+	 */
+	private static final class Metric
+	{
+		final String name, help;
+		final boolean counter;
+		final double value;
+
+		Metric(String name, String help, boolean counter, double value)
+		{
+			this.name = name;
+			this.help = help;
+			this.counter = counter;
+			this.value = value;
+		}
+
+		/**
+		 * Write the value without a trailing .0 when it is a whole number.
+		 */
+		String format()
+		{
+			return value == Math.rint(value) ? String.valueOf((long) value) : String.format(Locale.ROOT, "%.6g", value);
+		}
+	}
+}
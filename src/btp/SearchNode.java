@@ -0,0 +1,65 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import cm3038.search.*;
+
+public class SearchNode extends Node
+{
+	// The cost of the path from the start node, the heuristic estimate and f = g + h
+	double g, h, f;
+	
+	// The position of the node in the open list, or -1 if it is not on it
+	int heapIndex = -1;
+	
+	boolean closed;
+	
+	/**
+	 * Create a search node with its path cost and heuristic estimate cached.
+	 * 
+	 * @param state  The state the node represents.
+	 * @param parent The node it was generated from, or null for the start node.
+	 * @param action The action that led from the parent to this node.
+	 * @param g      The cost of the path from the start node.
+	 * @param h      The estimated cost from this node to the goal.
+	 */
+	public SearchNode(State state, SearchNode parent, Action action, double g, double h)
+	{
+		super(state, parent, action, parent == null ? 0 : parent.depth + 1);
+		this.g = g;
+		this.h = h;
+		this.f = g + h;
+	}
+	
+	/**
+	 * Point the node at a cheaper path from the start node.
+	 * 
+	 * @param parent The new parent node.
+	 * @param action The action that led from the parent to this node.
+	 * @param g      The new cost of the path from the start node.
+	 */
+	void reroute(SearchNode parent, Action action, double g)
+	{
+		this.parent = parent;
+		this.action = action;
+		this.depth = parent.depth + 1;
+		this.g = g;
+		this.f = g + h;
+	}
+	
+	/**
+	 * Return the cached path cost instead of walking back through every parent.
+	 */
+	@Override
+	public double getCost()
+	{
+		return this.g;
+	}
+	
+	/**
+	 * Check if the node is waiting on the open list.
+	 * @return true if the node is on the open list.
+	 */
+	public boolean isOpen() { return heapIndex >= 0; }
+}
@@ -0,0 +1,34 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+
+public class SlowestCrossingHeuristic implements Heuristic
+{
+	/**
+	 * Everyone who is on the wrong bank has to cross at least once, so the slowest of
+	 * them going east and the slowest of them going west each cost at least one trip.
+	 * If people only need to go one way but the torch is on the other bank, somebody
+	 * has to bring it back first, which costs at least the fastest time on that bank.
+	 */
+	@Override
+	public double estimate(BridgeState state, BridgeState goal)
+	{
+		Roster roster = state.getRoster();
+		long goingEast = state.getWestMask() & ~goal.getWestMask();
+		long goingWest = state.getEastMask() & goal.getWestMask();
+		
+		int estimate = roster.slowest(goingEast) + roster.slowest(goingWest);
+		
+		if(goingWest == 0 && goingEast != 0 && state.getTorchLocation() == TorchDirection.EAST)
+			estimate += roster.fastest(state.getEastMask());
+		else if(goingEast == 0 && goingWest != 0 && state.getTorchLocation() == TorchDirection.WEST)
+			estimate += roster.fastest(state.getWestMask());
+		
+		return estimate;
+	}
+	
+	@Override
+	public String toString() { return "slowest-crossing"; }
+}
@@ -0,0 +1,470 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import cm3038.search.*;
+
+public final class SolutionCache
+{
+	private final int capacity;
+	private final LinkedHashMap<Signature, Solution> entries;
+	// The directory solutions are kept in between runs, or null to keep them in memory only
+	private final java.nio.file.Path directory;
+
+	private final LongAdder hits = new LongAdder(), diskHits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+	/**
+	 * Create a cache of solutions held in memory.
+	 *
+	 * @param capacity The largest number of solutions held.
+	 */
+	public SolutionCache(int capacity)
+	{
+		this(capacity, null);
+	}
+
+	/**
+	 * Create a cache of solutions held in memory and, if a directory is given, on disk.
+	 *
+	 * Problems are looked up by their signature: the capacity, the bank the torch starts
+	 * on, whether it is symmetric and the crossing times on each bank, sorted. Problems
+	 * with the same signature only differ in names and in the order people were listed,
+	 * so one solution serves them all once the names are swapped in. When the memory
+	 * holds capacity solutions the one used least recently is forgotten. With a directory
+	 * every solution is also written to a file of its own, and a solution missing from
+	 * memory is looked for there, so solutions survive the program ending.
+	 *
+	 * @param capacity  The largest number of solutions held in memory.
+	 * @param directory The directory to keep solutions in, or null to keep them in memory only.
+	 * @throws UncheckedIOException If the directory cannot be created.
+	 */
+	public SolutionCache(int capacity, java.nio.file.Path directory)
+	{
+		if(capacity < 1)
+			throw new IllegalArgumentException(String.format("The capacity must be at least 1, got %d", capacity));
+
+		this.capacity = capacity;
+		this.directory = directory;
+		this.entries = new LinkedHashMap<Signature, Solution>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Signature, Solution> eldest)
+			{
+				if(size() <= SolutionCache.this.capacity)
+					return false;
+				evictions.increment();
+				return true;
+			}
+		};
+
+		if(directory != null)
+		{
+			try
+			{
+				Files.createDirectories(directory);
+			}
+			catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Find the solution of a problem, solving it and remembering the solution if it has
+	 * not been seen before.
+	 *
+	 * @param spec   The problem.
+	 * @param solver Solves the problem on a miss, returning null if it has no solution.
+	 * @return The cheapest path for the problem, naming its people, or null if it has none.
+	 */
+	public Path solve(ProblemSpec spec, Function<ProblemSpec, Path> solver)
+	{
+		Path path = lookup(spec);
+		if(path == null)
+		{
+			path = solver.apply(spec);
+			store(spec, path);
+		}
+		return path;
+	}
+
+	/**
+	 * Look up the solution of a problem, swapping the names of its people in.
+	 *
+	 * @param spec The problem.
+	 * @return The cheapest path for the problem, or null if its solution is not held.
+	 */
+	public Path lookup(ProblemSpec spec)
+	{
+		Signature signature = new Signature(spec);
+		Solution solution;
+		synchronized(entries)
+		{
+			solution = entries.get(signature);
+		}
+
+		if(solution != null)
+			hits.increment();
+		else if((solution = read(signature)) != null)
+		{
+			diskHits.increment();
+			synchronized(entries)
+			{
+				entries.put(signature, solution);
+			}
+		}
+		else
+		{
+			misses.increment();
+			return null;
+		}
+		return solution.replay(spec);
+	}
+
+	/**
+	 * Remember the solution of a problem. A problem with no solution is not remembered.
+	 *
+	 * @param spec The problem.
+	 * @param path The cheapest path for the problem, or null if it has none.
+	 * @throws UncheckedIOException If the solution cannot be written to disk.
+	 */
+	public void store(ProblemSpec spec, Path path)
+	{
+		if(path == null)
+			return;
+
+		Signature signature = new Signature(spec);
+		Solution solution = new Solution(spec, path);
+		synchronized(entries)
+		{
+			entries.put(signature, solution);
+		}
+		write(signature, solution);
+	}
+
+	/**
+	 * Creates a string to model the SolutionCache object.
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format("hits: %d (disk %d), misses: %d, evictions: %d, held: %d", getHits(), getDiskHits(), getMisses(), getEvictions(), size());
+	}
+
+	// Getter Methods
+
+	/**
+	 * Get the number of look ups answered from memory.
+	 * @return The number of hits.
+	 */
+	public long getHits() { return hits.sum(); }
+
+	/**
+	 * Get the number of look ups answered from disk.
+	 * @return The number of hits.
+	 */
+	public long getDiskHits() { return diskHits.sum(); }
+
+	/**
+	 * Get the number of look ups that found nothing.
+	 * @return The number of misses.
+	 */
+	public long getMisses() { return misses.sum(); }
+
+	/**
+	 * Get the number of solutions forgotten to make room in memory.
+	 * @return The number of evictions.
+	 */
+	public long getEvictions() { return evictions.sum(); }
+
+	/**
+	 * Get the share of look ups answered from memory or disk.
+	 * @return The hit rate from 0 to 1, or 0 before any look up.
+	 */
+	public double getHitRate()
+	{
+		long found = getHits() + getDiskHits(), total = found + getMisses();
+		return total == 0 ? 0 : (double) found / total;
+	}
+
+	/**
+	 * Get the number of solutions held in memory.
+	 * @return The number of solutions.
+	 */
+	public int size()
+	{
+		synchronized(entries)
+		{
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Get the largest number of solutions held in memory.
+	 * @return The capacity of the cache.
+	 */
+	public int getCapacity() { return this.capacity; }
+
+	/**
+	 * Read a solution from disk.
+	 * @return The solution, or null if there is no directory or it holds no solution for the signature.
+	 */
+	private Solution read(Signature signature)
+	{
+		if(directory == null)
+			return null;
+
+		try
+		{
+			List<String> lines = Files.readAllLines(file(signature), StandardCharsets.UTF_8);
+			// A different signature with the same file name is a miss
+			if(lines.size() != 2 || !lines.get(0).equals(signature.toString()))
+				return null;
+			return Solution.parse(lines.get(1));
+		}
+		catch(IOException | RuntimeException e)
+		{
+			// A file that is missing or cannot be read is a miss, and is written again
+			return null;
+		}
+	}
+
+	/**
+	 * Write a solution to disk, replacing the file in one step so a reader never sees
+	 * half of it.
+	 */
+	private void write(Signature signature, Solution solution)
+	{
+		if(directory == null)
+			return;
+
+		java.nio.file.Path file = file(signature);
+		try
+		{
+			java.nio.file.Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+			try
+			{
+				Files.write(temporary, (signature + "\n" + solution + "\n").getBytes(StandardCharsets.UTF_8));
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			finally
+			{
+				Files.deleteIfExists(temporary);
+			}
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * The file a solution is kept in, named after a hash of its signature.
+	 */
+	private java.nio.file.Path file(Signature signature)
+	{
+		return directory.resolve(String.format("%016x.solution", signature.longHash()));
+	}
+
+	/**
+	 * What decides the solution of a problem: the capacity, the bank the torch starts on,
+	 * whether it is symmetric and the sorted crossing times on each bank. A symmetric
+	 * problem only needs the right number of people of each time on each bank, so its
+	 * solutions are kept apart from the rest.
+	 */
+	private static final class Signature
+	{
+		final int capacity;
+		final TorchDirection torchLocation;
+		final boolean symmetric;
+		final int[] west, east;
+		final int hash;
+
+		Signature(ProblemSpec spec)
+		{
+			this.capacity = spec.getCapacity();
+			this.torchLocation = spec.getTorchLocation();
+			this.symmetric = spec.isSymmetric();
+			this.west = sortedTimes(spec.getWest());
+			this.east = sortedTimes(spec.getEast());
+			this.hash = 31 * (31 * (31 * (2 * capacity + (symmetric ? 1 : 0)) + torchLocation.hashCode()) + Arrays.hashCode(west)) + Arrays.hashCode(east);
+		}
+
+		private static int[] sortedTimes(List<Person> people)
+		{
+			int[] times = new int[people.size()];
+			for(int i=0; i<times.length; i++)
+				times[i] = people.get(i).getTime();
+			Arrays.sort(times);
+			return times;
+		}
+
+		/**
+		 * A 64 bit hash of the signature, so files of different signatures rarely share a name.
+		 */
+		long longHash()
+		{
+			long hash = 0xcbf29ce484222325L;
+			for(byte b : toString().getBytes(StandardCharsets.UTF_8))
+				hash = (hash ^ b) * 0x100000001b3L;
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other)
+		{
+			if(this == other)
+				return true;
+			if(!(other instanceof Signature))
+				return false;
+
+			Signature signature = (Signature) other;
+			return hash == signature.hash && capacity == signature.capacity && torchLocation == signature.torchLocation && symmetric == signature.symmetric
+					&& Arrays.equals(west, signature.west) && Arrays.equals(east, signature.east);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		/**
+		 * Creates a string to model the Signature object, as capacity;torch;west times;east times
+		 * with an S after the torch of a symmetric problem.
+		 */
+		@Override
+		public String toString()
+		{
+			StringBuilder text = new StringBuilder().append(capacity).append(';').append(torchLocation == TorchDirection.WEST ? 'W' : 'E');
+			if(symmetric)
+				text.append('S');
+			for(int[] bank : new int[][] {west, east})
+			{
+				text.append(';');
+				for(int i=0; i<bank.length; i++)
+					text.append(i == 0 ? "" : ",").append(bank[i]);
+			}
+			return text.toString();
+		}
+	}
+
+	/**
+	 * A solution held as the masks of the people crossing at each step. Bit i of a mask
+	 * stands for the i-th person of a problem ordered by crossing time, with the people
+	 * starting on the western bank first among those of the same time. Every problem with
+	 * the same signature has the same time and starting bank at each position, so a
+	 * solution of one is a solution of the others once each position is given its name.
+	 */
+	private static final class Solution
+	{
+		final long[] groups;
+
+		Solution(long[] groups)
+		{
+			this.groups = groups;
+		}
+
+		Solution(ProblemSpec spec, Path path)
+		{
+			Map<Person, Integer> position = new IdentityHashMap<>();
+			Person[] order = order(spec);
+			for(int i=0; i<order.length; i++)
+				position.put(order[i], i);
+
+			this.groups = new long[path.size()];
+			int i = 0;
+			for(ActionStatePair step : path)
+			{
+				for(Person person : ((BridgeAction) step.action).getPeople())
+					groups[i] |= 1L << position.get(person);
+				i++;
+			}
+		}
+
+		/**
+		 * Replay the solution on a problem, naming the people at each position.
+		 */
+		Path replay(ProblemSpec spec)
+		{
+			Roster roster = spec.getRoster();
+			Person[] order = order(spec);
+			long[] bits = new long[order.length];
+			for(int i=0; i<order.length; i++)
+				bits[i] = roster.maskOf(Collections.singletonList(order[i]));
+
+			BridgeState state = new BridgeState(roster, roster.maskOf(spec.getWest()), spec.getTorchLocation());
+			Path path = new Path();
+			path.head = state;
+
+			for(long mask : groups)
+			{
+				long group = 0;
+				for(long rest = mask; rest != 0; rest &= rest - 1)
+					group |= bits[Long.numberOfTrailingZeros(rest)];
+				TorchDirection direction = BridgeState.switchTorchLocation(state.getTorchLocation());
+				BridgeAction action = new BridgeAction(roster, group, direction);
+
+				state = new BridgeState(roster, state.westAfter(group), direction);
+				path.add(new ActionStatePair(action, state));
+				path.cost += action.cost;
+			}
+			return path;
+		}
+
+		/**
+		 * Order the people of a problem by crossing time, with the people starting on the
+		 * western bank first among those of the same time.
+		 */
+		static Person[] order(ProblemSpec spec)
+		{
+			List<Person> people = new ArrayList<>(spec.getWest());
+			people.sort(RunProblem.comparator);
+			List<Person> east = new ArrayList<>(spec.getEast());
+			east.sort(RunProblem.comparator);
+			people.addAll(east);
+
+			// The sort is stable, so the western bank stays first within a time
+			people.sort(RunProblem.comparator);
+			return people.toArray(new Person[0]);
+		}
+
+		static Solution parse(String line)
+		{
+			if(line.isEmpty())
+				return new Solution(new long[0]);
+			return new Solution(Arrays.stream(line.split(",")).mapToLong(mask -> Long.parseUnsignedLong(mask, 16)).toArray());
+		}
+
+		/**
+		 * Creates a string to model the Solution object, as its masks in hex.
+		 */
+		@Override
+		public String toString()
+		{
+			StringBuilder text = new StringBuilder();
+			for(int i=0; i<groups.length; i++)
+				text.append(i == 0 ? "" : ",").append(Long.toHexString(groups[i]));
+			return text.toString();
+		}
+	}
+}
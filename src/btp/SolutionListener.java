@@ -0,0 +1,20 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import cm3038.search.Path;
+
+@FunctionalInterface
+public interface SolutionListener
+{
+	/**
+	 * Receive a solution that is cheaper than every one found before it.
+	 * 
+	 * @param path  The new solution.
+	 * @param bound How far from the cheapest the solution can be at most, as a factor: the
+	 *              cheapest solution costs at least path.cost / bound. A bound of 1 means
+	 *              the solution is proven to be the cheapest.
+	 */
+	void improved(Path path, double bound);
+}
@@ -0,0 +1,250 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import cm3038.search.ActionStatePair;
+
+public final class SolutionWriter implements Consumer<BatchResult>, Flushable, Closeable
+{
+	/**
+	 * The formats a solution can be written in.
+	 */
+	public enum Format
+	{
+		// index,cost,nodes,micros,actions with a header line
+		CSV,
+		// One JSON object per line
+		JSONL
+	}
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final WritableByteChannel channel;
+	private final Format format;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final StringBuilder line = new StringBuilder();
+
+	private long written;
+
+	/**
+	 * Create a writer of solutions to a channel, one solution per line.
+	 *
+	 * The actions of a solution are written in order, each as the names of the people
+	 * crossing joined by + followed by > if they go east or < if they go west, so the
+	 * basic problem is solved by Adam+Ben> Adam< Claire+Doris> Ben< Adam+Ben>. The cost
+	 * of a problem with no solution is left empty, and one that failed has its error
+	 * written in place of its actions.
+	 *
+	 * @param channel The channel to write to.
+	 * @param format  The format to write in.
+	 */
+	public SolutionWriter(WritableByteChannel channel, Format format)
+	{
+		this.channel = channel;
+		this.format = format;
+
+		if(format == Format.CSV)
+			write("index,cost,nodes,micros,actions\n");
+	}
+
+	/**
+	 * Open a writer of solutions to a file, replacing anything already in it.
+	 *
+	 * @param file   The file to write to.
+	 * @param format The format to write in.
+	 * @return The writer.
+	 * @throws IOException If the file cannot be opened.
+	 */
+	public static SolutionWriter open(Path file, Format format) throws IOException
+	{
+		return new SolutionWriter(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), format);
+	}
+
+	/**
+	 * Write the solution of one problem.
+	 *
+	 * @throws UncheckedIOException If the channel cannot be written to.
+	 */
+	@Override
+	public void accept(BatchResult result)
+	{
+		line.setLength(0);
+		if(format == Format.CSV)
+			appendCsv(result);
+		else
+			appendJson(result);
+		line.append('\n');
+		write(line);
+		written++;
+	}
+
+	/**
+	 * Get the number of solutions written so far.
+	 * @return The number of solutions.
+	 */
+	public long getWritten()
+	{
+		return this.written;
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		buffer.flip();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		flush();
+		channel.close();
+	}
+
+	/**
+	 * Write a line as CSV. The actions never hold a comma, so nothing is quoted
+	 * except an error message.
+	 */
+	private void appendCsv(BatchResult result)
+	{
+		line.append(result.getIndex()).append(',');
+		if(result.getPath() != null)
+			line.append(formatCost(result.getCost()));
+		line.append(',').append(result.getNodes()).append(',').append(result.getNanos() / 1000).append(',');
+
+		if(!result.isSuccess())
+			line.append('"').append(String.valueOf(result.getError()).replace("\"", "\"\"")).append('"');
+		else if(result.getPath() != null)
+		{
+			for(ActionStatePair step : result.getPath())
+			{
+				if(step != result.getPath().getFirst())
+					line.append(' ');
+				appendAction(line, (BridgeAction) step.action);
+			}
+		}
+	}
+
+	/**
+	 * Write a line as a JSON object.
+	 */
+	private void appendJson(BatchResult result)
+	{
+		line.append("{\"index\":").append(result.getIndex());
+		line.append(",\"cost\":").append(result.getPath() == null ? "null" : formatCost(result.getCost()));
+		line.append(",\"nodes\":").append(result.getNodes());
+		line.append(",\"micros\":").append(result.getNanos() / 1000);
+
+		if(!result.isSuccess())
+		{
+			line.append(",\"error\":");
+			appendJsonString(String.valueOf(result.getError()));
+		}
+		else if(result.getPath() != null)
+		{
+			line.append(",\"actions\":[");
+			for(ActionStatePair step : result.getPath())
+			{
+				if(step != result.getPath().getFirst())
+					line.append(',');
+				line.append('"');
+				StringBuilder action = new StringBuilder();
+				appendAction(action, (BridgeAction) step.action);
+				appendJsonEscaped(action);
+				line.append('"');
+			}
+			line.append(']');
+		}
+		line.append('}');
+	}
+
+	/**
+	 * Write one action as the names of the people crossing and the direction they go.
+	 */
+	private static void appendAction(StringBuilder result, BridgeAction action)
+	{
+		boolean first = true;
+		for(Person person : action.getPeople())
+		{
+			if(!first)
+				result.append('+');
+			result.append(person.getName());
+			first = false;
+		}
+		result.append(action.getTorchDirection() == TorchDirection.EAST ? '>' : '<');
+	}
+
+	/**
+	 * Write a string as a quoted JSON string.
+	 */
+	private void appendJsonString(CharSequence text)
+	{
+		line.append('"');
+		appendJsonEscaped(text);
+		line.append('"');
+	}
+
+	/**
+	 * Write the characters of a string, escaping the ones JSON does not allow.
+	 */
+	private void appendJsonEscaped(CharSequence text)
+	{
+		for(int i=0; i<text.length(); i++)
+		{
+			char c = text.charAt(i);
+			if(c == '"' || c == '\\')
+				line.append('\\').append(c);
+			else if(c < 0x20)
+				line.append(String.format("\\u%04x", (int) c));
+			else
+				line.append(c);
+		}
+	}
+
+	/**
+	 * Write a cost without a trailing .0 when it is a whole number.
+	 */
+	private static String formatCost(double cost)
+	{
+		return cost == Math.rint(cost) && !Double.isInfinite(cost) ? String.valueOf((long) cost) : String.valueOf(cost);
+	}
+
+	/**
+	 * Copy text into the buffer, writing the buffer to the channel whenever it fills.
+	 */
+	private void write(CharSequence text)
+	{
+		byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+		try
+		{
+			int offset = 0;
+			while(offset < bytes.length)
+			{
+				if(!buffer.hasRemaining())
+					flush();
+				int count = Math.min(buffer.remaining(), bytes.length - offset);
+				buffer.put(bytes, offset, count);
+				offset += count;
+			}
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import cm3038.search.*;
+
+public class SolveProblem
+{
+	private static final String USAGE = String.join("\n",
+			"Usage: java btp.SolveProblem [options] [problem ...]",
+			"",
+			"A problem is basic, advanced or a line of the input format, such as",
+			"\"2;W;Adam:1,Ben:2,Claire:5,Doris:8;\". With no problem, or -, one problem is",
+			"read from each line of standard input.",
+			"",
+			"  -e, --engine name     astar (default), compact, ida, rbfs, bidirectional,",
+			"                        parallel or external",
+			"  -h, --heuristic name  max (default), trip-count, slowest-crossing,",
+			"                        torch-side or none",
+			"  -p, --pruned          prune dominated crossings",
+			"  -s, --symmetric       treat people with the same time as interchangeable",
+			"  -f, --format name     text (default), csv or jsonl",
+			"  -t, --timing          print the time to the first solution on standard error",
+			"");
+
+	// Exit statuses, so a script can tell an unsolvable problem from a mistake
+	public static final int SOLVED = 0, UNSOLVABLE = 1, USAGE_ERROR = 2;
+
+	private String engine = "astar", heuristic = "max", format = "text";
+	private boolean pruned, symmetric, timing;
+	private final List<String> problems = new ArrayList<>();
+
+	public static void main(String[] args) throws IOException
+	{
+		System.exit(run(args, System.in, System.out, System.err));
+	}
+
+	/**
+	 * Solve the problems given by the arguments without asking for anything, so the
+	 * solver can be called from scripts.
+	 *
+	 * Only the classes the chosen engine and heuristic need are loaded, which keeps the
+	 * time to start small; the scripts in the scripts directory cut it further with a
+	 * class data sharing archive of those classes.
+	 *
+	 * @param args The arguments, as described by the usage.
+	 * @param in   Where problems are read from if none are given.
+	 * @param out  Where the solutions are written.
+	 * @param err  Where the usage, errors and timings are written.
+	 * @return SOLVED if every problem was solved, UNSOLVABLE if one could not be and
+	 *         USAGE_ERROR if the arguments or a problem could not be understood.
+	 * @throws IOException If the input cannot be read.
+	 */
+	public static int run(String[] args, InputStream in, PrintStream out, PrintStream err) throws IOException
+	{
+		long started = System.nanoTime();
+		SolveProblem command = new SolveProblem();
+		try
+		{
+			command.parse(args);
+		}
+		catch(IllegalArgumentException e)
+		{
+			err.println(e.getMessage());
+			err.print(USAGE);
+			return USAGE_ERROR;
+		}
+		if(command.problems.contains("--help"))
+		{
+			out.print(USAGE);
+			return SOLVED;
+		}
+
+		if(command.problems.isEmpty())
+			command.problems.add("-");
+
+		int status = SOLVED;
+		long index = 0;
+		try (SolutionWriter writer = command.format.equals("text") ? null : new SolutionWriter(Channels.newChannel(out), SolutionWriter.Format.valueOf(command.format.toUpperCase())))
+		{
+			for(String problem : command.problems)
+			{
+				List<String> lines = new ArrayList<>();
+				if(problem.equals("-"))
+				{
+					BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+					for(String line; (line = reader.readLine()) != null; )
+						if(!line.isBlank() && !line.startsWith("#"))
+							lines.add(line);
+				}
+				else
+					lines.add(problem);
+
+				for(String line : lines)
+				{
+					ProblemSpec spec;
+					Astar search;
+					try
+					{
+						spec = command.spec(line);
+						search = command.engine(spec);
+					}
+					catch(IllegalArgumentException e)
+					{
+						err.println(String.format("Cannot solve %s: %s", line, e.getMessage()));
+						return USAGE_ERROR;
+					}
+
+					long searchStarted = System.nanoTime();
+					Path path = spec.restoreNames(search.search());
+					long nanos = System.nanoTime() - searchStarted;
+					if(path == null)
+						status = UNSOLVABLE;
+
+					if(writer == null)
+						print(out, spec, search, path);
+					else
+					{
+						writer.accept(new BatchResult((int) index, spec, path, search.nodeVisited, nanos, null));
+						writer.flush();
+					}
+
+					if(command.timing && index == 0)
+						err.println(String.format("First solution %.1fms after main started", (System.nanoTime() - started) / 1e6));
+					index++;
+				}
+			}
+		}
+		out.flush();
+		return status;
+	}
+
+	/**
+	 * Read the options and problems from the arguments.
+	 *
+	 * @throws IllegalArgumentException If an option is not known or is missing its value.
+	 */
+	private void parse(String[] args)
+	{
+		for(int i=0; i<args.length; i++)
+		{
+			String arg = args[i];
+			switch(arg)
+			{
+				case "-e": case "--engine": engine = value(args, ++i, arg); break;
+				case "-h": case "--heuristic": heuristic = value(args, ++i, arg); break;
+				case "-f": case "--format": format = value(args, ++i, arg); break;
+				case "-p": case "--pruned": pruned = true; break;
+				case "-s": case "--symmetric": symmetric = true; break;
+				case "-t": case "--timing": timing = true; break;
+				case "--help": problems.add(arg); break;
+				default:
+					if(arg.startsWith("-") && !arg.equals("-"))
+						throw new IllegalArgumentException(String.format("Unknown option %s", arg));
+					problems.add(arg);
+			}
+		}
+
+		if(!format.equals("text") && !format.equals("csv") && !format.equals("jsonl"))
+			throw new IllegalArgumentException(String.format("Unknown format %s", format));
+	}
+
+	private static String value(String[] args, int i, String option)
+	{
+		if(i >= args.length)
+			throw new IllegalArgumentException(String.format("%s needs a value", option));
+		return args[i];
+	}
+
+	/**
+	 * Build the problem named by a problem argument.
+	 */
+	private ProblemSpec spec(String problem)
+	{
+		if(problem.equals("basic") || problem.equals("advanced"))
+		{
+			RunProblem.setPrunedStatus(pruned);
+			RunProblem.setSymmetricStatus(symmetric);
+			return problem.equals("basic") ? RunProblem.configureBasicProblem() : RunProblem.configureAdvancedProblem();
+		}
+
+		ProblemSpec spec = ProblemReader.parse(problem, pruned);
+		if(!symmetric)
+			return spec;
+		return new ProblemSpec(spec.getWest(), spec.getEast(), spec.getCapacity(), spec.getTorchLocation(), pruned, true);
+	}
+
+	/**
+	 * Create the search engine named by the options for a problem.
+	 */
+	private Astar engine(ProblemSpec spec)
+	{
+		BridgeState start = spec.getInitialState(), goal = spec.getGoalState();
+		Heuristic estimator = heuristic();
+		switch(engine)
+		{
+			case "astar": return new Astar(start, goal, estimator);
+			case "compact": return new CompactAstar(start, goal, estimator);
+			case "ida": return new IDAstar(start, goal, estimator, 0);
+			case "rbfs": return new RecursiveBestFirst(start, goal, estimator, 0);
+			case "bidirectional": return new BidirectionalAstar(start, goal, estimator, estimator);
+			case "parallel": return new ParallelAstar(start, goal, estimator, Runtime.getRuntime().availableProcessors());
+			case "external": return new ExternalAstar(start, goal, estimator);
+			default: throw new IllegalArgumentException(String.format("Unknown engine %s", engine));
+		}
+	}
+
+	private Heuristic heuristic()
+	{
+		switch(heuristic)
+		{
+			case "max": return new MaxHeuristic(new TripCountHeuristic(), new SlowestCrossingHeuristic());
+			case "trip-count": return new TripCountHeuristic();
+			case "slowest-crossing": return new SlowestCrossingHeuristic();
+			case "torch-side": return new TorchSideHeuristic();
+			case "none": return Heuristic.NONE;
+			default: throw new IllegalArgumentException(String.format("Unknown heuristic %s", heuristic));
+		}
+	}
+
+	/**
+	 * Print a solution the way the menu of RunProblem does.
+	 */
+	private static void print(PrintStream out, ProblemSpec spec, Astar search, Path path)
+	{
+		out.println(String.format("Init: %s", spec.getInitialState()));
+		out.println(String.format("Goal: %s", spec.getGoalState()));
+		if(path == null)
+		{
+			out.println("No solution.");
+			return;
+		}
+
+		out.println(String.format("Nodes Explored: %s\nSolution Cost: %s\n\nSolution:", search.nodeVisited, path.cost));
+		PrintStream console = System.out;
+		System.setOut(out);
+		try
+		{
+			path.print();
+		}
+		finally
+		{
+			System.setOut(console);
+		}
+	}
+}
@@ -0,0 +1,517 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public final class SolverDaemon implements AutoCloseable
+{
+	// Rosters of at most this many people are solved in batches rather than one task each
+	public static final int SMALL_ROSTER = 10;
+	// The most problems solved in one batch
+	public static final int BATCH_SIZE = 32;
+	// How long the first problem of a batch waits for others to join it
+	private static final long LINGER_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+	static
+	{
+		// The server writes the headers and body of an answer apart, and with Nagle's
+		// algorithm on the body then waits out the client's delayed ack: 40ms or more
+		if(System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService handlers, workers;
+	private final Thread batcher;
+	private final BlockingQueue<Job> small = new LinkedBlockingQueue<Job>();
+	// The problems being solved, by key, so an identical request waits on the same result
+	private final ConcurrentHashMap<String, CompletableFuture<BatchResult>> inFlight = new ConcurrentHashMap<String, CompletableFuture<BatchResult>>();
+
+	private final LongAdder requests = new LongAdder(), problems = new LongAdder(), coalesced = new LongAdder(), batches = new LongAdder(), batched = new LongAdder(), timeouts = new LongAdder();
+
+	// The totals of every search run, or null to record nothing
+	private volatile SearchMetrics metrics;
+	// The solutions of problems solved before, or null to solve every problem
+	private volatile SolutionCache cache;
+	// How long a request waits for its problems before it is answered 503
+	private volatile long timeout = TimeUnit.SECONDS.toNanos(60);
+	private volatile boolean closed;
+
+	/**
+	 * A problem waiting to be solved and the result its requests wait on.
+	 */
+	private static final class Job
+	{
+		private final String key;
+		private final ProblemSpec spec;
+		private final CompletableFuture<BatchResult> result = new CompletableFuture<BatchResult>();
+
+		private Job(String key, ProblemSpec spec)
+		{
+			this.key = key;
+			this.spec = spec;
+		}
+	}
+
+	/**
+	 * Start a solver listening on the loopback address, with one worker per processor.
+	 *
+	 * @param port The port to listen on, or 0 for any free port.
+	 * @throws IOException If the port cannot be listened on.
+	 */
+	public SolverDaemon(int port) throws IOException
+	{
+		this(port, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Start a solver listening on the loopback address.
+	 *
+	 * The solver stays running between requests, so the searches it runs are compiled
+	 * once and stay compiled, where a JVM started for each problem would spend most of
+	 * its time interpreting them. It answers:
+	 *
+	 *   POST /solve   one problem per line of the body, in the input format of
+	 *                 ProblemReader; ?format=csv or jsonl (the default) chooses how the
+	 *                 solutions are written, as by SolutionWriter, and ?pruned=true and
+	 *                 ?symmetric=true how the problems are solved. The solutions come
+	 *                 back in the order of the lines, each with its cost, actions and
+	 *                 the microseconds spent solving it, or 503 if they are not all
+	 *                 solved within the timeout.
+	 *   GET /stats    the counts of requests, coalesced problems, batches and timeouts.
+	 *
+	 * A problem identical to one still being solved, names and all, waits for that
+	 * result rather than being solved again. Problems of at most SMALL_ROSTER people
+	 * take too little time to be worth a task each, so they are queued and handed to
+	 * the workers in batches of up to BATCH_SIZE; larger ones are a task each.
+	 *
+	 * @param port    The port to listen on, or 0 for any free port.
+	 * @param workers The number of problems solved at the same time.
+	 * @throws IOException If the port cannot be listened on.
+	 */
+	public SolverDaemon(int port, int workers) throws IOException
+	{
+		if(workers < 1)
+			throw new IllegalArgumentException(String.format("Need at least 1 worker, got %d", workers));
+
+		this.workers = Executors.newFixedThreadPool(workers, daemonThreads("btp-worker"));
+		// A handler never waits on a solve, so a few are enough
+		this.handlers = Executors.newFixedThreadPool(Math.max(4, workers), daemonThreads("btp-handler"));
+
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256);
+		server.createContext("/solve", this::handleSolve);
+		server.createContext("/stats", this::handleStats);
+		server.setExecutor(handlers);
+
+		this.batcher = new Thread(this::batch, "btp-batcher");
+		batcher.setDaemon(true);
+		batcher.start();
+		server.start();
+	}
+
+	/**
+	 * Run the solver until the process is stopped.
+	 *
+	 * The arguments are optionally the port (3038, the default) and the number of
+	 * workers (one per processor, the default). -Dbtp.cache=entries reuses the
+	 * solutions of problems that only differ in names, as it does for RunProblem.
+	 *
+	 * @param args The arguments the program was run with.
+	 * @throws IOException If the port cannot be listened on.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 3038;
+		int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		SolverDaemon daemon = new SolverDaemon(port, workers);
+		String cacheSize = System.getProperty("btp.cache");
+		if(cacheSize != null)
+			daemon.setCache(new SolutionCache(Integer.parseInt(cacheSize)));
+		Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+		System.err.println(String.format("Solving on http://localhost:%d/solve with %d workers", daemon.getPort(), workers));
+	}
+
+	/**
+	 * Solve a problem, or wait on the result of an identical problem already being solved.
+	 *
+	 * @param spec The problem to solve.
+	 * @return The result, with an index of 0. Failures are recorded in the result.
+	 */
+	public CompletableFuture<BatchResult> submit(ProblemSpec spec)
+	{
+		if(closed)
+			throw new IllegalStateException("The solver is closed");
+		problems.increment();
+
+		Job job = new Job(key(spec), spec);
+		CompletableFuture<BatchResult> running = inFlight.putIfAbsent(job.key, job.result);
+		if(running != null)
+		{
+			coalesced.increment();
+			return running;
+		}
+
+		if(spec.getWest().size() + spec.getEast().size() <= SMALL_ROSTER)
+			small.add(job);
+		else
+			workers.execute(() -> solve(job));
+		return job.result;
+	}
+
+	/**
+	 * The key of a problem: identical problems, names included, have the same key.
+	 */
+	private static String key(ProblemSpec spec)
+	{
+		return ProblemReader.format(spec) + (spec.isPruned() ? ";p" : "") + (spec.isSymmetric() ? ";s" : "");
+	}
+
+	/**
+	 * Solve a problem and hand its result to everything waiting on it.
+	 */
+	private void solve(Job job)
+	{
+		BatchResult result;
+		try
+		{
+			result = BatchSolver.solveOne(0, job.spec, metrics, cache);
+		}
+		catch(Throwable e)
+		{
+			// Whatever went wrong, the requests waiting on the problem are answered
+			result = new BatchResult(0, job.spec, null, 0, 0, e);
+		}
+		// Forget the problem before completing it, so nothing joins a finished result
+		inFlight.remove(job.key, job.result);
+		job.result.complete(result);
+	}
+
+	/**
+	 * Take the queued small problems a batch at a time and give each batch to a worker.
+	 * The first problem of a batch waits up to LINGER_NANOS for others, so a quiet
+	 * solver answers a lone request almost at once.
+	 */
+	private void batch()
+	{
+		try
+		{
+			while(!closed)
+			{
+				Job first = small.poll(100, TimeUnit.MILLISECONDS);
+				if(first == null)
+					continue;
+
+				List<Job> jobs = new ArrayList<Job>(BATCH_SIZE);
+				jobs.add(first);
+				long deadline = System.nanoTime() + LINGER_NANOS;
+				while(jobs.size() < BATCH_SIZE)
+				{
+					Job next = small.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+					if(next == null)
+						break;
+					jobs.add(next);
+				}
+
+				batches.increment();
+				batched.add(jobs.size());
+				workers.execute(() ->
+				{
+					for(Job job : jobs)
+						solve(job);
+				});
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Answer POST /solve with the solutions of the problems in the body.
+	 *
+	 * The handler only reads the request and submits its problems: the answer is written
+	 * once they are solved, by whichever handler is free, so a request for slow problems
+	 * holds no thread while it waits and /stats and small requests are answered meanwhile.
+	 */
+	private void handleSolve(HttpExchange exchange) throws IOException
+	{
+		boolean pending = false;
+		try
+		{
+			if(!exchange.getRequestMethod().equals("POST"))
+			{
+				respond(exchange, 405, "Use POST with one problem per line\n");
+				return;
+			}
+			requests.increment();
+			long started = System.nanoTime();
+
+			String format = "jsonl";
+			boolean pruned = false, symmetric = false;
+			String query = exchange.getRequestURI().getRawQuery();
+			if(query != null)
+			{
+				for(String parameter : query.split("&"))
+				{
+					int equals = parameter.indexOf('=');
+					String name = equals < 0 ? parameter : parameter.substring(0, equals);
+					String value = equals < 0 ? "true" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+					switch(name)
+					{
+						case "format": format = value; break;
+						case "pruned": pruned = Boolean.parseBoolean(value); break;
+						case "symmetric": symmetric = Boolean.parseBoolean(value); break;
+					}
+				}
+			}
+			if(!format.equals("csv") && !format.equals("jsonl"))
+			{
+				respond(exchange, 400, String.format("Unknown format %s\n", format));
+				return;
+			}
+
+			List<ProblemSpec> specs = new ArrayList<ProblemSpec>();
+			try (InputStream body = exchange.getRequestBody())
+			{
+				for(String line : new String(body.readAllBytes(), StandardCharsets.UTF_8).split("\n"))
+				{
+					if(line.isBlank() || line.startsWith("#"))
+						continue;
+					ProblemSpec spec = ProblemReader.parse(line.trim(), pruned);
+					specs.add(symmetric ? new ProblemSpec(spec.getWest(), spec.getEast(), spec.getCapacity(), spec.getTorchLocation(), pruned, true) : spec);
+				}
+			}
+			catch(IllegalArgumentException e)
+			{
+				respond(exchange, 400, e.getMessage() + "\n");
+				return;
+			}
+
+			// Every problem is submitted before any is waited on, so they are solved together
+			List<CompletableFuture<BatchResult>> results = new ArrayList<CompletableFuture<BatchResult>>(specs.size());
+			for(ProblemSpec spec : specs)
+				results.add(submit(spec));
+
+			SolutionWriter.Format written = SolutionWriter.Format.valueOf(format.toUpperCase());
+			CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+				.orTimeout(timeout, TimeUnit.NANOSECONDS)
+				.whenCompleteAsync((done, failure) -> answer(exchange, written, specs, results, failure, started), handlers);
+			pending = true;
+		}
+		finally
+		{
+			if(!pending)
+				exchange.close();
+		}
+	}
+
+	/**
+	 * Write the solutions of a request once its problems are solved, or 503 if they were
+	 * not solved in time. The problems still being solved carry on, so a repeat of the
+	 * request can pick their results up.
+	 */
+	private void answer(HttpExchange exchange, SolutionWriter.Format format, List<ProblemSpec> specs, List<CompletableFuture<BatchResult>> results, Throwable failure, long started)
+	{
+		try (exchange)
+		{
+			if(failure instanceof TimeoutException)
+			{
+				timeouts.increment();
+				respond(exchange, 503, String.format("Not solved within %dms\n", TimeUnit.NANOSECONDS.toMillis(timeout)));
+				return;
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			SolutionWriter writer = new SolutionWriter(Channels.newChannel(out), format);
+			for(int i=0; i<specs.size(); i++)
+			{
+				BatchResult result;
+				try
+				{
+					result = results.get(i).join();
+				}
+				catch(CompletionException | CancellationException e)
+				{
+					result = new BatchResult(0, specs.get(i), null, 0, 0, e.getCause() == null ? e : e.getCause());
+				}
+				writer.accept(new BatchResult(i, specs.get(i), result.getPath(), result.getNodes(), result.getNanos(), result.getError()));
+			}
+			writer.flush();
+
+			exchange.getResponseHeaders().set("Content-Type", format == SolutionWriter.Format.CSV ? "text/csv" : "application/x-ndjson");
+			exchange.getResponseHeaders().set("X-Solve-Micros", Long.toString((System.nanoTime() - started) / 1000));
+			respond(exchange, 200, out.toByteArray());
+		}
+		catch(IOException e)
+		{
+			// The client went away before its answer was written
+		}
+	}
+
+	/**
+	 * Answer GET /stats with the counts of what the solver has done.
+	 */
+	private void handleStats(HttpExchange exchange) throws IOException
+	{
+		try (exchange)
+		{
+			respond(exchange, 200, toString() + "\n");
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String text) throws IOException
+	{
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		respond(exchange, status, text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException
+	{
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		try (OutputStream out = exchange.getResponseBody())
+		{
+			out.write(body);
+		}
+	}
+
+	private static ThreadFactory daemonThreads(String name)
+	{
+		AtomicInteger count = new AtomicInteger();
+		return task ->
+		{
+			Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Add the metrics of every search run from now on to a set of totals.
+	 * @param metrics The totals, or null to record nothing (the default).
+	 */
+	public void setMetrics(SearchMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Look every problem solved from now on up in a cache of solutions before searching.
+	 * @param cache The cache, or null to solve every problem (the default).
+	 */
+	public void setCache(SolutionCache cache)
+	{
+		this.cache = cache;
+	}
+
+	/**
+	 * Answer a request with 503 if its problems are not all solved within a time.
+	 * @param nanos The time, 60 seconds by default.
+	 */
+	public void setTimeout(long nanos)
+	{
+		if(nanos <= 0)
+			throw new IllegalArgumentException(String.format("The timeout must be positive, got %d", nanos));
+		this.timeout = nanos;
+	}
+
+	/**
+	 * Stop listening, then stop the workers once the problems they hold are solved.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		server.stop(0);
+		batcher.interrupt();
+		try
+		{
+			batcher.join();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		for(Job job; (job = small.poll()) != null; )
+			job.result.completeExceptionally(new IllegalStateException("The solver is closed"));
+		handlers.shutdown();
+		workers.shutdown();
+	}
+
+	/**
+	 * Creates a string to model the SolverDaemon object.
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format("requests: %d, problems: %d, coalesced: %d, batches: %d (%.1f problems each), timed out: %d", getRequests(), getProblems(), getCoalesced(), getBatches(), getBatches() == 0 ? 0 : (double) batched.sum() / getBatches(), getTimeouts());
+	}
+
+	// Getter Methods
+
+	/**
+	 * Get the port the solver listens on.
+	 * @return The port.
+	 */
+	public int getPort() { return server.getAddress().getPort(); }
+
+	/**
+	 * Get the number of POST /solve requests answered or being answered.
+	 * @return The number of requests.
+	 */
+	public long getRequests() { return requests.sum(); }
+
+	/**
+	 * Get the number of problems submitted, coalesced ones included.
+	 * @return The number of problems.
+	 */
+	public long getProblems() { return problems.sum(); }
+
+	/**
+	 * Get the number of problems that waited on an identical problem already being solved.
+	 * @return The number of coalesced problems.
+	 */
+	public long getCoalesced() { return coalesced.sum(); }
+
+	/**
+	 * Get the number of batches of small problems handed to the workers.
+	 * @return The number of batches.
+	 */
+	public long getBatches() { return batches.sum(); }
+
+	/**
+	 * Get the number of requests answered 503 because their problems were not solved in time.
+	 * @return The number of timed out requests.
+	 */
+	public long getTimeouts() { return timeouts.sum(); }
+}
@@ -0,0 +1,29 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+
+public class TorchSideHeuristic implements Heuristic
+{
+	/**
+	 * The original estimate: the fastest time on the torch side, or the slowest time
+	 * if the torch is on the eastern bank in the basic problem, i.e. when the goal has
+	 * nobody on the western bank.
+	 * 
+	 * The slowest time can over-estimate (it is 8 at the goal of the basic problem),
+	 * so this is only kept to compare the other heuristics against.
+	 */
+	@Override
+	public double estimate(BridgeState state, BridgeState goal)
+	{
+		long people = state.getTorchSideMask();
+		
+		if(state.getTorchLocation() == TorchDirection.EAST && goal.getWestMask() == 0)
+			return state.getRoster().slowest(people);
+		return state.getRoster().fastest(people);
+	}
+	
+	@Override
+	public String toString() { return "torch-side"; }
+}
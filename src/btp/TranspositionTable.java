@@ -0,0 +1,97 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cm3038.search.State;
+
+public final class TranspositionTable
+{
+	private final int capacity;
+	private final LinkedHashMap<State, Entry> entries;
+
+	/**
+	 * Create a table remembering the cheapest cost each state has been reached at.
+	 *
+	 * The table holds at most capacity states. When it is full the state used least
+	 * recently is forgotten, so memory stays bounded however large the search gets; a
+	 * forgotten state only means a path to it is no longer recognised as a repeat.
+	 *
+	 * @param capacity The largest number of states held.
+	 */
+	public TranspositionTable(int capacity)
+	{
+		if(capacity < 1)
+			throw new IllegalArgumentException(String.format("The capacity must be at least 1, got %d", capacity));
+
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<State, Entry>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<State, Entry> eldest)
+			{
+				return size() > TranspositionTable.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Record that a state has been reached, and check if the path to it is worth going on
+	 * with. It is not if the state has been reached more cheaply before, or at the same
+	 * cost earlier in the same iteration, since everything after it has been or will be
+	 * searched from the other path.
+	 *
+	 * @param state     The state reached.
+	 * @param g         The cost of the path to the state.
+	 * @param iteration The iteration of the search, or 0 if it has none.
+	 * @return true if the path should be searched further.
+	 */
+	public boolean visit(State state, double g, int iteration)
+	{
+		Entry entry = entries.get(state);
+		if(entry == null)
+		{
+			entries.put(state, new Entry(g, iteration));
+			return true;
+		}
+
+		if(entry.g < g || (entry.g == g && entry.iteration == iteration && iteration != 0))
+			return false;
+
+		entry.g = g;
+		entry.iteration = iteration;
+		return true;
+	}
+
+	/**
+	 * Get the number of states held.
+	 * @return The number of states.
+	 */
+	public int size() { return entries.size(); }
+
+	/**
+	 * Get the largest number of states held.
+	 * @return The capacity of the table.
+	 */
+	public int getCapacity() { return capacity; }
+
+	/**
+	 * The cheapest cost a state has been reached at and the iteration it was reached in.
+	 */
+	private static final class Entry
+	{
+		double g;
+		int iteration;
+
+		Entry(double g, int iteration)
+		{
+			this.g = g;
+			this.iteration = iteration;
+		}
+	}
+}
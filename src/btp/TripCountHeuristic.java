@@ -0,0 +1,96 @@
+/**
+ * @author Kyle McPherson
+ */
+
+package btp;
+
+public class TripCountHeuristic implements Heuristic
+{
+	/**
+	 * Count the fewest trips each way that can still finish the problem and charge each
+	 * trip the least it could cost.
+	 * 
+	 * The people who have to go east must be split across the eastward trips, at most
+	 * capacity per trip. Sorting them from slowest to fastest, the i-th trip can be no
+	 * cheaper than the (i * capacity)-th slowest, so those trips cost at least the sum of
+	 * every capacity-th time starting with the slowest. The same holds going west.
+	 * 
+	 * Trips alternate direction, start on the torch side and end on the goal's torch side,
+	 * and every trip carries at least one person while bringing at most capacity. With
+	 * d = (people going east) - (people going west) that gives
+	 *   capacity * eastTrips >= westTrips + d   and   capacity * westTrips >= eastTrips - d,
+	 * which is what forces the return trips in the classic problem. Any trip beyond those
+	 * needed to carry the people on the wrong bank costs at least the fastest time.
+	 * 
+	 * If nobody is with the torch it can never move again, so a state that is not already
+	 * at the goal cannot reach it.
+	 */
+	@Override
+	public double estimate(BridgeState state, BridgeState goal)
+	{
+		Roster roster = state.getRoster();
+		int capacity = roster.getCapacity();
+		long goingEast = state.getWestMask() & ~goal.getWestMask();
+		long goingWest = state.getEastMask() & goal.getWestMask();
+		
+		int east = Long.bitCount(goingEast), west = Long.bitCount(goingWest);
+		if(capacity < 1 || (east == 0 && west == 0 && state.getTorchLocation() == goal.getTorchLocation()))
+			return 0;
+		if(state.getTorchSideMask() == 0)
+			return Double.POSITIVE_INFINITY;
+		
+		int carryingEast = ceilDiv(east, capacity), carryingWest = ceilDiv(west, capacity);
+		
+		// westTrips = eastTrips + offset, fixed by where the torch starts and ends
+		int offset = 0;
+		if(state.getTorchLocation() != goal.getTorchLocation())
+			offset = state.getTorchLocation() == TorchDirection.WEST ? -1 : 1;
+		
+		int eastTrips = Math.max(Math.max(carryingEast, carryingWest - offset), Math.max(-offset, 0));
+		if(capacity > 1)
+		{
+			int d = east - west;
+			eastTrips = Math.max(eastTrips, ceilDiv(offset + d, capacity - 1));
+			eastTrips = Math.max(eastTrips, ceilDiv(-d - capacity * offset, capacity - 1));
+		}
+		int westTrips = eastTrips + offset;
+		
+		int fastest = roster.time(0);
+		return everyNth(roster, goingEast, capacity) + everyNth(roster, goingWest, capacity)
+			 + (eastTrips - carryingEast + westTrips - carryingWest) * fastest;
+	}
+	
+	/**
+	 * Sum every n-th crossing time in a mask, starting with the slowest.
+	 * 
+	 * @param roster The roster the mask refers to.
+	 * @param mask   The people to sum over.
+	 * @param n      The step, i.e. the bridge capacity.
+	 * @return The sum of the times.
+	 */
+	static int everyNth(Roster roster, long mask, int n)
+	{
+		int sum = 0, skip = 0;
+		for(long bits = mask; bits != 0; bits &= ~Long.highestOneBit(bits))
+		{
+			if(skip == 0)
+			{
+				sum += roster.time(63 - Long.numberOfLeadingZeros(bits));
+				skip = n;
+			}
+			skip--;
+		}
+		return sum;
+	}
+	
+	/**
+	 * Divide and round towards positive infinity, for any sign of a.
+	 */
+	static int ceilDiv(int a, int b)
+	{
+		return -Math.floorDiv(-a, b);
+	}
+	
+	@Override
+	public String toString() { return "trip-count"; }
+}
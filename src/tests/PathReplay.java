@@ -0,0 +1,65 @@
+/**
+ * The PathReplay class checks a path found for a problem by replaying it from
+ * the people the problem starts with, for the tests that compare search engines.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import cm3038.search.ActionStatePair;
+import cm3038.search.Path;
+import btp.*;
+
+public class PathReplay
+{
+	/**
+	 * Replay a path from the people a problem starts with. The people are followed by
+	 * name rather than by state, so a path whose names were put back by restoreNames()
+	 * on a symmetric problem is checked the same way as any other.
+	 *
+	 * @param spec The problem the path was found for.
+	 * @param path The path to replay.
+	 * @return true if every action takes the torch across with between one person and
+	 *         the capacity of the bridge, all of them on the same bank as the torch, each
+	 *         state matches the replay, the costs add up and everyone ends on the bank
+	 *         they did not start on with the torch.
+	 */
+	public static boolean replays(ProblemSpec spec, Path path)
+	{
+		Set<Person> west = new LinkedHashSet<Person>(spec.getWest());
+		TorchDirection torch = spec.getTorchLocation();
+		double cost = 0;
+
+		for(ActionStatePair step : path)
+		{
+			BridgeAction action = (BridgeAction) step.action;
+			if(action.getTorchDirection() == torch || action.getPeople().isEmpty() || action.getPeople().size() > spec.getCapacity())
+				return false;
+
+			int slowest = 0;
+			for(Person person : action.getPeople())
+			{
+				if(west.contains(person) != (torch == TorchDirection.WEST))
+					return false;
+				slowest = Math.max(slowest, person.getTime());
+			}
+			if(action.getCost() != slowest)
+				return false;
+
+			if(torch == TorchDirection.WEST)
+				west.removeAll(action.getPeople());
+			else
+				west.addAll(action.getPeople());
+			torch = action.getTorchDirection();
+			cost += slowest;
+
+			BridgeState state = (BridgeState) step.state;
+			if(!state.getWest().equals(west) || state.getTorchLocation() != torch)
+				return false;
+		}
+
+		return cost == path.cost && torch != spec.getTorchLocation() && west.equals(new LinkedHashSet<Person>(spec.getEast()));
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * The TestAnytime class solves the basic and advanced problems and a set of
+ * random rosters with the anytime search, starting from a weight of 3. Each
+ * solution reported should be cheaper than the one before and no further from
+ * the cheapest (found by Astar) than its bound says, and with no budget the last
+ * one should be the cheapest. Each problem is then solved again with a budget of
+ * a few nodes, which should still give a solution when the first one is found in
+ * time.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cm3038.search.Path;
+import btp.*;
+
+public class TestAnytime
+{
+	private static final double WEIGHT = 3;
+
+	public static void main(String[] args)
+	{
+		List<ProblemSpec> specs = new ArrayList<ProblemSpec>();
+		specs.add(RunProblem.configureBasicProblem());
+		specs.add(RunProblem.configureAdvancedProblem());
+
+		Random random = new Random(3038);
+		for(int run=0; run<60; run++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			List<Person> eastBank = new ArrayList<Person>();
+			int people = 2 + random.nextInt(10);
+			for(int i=0; i<people; i++)
+				(run % 2 == 0 || random.nextBoolean() ? westBank : eastBank).add(new Person(1 + random.nextInt(40), "P" + i));
+			specs.add(new ProblemSpec(westBank, eastBank, 2 + random.nextInt(3), TorchDirection.WEST, run % 3 == 0));
+		}
+
+		int mismatches = 0, badBounds = 0, solutions = 0, budgeted = 0;
+		long astarNodes = 0, anytimeNodes = 0;
+		for(ProblemSpec spec : specs)
+		{
+			Astar astar = new Astar(spec.getInitialState(), spec.getGoalState());
+			Path expected = astar.search();
+			astarNodes += astar.nodeExpanded;
+
+			List<double[]> reported = new ArrayList<double[]>();
+			AnytimeAstar anytime = new AnytimeAstar(spec.getInitialState(), spec.getGoalState(), WEIGHT);
+			anytime.addListener((path, bound) -> reported.add(new double[] {path.cost, bound}));
+			Path path = anytime.search();
+			anytimeNodes += anytime.nodeExpanded;
+			solutions += reported.size();
+
+			if((expected == null) != (path == null) || (path != null && (path.cost != expected.cost || anytime.getBound() != 1)))
+			{
+				mismatches++;
+				System.out.println(String.format("MISMATCH %s -> %s, Astar: %s", spec, path == null ? null : path.cost, expected == null ? null : expected.cost));
+			}
+
+			// The costs only go down, and each is within its bound of the cheapest
+			for(int i=0; i<reported.size(); i++)
+			{
+				double cost = reported.get(i)[0], bound = reported.get(i)[1];
+				boolean worse = i > 0 && cost > reported.get(i - 1)[0];
+				if(worse || bound < 1 || cost > bound * expected.cost + 1e-9)
+				{
+					badBounds++;
+					System.out.println(String.format("BAD BOUND %s -> cost %s, bound %s, cheapest %s", spec, cost, bound, expected.cost));
+				}
+			}
+
+			AnytimeAstar limited = new AnytimeAstar(spec.getInitialState(), spec.getGoalState(), WEIGHT);
+			limited.setNodeBudget(anytime.nodeExpanded / 4 + 1);
+			Path first = limited.search();
+			if(first != null)
+			{
+				budgeted++;
+				if(expected == null || first.cost > limited.getBound() * expected.cost + 1e-9)
+				{
+					badBounds++;
+					System.out.println(String.format("BAD BOUND %s -> budgeted cost %s, bound %s", spec, first.cost, limited.getBound()));
+				}
+			}
+		}
+
+		System.out.println(String.format("Nodes Expanded: Astar %d, anytime %d", astarNodes, anytimeNodes));
+		System.out.println(String.format("Solutions Reported: %d over %d problems", solutions, specs.size()));
+		System.out.println(String.format("Solved Within A Quarter Of The Nodes: %d", budgeted));
+		System.out.println(String.format("Mismatched Costs: %d\nBad Bounds: %d", mismatches, badBounds));
+	}
+}
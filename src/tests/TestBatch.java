@@ -0,0 +1,85 @@
+/**
+ * The TestBatch class solves a batch of random problems one at a time and then
+ * with the BatchSolver, checking both give the same costs and that results come
+ * back in the order asked for. The problems mix bridge capacities and banks, so
+ * they only agree if no setting is shared between problems solved at the same time.
+ * An empty roster should have no solution rather than an empty one.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import btp.*;
+
+public class TestBatch
+{
+	public static void main(String[] args) throws InterruptedException
+	{
+		Random random = new Random(3038);
+		List<ProblemSpec> specs = new ArrayList<ProblemSpec>();
+		for(int i=0; i<2000; i++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			List<Person> eastBank = new ArrayList<Person>();
+			int people = 3 + random.nextInt(6);
+			for(int p=0; p<people; p++)
+			{
+				Person person = new Person(1 + random.nextInt(20), "P" + p);
+				if(i % 3 == 0 && random.nextBoolean())
+					eastBank.add(person);
+				else
+					westBank.add(person);
+			}
+			TorchDirection torch = random.nextBoolean() ? TorchDirection.WEST : TorchDirection.EAST;
+			specs.add(new ProblemSpec(westBank, eastBank, 2 + random.nextInt(2), torch, random.nextBoolean()));
+		}
+
+		long started = System.nanoTime();
+		double[] expected = new double[specs.size()];
+		for(int i=0; i<specs.size(); i++)
+			expected[i] = BatchSolver.solveOne(i, specs.get(i)).getCost();
+		long sequential = System.nanoTime() - started;
+
+		int[] mismatches = new int[1];
+		int[] nextIndex = new int[1];
+		boolean[] seen = new boolean[specs.size()];
+
+		try (BatchSolver solver = new BatchSolver())
+		{
+			started = System.nanoTime();
+			solver.solve(specs, BatchSolver.Order.INPUT, result ->
+			{
+				if(result.getIndex() != nextIndex[0]++)
+					System.out.println(String.format("OUT OF ORDER %d", result.getIndex()));
+				if(result.getCost() != expected[result.getIndex()])
+				{
+					mismatches[0]++;
+					System.out.println(String.format("MISMATCH %s -> %s, expected %s", result.getSpec(), result, expected[result.getIndex()]));
+				}
+			});
+			long parallel = System.nanoTime() - started;
+
+			solver.solve(specs.stream(), BatchSolver.Order.COMPLETION, result ->
+			{
+				seen[result.getIndex()] = true;
+				if(result.getCost() != expected[result.getIndex()])
+					mismatches[0]++;
+			});
+
+			int missing = 0;
+			for(boolean wasSeen : seen)
+				if(!wasSeen)
+					missing++;
+
+			System.out.println(String.format("%d problems, %d mismatches, %d missing in completion order", specs.size(), mismatches[0], missing));
+			System.out.println(String.format("Sequential: %.1fms, parallel: %.1fms", sequential / 1e6, parallel / 1e6));
+
+			// Nobody can carry the torch, so there is no solution even for a bridge for two
+			BatchResult empty = BatchSolver.solveOne(0, ProblemReader.parse("2;W;;", false));
+			System.out.println(String.format("Empty roster: %s", empty.getPath() == null && empty.getError() == null ? "no solution" : "FAILED " + empty));
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * The TestBidirectional class solves the basic and advanced problems and a set
+ * of random rosters with Astar and the bidirectional search, checking both find
+ * the same cost and that the stitched path really leads from the start to the
+ * goal. Both are run with the default heuristic and with none, totalling the
+ * nodes expanded by each and how many of the bidirectional nodes were expanded
+ * in each direction.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cm3038.search.ActionStatePair;
+import cm3038.search.Path;
+import cm3038.search.State;
+import btp.*;
+
+public class TestBidirectional
+{
+	public static void main(String[] args)
+	{
+		List<ProblemSpec> specs = new ArrayList<ProblemSpec>();
+		specs.add(RunProblem.configureBasicProblem());
+		specs.add(RunProblem.configureAdvancedProblem());
+
+		Random random = new Random(3038);
+		for(int run=0; run<80; run++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			List<Person> eastBank = new ArrayList<Person>();
+			int people = 2 + random.nextInt(9);
+			for(int i=0; i<people; i++)
+				(run % 2 == 0 || random.nextBoolean() ? westBank : eastBank).add(new Person(1 + random.nextInt(30), "P" + i));
+			specs.add(new ProblemSpec(westBank, eastBank, 2 + random.nextInt(3), TorchDirection.WEST, false, run % 4 == 3));
+		}
+
+		System.out.println("-- DEFAULT HEURISTIC --");
+		compare(specs, new MaxHeuristic(new TripCountHeuristic(), new SlowestCrossingHeuristic()));
+		System.out.println("\n-- NO HEURISTIC --");
+		compare(specs, Heuristic.NONE);
+	}
+
+	/**
+	 * Solve every problem with Astar and the bidirectional search using a heuristic.
+	 * 
+	 * @param specs     The problems.
+	 * @param heuristic The heuristic used in both directions.
+	 */
+	private static void compare(List<ProblemSpec> specs, Heuristic heuristic)
+	{
+		int mismatches = 0, badPaths = 0;
+		long astarNodes = 0, bidirectionalNodes = 0, forwards = 0, backwards = 0;
+		for(ProblemSpec spec : specs)
+		{
+			Astar astar = new Astar(spec.getInitialState(), spec.getGoalState(), heuristic);
+			BidirectionalAstar bidirectional = new BidirectionalAstar(spec.getInitialState(), spec.getGoalState(), heuristic, heuristic);
+			Path expected = astar.search();
+			Path path = bidirectional.search();
+
+			if((expected == null) != (path == null) || (path != null && path.cost != expected.cost))
+			{
+				mismatches++;
+				System.out.println(String.format("MISMATCH %s -> Astar: %s, bidirectional: %s", spec, expected == null ? null : expected.cost, path == null ? null : path.cost));
+			}
+			if(path != null && !PathReplay.replays(spec, path))
+			{
+				badPaths++;
+				System.out.println(String.format("BAD PATH %s", spec));
+			}
+
+			astarNodes += astar.nodeExpanded;
+			bidirectionalNodes += bidirectional.nodeExpanded;
+			forwards += bidirectional.forwardExpanded;
+			backwards += bidirectional.backwardExpanded;
+		}
+
+		System.out.println(String.format("Nodes Expanded: Astar %d, bidirectional %d (forwards %d, backwards %d)", astarNodes, bidirectionalNodes, forwards, backwards));
+		System.out.println(String.format("Mismatched Costs: %d\nBad Paths: %d", mismatches, badPaths));
+	}
+}
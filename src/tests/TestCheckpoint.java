@@ -0,0 +1,151 @@
+/**
+ * The TestCheckpoint class starts a long compact search in a second JVM that
+ * saves a checkpoint every so often, and kills that JVM once a checkpoint has
+ * been saved. The search is then resumed from the checkpoint here and should
+ * return the same path as the search run without stopping. A checkpoint saved
+ * for one problem should not resume another, and the time and bytes spent on
+ * checkpoints should show in the metrics.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import cm3038.search.ActionStatePair;
+import cm3038.search.Path;
+import btp.*;
+
+public class TestCheckpoint
+{
+	public static void main(String[] args) throws Exception
+	{
+		if(args.length > 0)
+		{
+			// Run as the JVM that is killed
+			CompactAstar search = search(problem());
+			search.setCheckpoint(new File(args[0]).toPath(), TimeUnit.MILLISECONDS.toNanos(300));
+			search.search();
+			return;
+		}
+
+		java.nio.file.Path directory = Files.createTempDirectory("btp-checkpoint");
+		java.nio.file.Path file = directory.resolve("search.checkpoint");
+		int failures = 0;
+		try
+		{
+			ProblemSpec spec = problem();
+			CompactAstar straight = search(spec);
+			Path expected = straight.search();
+
+			String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+			Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), TestCheckpoint.class.getName(), file.toString()).inheritIO().start();
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+			while(!Files.exists(file) && child.isAlive() && System.nanoTime() < deadline)
+				Thread.sleep(5);
+			child.destroyForcibly().waitFor();
+
+			if(!Files.exists(file))
+			{
+				failures++;
+				System.out.println("NO CHECKPOINT saved before the search ended");
+			}
+			else
+			{
+				CompactAstar resumed = search(spec);
+				resumed.setMetrics(new SearchMetrics());
+				resumed.setCheckpoint(file, TimeUnit.MILLISECONDS.toNanos(300));
+				Path path = resumed.resume(file);
+
+				if(!samePath(expected, path))
+				{
+					failures++;
+					System.out.println(String.format("DIFFERENT PATH %s, without stopping: %s", path == null ? null : path.cost, expected.cost));
+				}
+				if(resumed.nodeExpanded != straight.nodeExpanded)
+				{
+					failures++;
+					System.out.println(String.format("DIFFERENT COUNT %d expanded, without stopping: %d", resumed.nodeExpanded, straight.nodeExpanded));
+				}
+				if(Files.exists(file))
+				{
+					failures++;
+					System.out.println("CHECKPOINT left behind after the search ended");
+				}
+
+				// The metrics only count what was done after resuming
+				SearchMetrics metrics = resumed.getMetrics();
+				System.out.println(String.format("Resumed after %d of %d expansions, cost %.0f", resumed.nodeExpanded - metrics.getExpanded(), straight.nodeExpanded, path == null ? -1 : path.cost));
+				System.out.println(String.format("Checkpoints: %d saved, %d KB each, %.1fms each", metrics.getCheckpoints(), metrics.getCheckpoints() == 0 ? 0 : metrics.getCheckpointBytes() / metrics.getCheckpoints() >> 10, metrics.getCheckpoints() == 0 ? 0 : metrics.getCheckpointNanos() / 1e6 / metrics.getCheckpoints()));
+			}
+
+			// A checkpoint of another problem is refused
+			List<Person> westBank = new ArrayList<Person>(spec.getWest());
+			westBank.remove(0);
+			ProblemSpec other = new ProblemSpec(westBank, new ArrayList<Person>(), spec.getCapacity(), TorchDirection.WEST, false);
+			Process partial = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), TestCheckpoint.class.getName(), file.toString()).start();
+			while(!Files.exists(file) && partial.isAlive())
+				Thread.sleep(5);
+			partial.destroyForcibly().waitFor();
+			if(Files.exists(file))
+			{
+				try
+				{
+					search(other).resume(file);
+					failures++;
+					System.out.println("RESUMED a checkpoint of another problem");
+				}
+				catch(IOException refused)
+				{
+					// The header does not match
+				}
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(directory);
+		}
+		System.out.println(String.format("Failures: %d", failures));
+	}
+
+	/**
+	 * The problem searched: long enough that a checkpoint is saved before it ends.
+	 */
+	private static ProblemSpec problem()
+	{
+		Random random = new Random(3038);
+		List<Person> westBank = new ArrayList<Person>();
+		for(int i=0; i<18; i++)
+			westBank.add(new Person(1 + random.nextInt(100), "P" + i));
+		return new ProblemSpec(westBank, new ArrayList<Person>(), 3, TorchDirection.WEST, false);
+	}
+
+	private static CompactAstar search(ProblemSpec spec)
+	{
+		return new CompactAstar(spec.getInitialState(), spec.getGoalState());
+	}
+
+	/**
+	 * Check two paths cross the same people in the same order.
+	 */
+	private static boolean samePath(Path expected, Path path)
+	{
+		if(expected == null || path == null)
+			return expected == path;
+		if(expected.size() != path.size() || expected.cost != path.cost)
+			return false;
+
+		Iterator<ActionStatePair> steps = path.iterator();
+		for(ActionStatePair step : expected)
+			if(!step.state.equals(steps.next().state))
+				return false;
+		return true;
+	}
+}
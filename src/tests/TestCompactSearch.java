@@ -0,0 +1,108 @@
+/**
+ * The TestCompactSearch class solves the basic and advanced problems and a set
+ * of random rosters with Astar and with the compact search, which holds its
+ * nodes in primitive arrays. Both should find the same cost, and the compact
+ * path should really lead from the start to the goal. A large roster is then
+ * solved by both to compare the bytes allocated for each node expanded, and the
+ * bytes the compact store holds for each node. Crossing times too long for the
+ * buckets of the compact search should be refused by it and solved by a batch.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cm3038.search.ActionStatePair;
+import cm3038.search.Path;
+import cm3038.search.State;
+import btp.*;
+
+public class TestCompactSearch
+{
+	public static void main(String[] args)
+	{
+		List<ProblemSpec> specs = new ArrayList<ProblemSpec>();
+		specs.add(RunProblem.configureBasicProblem());
+		specs.add(RunProblem.configureAdvancedProblem());
+
+		Random random = new Random(3038);
+		for(int run=0; run<100; run++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			List<Person> eastBank = new ArrayList<Person>();
+			int people = 1 + random.nextInt(10);
+			for(int i=0; i<people; i++)
+				(run % 2 == 0 || random.nextBoolean() ? westBank : eastBank).add(new Person(1 + random.nextInt(30), "P" + i));
+			specs.add(new ProblemSpec(westBank, eastBank, 2 + random.nextInt(3), TorchDirection.WEST, run % 3 == 0, run % 4 == 1));
+		}
+
+		int mismatches = 0, badPaths = 0;
+		long astarNodes = 0, compactNodes = 0;
+		for(ProblemSpec spec : specs)
+		{
+			Astar astar = new Astar(spec.getInitialState(), spec.getGoalState());
+			CompactAstar compact = new CompactAstar(spec.getInitialState(), spec.getGoalState());
+			Path expected = astar.search();
+			Path path = compact.search();
+			astarNodes += astar.nodeExpanded;
+			compactNodes += compact.nodeExpanded;
+
+			if((expected == null) != (path == null) || (path != null && path.cost != expected.cost))
+			{
+				mismatches++;
+				System.out.println(String.format("MISMATCH %s -> %s, Astar: %s", spec, path == null ? null : path.cost, expected == null ? null : expected.cost));
+			}
+			if(path != null && !PathReplay.replays(spec, path))
+			{
+				badPaths++;
+				System.out.println(String.format("BAD PATH %s", spec));
+			}
+		}
+		System.out.println(String.format("Nodes Expanded: Astar %d, compact %d", astarNodes, compactNodes));
+
+		List<Person> westBank = new ArrayList<Person>();
+		for(int i=0; i<14; i++)
+			westBank.add(new Person(1 + random.nextInt(100), "P" + i));
+		ProblemSpec large = new ProblemSpec(westBank, new ArrayList<Person>(), 3, TorchDirection.WEST, false);
+
+		for(int round=0; round<2; round++)
+		{
+			Astar astar = new Astar(large.getInitialState(), large.getGoalState());
+			CompactAstar compact = new CompactAstar(large.getInitialState(), large.getGoalState());
+			astar.setMetrics(new SearchMetrics());
+			compact.setMetrics(new SearchMetrics());
+			astar.search();
+			compact.search();
+
+			// The first round warms up the JIT, so only the second is printed
+			if(round == 1)
+			{
+				System.out.println(String.format("Large Roster: %d nodes visited", compact.nodeVisited));
+				System.out.println(String.format("Bytes Allocated Per Expansion: Astar %.0f, compact %.0f", astar.getMetrics().getBytesPerExpansion(), compact.getMetrics().getBytesPerExpansion()));
+				System.out.println(String.format("Bytes Held Per Node: compact %.1f", compact.getBytesPerNode()));
+			}
+		}
+		// Crossing times in the tens of millions would need tens of millions of buckets:
+		// the compact search refuses them and a batch solves them with Astar
+		ProblemSpec slow = ProblemReader.parse("3;W;A:30000000,B:40000000,C:1,D:2,E:5;", false);
+		boolean refused = false;
+		try
+		{
+			new CompactAstar(slow.getInitialState(), slow.getGoalState());
+		}
+		catch(IllegalArgumentException e)
+		{
+			refused = true;
+		}
+		BatchResult batched = BatchSolver.solveOne(0, slow);
+		if(!refused || !batched.isSuccess() || batched.getCost() != 40000006)
+		{
+			mismatches++;
+			System.out.println(String.format("MISMATCH %s -> %s, refused by the compact search: %b", slow, batched, refused));
+		}
+
+		System.out.println(String.format("Mismatched Costs: %d\nBad Paths: %d", mismatches, badPaths));
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * The TestCostTable class builds a table of the cost to the goal from every
+ * state for a set of random rosters and checks it against Astar, both for the
+ * start of the problem and for random states of the same roster. The path read
+ * from the table should really lead to the goal, and a table saved to a file
+ * and loaded again should give the same costs, while loading it for another
+ * problem should fail. A large roster is then built on one thread and on four
+ * or more to compare the time the sweep takes.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cm3038.search.ActionStatePair;
+import cm3038.search.Path;
+import cm3038.search.State;
+import btp.*;
+
+public class TestCostTable
+{
+	public static void main(String[] args) throws IOException
+	{
+		java.nio.file.Path file = Files.createTempFile("btp", ".table");
+		Random random = new Random(3038);
+		int mismatches = 0, badPaths = 0, badLoads = 0, queries = 0;
+		int threads = Math.max(Runtime.getRuntime().availableProcessors(), 4);
+
+		try
+		{
+			for(int run=0; run<40; run++)
+			{
+				List<Person> westBank = new ArrayList<Person>();
+				List<Person> eastBank = new ArrayList<Person>();
+				int people = 1 + random.nextInt(9);
+				for(int i=0; i<people; i++)
+					(run % 2 == 0 || random.nextBoolean() ? westBank : eastBank).add(new Person(1 + random.nextInt(30), "P" + i));
+				ProblemSpec spec = new ProblemSpec(westBank, eastBank, 2 + random.nextInt(3), TorchDirection.WEST, false);
+
+				// The other starts move the same people around, so their rosters match the table's
+				CostTable table = CostTable.build(spec.getGoalState(), 1 + run % 3, file);
+				List<BridgeState> starts = new ArrayList<BridgeState>();
+				starts.add(spec.getInitialState());
+				for(int i=0; i<5; i++)
+				{
+					List<Person> west = new ArrayList<Person>(), east = new ArrayList<Person>();
+					for(Person person : westBank)
+						(random.nextBoolean() ? west : east).add(person);
+					for(Person person : eastBank)
+						(random.nextBoolean() ? west : east).add(person);
+					starts.add(new ProblemSpec(west, east, spec.getCapacity(), random.nextBoolean() ? TorchDirection.WEST : TorchDirection.EAST, false).getInitialState());
+				}
+
+				CostTable loaded = CostTable.load(file, spec.getGoalState());
+				for(BridgeState start : starts)
+				{
+					queries++;
+					Path expected = new Astar(start, spec.getGoalState()).search();
+					Path path = table.path(start);
+					if((expected == null) != (path == null) || (path != null && path.cost != expected.cost) || loaded.cost(start) != table.cost(start))
+					{
+						mismatches++;
+						System.out.println(String.format("MISMATCH %s from %s -> %s, Astar: %s", spec, start, path == null ? null : path.cost, expected == null ? null : expected.cost));
+					}
+					if(path != null && !replays(spec, start, path))
+					{
+						badPaths++;
+						System.out.println(String.format("BAD PATH %s from %s", spec, start));
+					}
+				}
+
+				// A table of other crossing times must not be loaded for this problem
+				westBank.add(new Person(31, "Extra"));
+				ProblemSpec other = new ProblemSpec(westBank, eastBank, spec.getCapacity(), TorchDirection.WEST, false);
+				try
+				{
+					CostTable.load(file, other.getGoalState());
+					badLoads++;
+				}
+				catch(IOException expected)
+				{
+					// The header does not match
+				}
+			}
+
+			List<Person> westBank = new ArrayList<Person>();
+			for(int i=0; i<16; i++)
+				westBank.add(new Person(1 + random.nextInt(100), "P" + i));
+			ProblemSpec large = new ProblemSpec(westBank, new ArrayList<Person>(), 3, TorchDirection.WEST, false);
+
+			long started = System.nanoTime();
+			CostTable single = CostTable.build(large.getGoalState(), 1, file);
+			double singleSeconds = (System.nanoTime() - started) / 1e9;
+			int cost = single.cost(large.getInitialState());
+
+			started = System.nanoTime();
+			CostTable parallel = CostTable.build(large.getGoalState(), threads, file);
+			double parallelSeconds = (System.nanoTime() - started) / 1e9;
+			if(parallel.cost(large.getInitialState()) != cost)
+				mismatches++;
+
+			started = System.nanoTime();
+			CostTable loaded = CostTable.load(file, large.getGoalState());
+			Path path = loaded.path(large.getInitialState());
+			double querySeconds = (System.nanoTime() - started) / 1e9;
+			if(path == null || path.cost != cost || !replays(large, large.getInitialState(), path))
+				badPaths++;
+
+			System.out.println(String.format("Large Roster: %d states, cost %d", single.size(), cost));
+			System.out.println(String.format("Sweep: 1 thread %.2fs, %d threads %.2fs, load and path %.4fs", singleSeconds, threads, parallelSeconds, querySeconds));
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+		}
+		System.out.println(String.format("Queries: %d\nMismatched Costs: %d\nBad Paths: %d\nBad Loads: %d", queries, mismatches, badPaths, badLoads));
+	}
+
+	/**
+	 * Apply every action of a path in turn from a state.
+	 *
+	 * @return true if each action leads to the next state on the path, the costs add up
+	 *         and the path ends at the goal.
+	 */
+	private static boolean replays(ProblemSpec spec, BridgeState start, Path path)
+	{
+		BridgeState state = start;
+		double cost = 0;
+		for(ActionStatePair step : path)
+		{
+			BridgeAction action = (BridgeAction) step.action;
+			if(action.getTorchDirection() == state.getTorchLocation() || action.getPeople().size() > spec.getCapacity())
+				return false;
+			if(!(state.getTorchLocation() == TorchDirection.WEST ? state.getWest() : state.getEast()).containsAll(action.getPeople()))
+				return false;
+
+			State next = state.nextState(action);
+			if(!next.equals(step.state))
+				return false;
+			state = (BridgeState) next;
+			cost += action.getCost();
+		}
+		return cost == path.cost && state.equals(spec.getGoalState());
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * The TestExternalSearch class solves the basic and advanced problems and a set
+ * of random rosters with Astar and with the external search, which keeps its
+ * open and closed lists on disk. Both should find the same cost, and the
+ * external path should really lead from the start to the goal. A large roster
+ * is then solved under a small memory limit, so its buckets spill to disk and
+ * are sorted in runs, and the disk traffic is printed.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cm3038.search.ActionStatePair;
+import cm3038.search.Path;
+import cm3038.search.State;
+import btp.*;
+
+public class TestExternalSearch
+{
+	public static void main(String[] args)
+	{
+		List<ProblemSpec> specs = new ArrayList<ProblemSpec>();
+		specs.add(RunProblem.configureBasicProblem());
+		specs.add(RunProblem.configureAdvancedProblem());
+
+		Random random = new Random(3038);
+		for(int run=0; run<100; run++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			List<Person> eastBank = new ArrayList<Person>();
+			int people = 1 + random.nextInt(10);
+			for(int i=0; i<people; i++)
+				(run % 2 == 0 || random.nextBoolean() ? westBank : eastBank).add(new Person(1 + random.nextInt(30), "P" + i));
+			specs.add(new ProblemSpec(westBank, eastBank, 2 + random.nextInt(3), TorchDirection.WEST, run % 3 == 0, run % 4 == 1));
+		}
+
+		int mismatches = 0, badPaths = 0;
+		for(ProblemSpec spec : specs)
+		{
+			Path expected = new Astar(spec.getInitialState(), spec.getGoalState()).search();
+			ExternalAstar external = new ExternalAstar(spec.getInitialState(), spec.getGoalState());
+			external.setMemoryLimit(1 << 16);
+			Path path = external.search();
+
+			if((expected == null) != (path == null) || (path != null && path.cost != expected.cost))
+			{
+				mismatches++;
+				System.out.println(String.format("MISMATCH %s -> %s, Astar: %s", spec, path == null ? null : path.cost, expected == null ? null : expected.cost));
+			}
+			if(path != null && !PathReplay.replays(spec, path))
+			{
+				badPaths++;
+				System.out.println(String.format("BAD PATH %s", spec));
+			}
+		}
+
+		List<Person> westBank = new ArrayList<Person>();
+		for(int i=0; i<14; i++)
+			westBank.add(new Person(1 + random.nextInt(100), "P" + i));
+		ProblemSpec large = new ProblemSpec(westBank, new ArrayList<Person>(), 3, TorchDirection.WEST, false);
+
+		Path expected = new Astar(large.getInitialState(), large.getGoalState()).search();
+		ExternalAstar external = new ExternalAstar(large.getInitialState(), large.getGoalState());
+		external.setMemoryLimit(1 << 14);
+		external.setMetrics(new SearchMetrics());
+		Path path = external.search();
+		if(path == null || path.cost != expected.cost || !PathReplay.replays(large, path))
+		{
+			mismatches++;
+			System.out.println(String.format("MISMATCH %s -> %s, Astar: %s", large, path == null ? null : path.cost, expected.cost));
+		}
+
+		System.out.println(String.format("Large Roster: %d nodes expanded, %d duplicates dropped", external.nodeExpanded, external.getMetrics().getDuplicates()));
+		System.out.println(String.format("Disk: %d KB written, %d KB read, %.1f MB/s, closed table %d KB", external.getBytesWritten() >> 10, external.getBytesRead() >> 10, external.getThroughput() / (1 << 20), external.getTableBytes() >> 10));
+		System.out.println(String.format("Mismatched Costs: %d\nBad Paths: %d", mismatches, badPaths));
+	}
+}
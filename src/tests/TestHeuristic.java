@@ -0,0 +1,94 @@
+/**
+ * The TestHeuristic class reports how many nodes Astar expands with each
+ * heuristic on the basic problem, the advanced problem and a set of random
+ * rosters. The cost found with a heuristic of 0 is the real optimum, so any
+ * heuristic that finds a more expensive solution is over-estimating. With
+ * nobody on the roster, every heuristic should report that there is no solution.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+import cm3038.search.Path;
+import btp.*;
+
+public class TestHeuristic 
+{
+	private static final Heuristic[] HEURISTICS = 
+	{
+		Heuristic.NONE,
+		new TorchSideHeuristic(),
+		new SlowestCrossingHeuristic(),
+		new TripCountHeuristic(),
+		new MaxHeuristic(new TripCountHeuristic(), new SlowestCrossingHeuristic())
+	};
+	
+	public static void main(String[] args)
+	{
+		LinkedHashSet<Person> westBank = new LinkedHashSet<Person>();
+		LinkedHashSet<Person> eastBank = new LinkedHashSet<Person>();
+		
+		westBank.add(new Person(1, "Adam"));   westBank.add(new Person(2, "Ben"));
+		westBank.add(new Person(5, "Claire")); westBank.add(new Person(8, "Doris"));
+		
+		System.out.println("-- BASIC PROBLEM --");
+		report(westBank, eastBank, 2);
+		
+		eastBank.add(new Person(9, "Edward")); eastBank.add(new Person(10, "Fiona"));
+		
+		System.out.println("\n-- ADVANCED PROBLEM --");
+		RunProblem.setAdvancedStatus(true);
+		report(westBank, eastBank, 3);
+		RunProblem.setAdvancedStatus(false);
+		
+		Random random = new Random(3038);
+		for(int run=0; run<6; run++)
+		{
+			westBank = new LinkedHashSet<Person>();
+			int people = 6 + random.nextInt(5);
+			for(int i=0; i<people; i++)
+				westBank.add(new Person(1 + random.nextInt(30), "P" + i));
+			
+			System.out.println(String.format("\n-- RANDOM ROSTER OF %d --", people));
+			report(westBank, new LinkedHashSet<Person>(), 2 + run % 2);
+		}
+		
+		// Nobody can carry the torch across, so no heuristic should find a solution
+		System.out.println("\n-- EMPTY ROSTER --");
+		ProblemSpec empty = ProblemReader.parse("2;W;;", false);
+		for(Heuristic heuristic : HEURISTICS)
+		{
+			Path path = new Astar(empty.getInitialState(), empty.getGoalState(), heuristic).search();
+			System.out.println(String.format("%-45s %s", heuristic, path == null ? "no solution" : "FAILED, cost: " + path.cost));
+		}
+	}
+	
+	/**
+	 * Solve one problem with every heuristic and print the nodes expanded by each.
+	 * 
+	 * @param westBank The people starting on the western bank.
+	 * @param eastBank The people starting on the eastern bank.
+	 * @param capacity The capacity of the bridge.
+	 */
+	private static void report(LinkedHashSet<Person> westBank, LinkedHashSet<Person> eastBank, int capacity)
+	{
+		Bridge.setCapacity(capacity);
+		BridgeState initialState = new BridgeState(westBank, eastBank, TorchDirection.WEST);
+		BridgeState goalState = new BridgeState(eastBank, westBank, TorchDirection.EAST);
+		
+		double optimal = -1;
+		for(Heuristic heuristic : HEURISTICS)
+		{
+			Astar problem = new Astar(initialState, goalState, heuristic);
+			Path path = problem.search();
+			
+			if(optimal < 0)
+				optimal = path.cost;
+			
+			System.out.println(String.format("%-45s expanded: %7d  cost: %s%s", heuristic, problem.nodeExpanded, path.cost, 
+					path.cost > optimal ? "  (over-estimates)" : ""));
+		}
+	}
+}
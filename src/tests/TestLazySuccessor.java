@@ -0,0 +1,82 @@
+/**
+ * The TestLazySuccessor class checks that the three ways of generating the
+ * successors of a state agree: the list from successor(), the lazy iterator and
+ * the crossing visitor. Calling successor() twice should give the same list, and
+ * a visitor returning false should stop after the first crossing.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import cm3038.search.ActionStatePair;
+import btp.*;
+
+public class TestLazySuccessor
+{
+	public static void main(String[] args)
+	{
+		Random random = new Random(3038);
+		int mismatches = 0, states = 0;
+
+		for(int run=0; run<300; run++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			List<Person> eastBank = new ArrayList<Person>();
+			int people = 1 + random.nextInt(9);
+			for(int i=0; i<people; i++)
+				(run % 2 == 0 || random.nextBoolean() ? westBank : eastBank).add(new Person(1 + random.nextInt(10), "P" + i));
+
+			ProblemSpec spec = new ProblemSpec(westBank, eastBank, 1 + random.nextInt(4), TorchDirection.WEST, random.nextBoolean());
+			BridgeState state = spec.getInitialState();
+
+			for(int step=0; step<10; step++, states++)
+			{
+				List<ActionStatePair> listed = state.successor();
+				List<String> fromList = describe(listed);
+
+				List<ActionStatePair> iterated = new ArrayList<ActionStatePair>();
+				for(Iterator<ActionStatePair> children = state.successorIterator(); children.hasNext(); )
+					iterated.add(children.next());
+
+				List<String> visited = new ArrayList<String>();
+				BridgeState from = state;
+				state.forEachCrossing((group, cost) ->
+				{
+					visited.add(from.nextState(group) + " " + cost);
+					return true;
+				});
+
+				int[] calls = new int[1];
+				boolean finished = state.forEachCrossing((group, cost) -> ++calls[0] < 0);
+
+				if(!fromList.equals(describe(state.successor())) || !fromList.equals(describe(iterated))
+					|| !fromList.equals(visited) || (!listed.isEmpty() && (finished || calls[0] != 1)))
+				{
+					mismatches++;
+					System.out.println(String.format("MISMATCH %s", state));
+				}
+
+				if(listed.isEmpty())
+					break;
+				state = (BridgeState) listed.get(random.nextInt(listed.size())).state;
+			}
+		}
+
+		System.out.println(String.format("States checked: %d\nMismatches: %d", states, mismatches));
+	}
+
+	/**
+	 * Describe each successor by the state it leads to and the cost of getting there.
+	 */
+	private static List<String> describe(List<ActionStatePair> successors)
+	{
+		List<String> result = new ArrayList<String>();
+		for(ActionStatePair pair : successors)
+			result.add(pair.state + " " + (int) pair.action.cost);
+		return result;
+	}
+}
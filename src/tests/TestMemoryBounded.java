@@ -0,0 +1,94 @@
+/**
+ * The TestMemoryBounded class solves the basic and advanced problems and a set
+ * of random rosters with Astar, IDA* and RBFS, with and without a transposition
+ * table. Every engine should find the same cost as Astar. The nodes generated by
+ * each iteration are printed for the basic and advanced problems.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cm3038.search.Path;
+import btp.*;
+
+public class TestMemoryBounded
+{
+	private static final String[] ENGINES = {"Astar", "IDA*", "IDA* + table", "RBFS", "RBFS + table"};
+
+	public static void main(String[] args)
+	{
+		long[] nodes = new long[ENGINES.length];
+		int mismatches = 0;
+
+		System.out.println("-- BASIC PROBLEM --");
+		mismatches += compare(RunProblem.configureBasicProblem(), nodes, true);
+		System.out.println("\n-- ADVANCED PROBLEM --");
+		mismatches += compare(RunProblem.configureAdvancedProblem(), nodes, true);
+
+		Random random = new Random(3038);
+		for(int run=0; run<60; run++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			List<Person> eastBank = new ArrayList<Person>();
+			int people = 2 + random.nextInt(6);
+			for(int i=0; i<people; i++)
+				(run % 2 == 0 || random.nextBoolean() ? westBank : eastBank).add(new Person(1 + random.nextInt(20), "P" + i));
+
+			mismatches += compare(new ProblemSpec(westBank, eastBank, 2 + random.nextInt(2), TorchDirection.WEST, true), nodes, false);
+		}
+
+		System.out.println("\nNodes Generated:");
+		for(int i=0; i<ENGINES.length; i++)
+			System.out.println(String.format("%-14s %d", ENGINES[i], nodes[i]));
+		System.out.println(String.format("Mismatched Costs: %d", mismatches));
+	}
+
+	/**
+	 * Solve one problem with every engine.
+	 *
+	 * @param spec   The problem.
+	 * @param nodes  The running total of nodes generated by each engine.
+	 * @param report true to print the nodes generated by each iteration.
+	 * @return 1 if an engine found a different cost to Astar, otherwise 0.
+	 */
+	private static int compare(ProblemSpec spec, long[] nodes, boolean report)
+	{
+		BridgeState start = spec.getInitialState(), goal = spec.getGoalState();
+		Heuristic heuristic = new MaxHeuristic(new TripCountHeuristic(), new SlowestCrossingHeuristic());
+		Astar[] engines =
+		{
+			new Astar(start, goal),
+			new IDAstar(start, goal),
+			new IDAstar(start, goal, heuristic, 1 << 16),
+			new RecursiveBestFirst(start, goal),
+			new RecursiveBestFirst(start, goal, heuristic, 1 << 16)
+		};
+
+		double expected = Double.NaN;
+		int mismatch = 0;
+		for(int i=0; i<engines.length; i++)
+		{
+			Path path = engines[i].search();
+			double cost = path == null ? -1 : path.cost;
+			if(i == 0)
+				expected = cost;
+			else if(cost != expected)
+			{
+				mismatch = 1;
+				System.out.println(String.format("MISMATCH %s %s -> %s, Astar: %s", spec, ENGINES[i], cost, expected));
+			}
+			nodes[i] += engines[i].nodeVisited;
+
+			if(report)
+			{
+				List<Integer> iterations = engines[i] instanceof IDAstar ? ((IDAstar) engines[i]).getIterationNodes()
+					: engines[i] instanceof RecursiveBestFirst ? ((RecursiveBestFirst) engines[i]).getIterationNodes() : List.of(engines[i].nodeVisited);
+				System.out.println(String.format("%-14s cost: %s, nodes per iteration: %s", ENGINES[i], cost, iterations));
+			}
+		}
+		return mismatch;
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * The TestMetrics class solves the basic and advanced problems with metrics
+ * switched on, checking the counts agree with the ones Astar keeps itself, and
+ * prints them as JSON and in the Prometheus format. A batch of random problems
+ * is then solved with and without metrics, which should give the same costs, and
+ * the totals of the batch are written to a file.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import btp.*;
+
+public class TestMetrics
+{
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		int wrongCounts = 0;
+		for(ProblemSpec spec : new ProblemSpec[] {RunProblem.configureBasicProblem(), RunProblem.configureAdvancedProblem()})
+		{
+			SearchMetrics metrics = new SearchMetrics();
+			Astar problem = new Astar(spec.getInitialState(), spec.getGoalState());
+			problem.setMetrics(metrics);
+			problem.search();
+
+			// Every node but the start node is generated by an expansion
+			if(metrics.getExpanded() != problem.nodeExpanded || metrics.getGenerated() != problem.nodeVisited - 1 || metrics.getHeuristicCalls() == 0)
+				wrongCounts++;
+			System.out.println(metrics.toJson());
+		}
+		System.out.println();
+
+		Random random = new Random(3038);
+		List<ProblemSpec> specs = new ArrayList<ProblemSpec>();
+		for(int run=0; run<200; run++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			int people = 3 + random.nextInt(6);
+			for(int i=0; i<people; i++)
+				westBank.add(new Person(1 + random.nextInt(40), "P" + i));
+			specs.add(new ProblemSpec(westBank, new ArrayList<Person>(), 3 + random.nextInt(2), TorchDirection.WEST, false));
+		}
+
+		SearchMetrics totals = new SearchMetrics();
+		List<BatchResult> plain, recorded;
+		try (BatchSolver solver = new BatchSolver(4))
+		{
+			plain = solver.solveAll(specs);
+			solver.setMetrics(totals);
+			recorded = solver.solveAll(specs);
+		}
+
+		int mismatches = 0;
+		long nodes = 0;
+		for(int i=0; i<specs.size(); i++)
+		{
+			if(Double.compare(plain.get(i).getCost(), recorded.get(i).getCost()) != 0)
+				mismatches++;
+			nodes += recorded.get(i).getNodes();
+		}
+		if(totals.getSearches() != specs.size() || totals.getGenerated() != nodes - specs.size())
+			wrongCounts++;
+
+		Path file = Files.createTempFile("metrics", ".prom");
+		totals.write(file, SearchMetrics.Format.PROMETHEUS);
+		System.out.print(new String(Files.readAllBytes(file), "UTF-8"));
+		Files.delete(file);
+
+		System.out.println(String.format("\nMismatched Costs: %d\nWrong Counts: %d", mismatches, wrongCounts));
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * The TestParallel class solves the basic and advanced problems and a set of
+ * random rosters with Astar and with the parallel search on 1, 2, 4 and 8
+ * threads. Every thread count should find the same cost as Astar. A thread
+ * that throws should stop the search rather than leave it waiting forever, and
+ * the metrics should count the heuristic calls of every thread.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cm3038.search.Path;
+import btp.*;
+
+public class TestParallel
+{
+	private static final int[] THREADS = {1, 2, 4, 8};
+
+	public static void main(String[] args)
+	{
+		List<ProblemSpec> specs = new ArrayList<ProblemSpec>();
+		specs.add(RunProblem.configureBasicProblem());
+		specs.add(RunProblem.configureAdvancedProblem());
+
+		Random random = new Random(3038);
+		for(int run=0; run<60; run++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			List<Person> eastBank = new ArrayList<Person>();
+			int people = 1 + random.nextInt(12);
+			for(int i=0; i<people; i++)
+				(run % 2 == 0 || random.nextBoolean() ? westBank : eastBank).add(new Person(1 + random.nextInt(40), "P" + i));
+			specs.add(new ProblemSpec(westBank, eastBank, 2 + random.nextInt(3), TorchDirection.WEST, run % 3 == 0));
+		}
+
+		int mismatches = 0;
+		long[] expanded = new long[THREADS.length + 1];
+		for(ProblemSpec spec : specs)
+		{
+			Astar astar = new Astar(spec.getInitialState(), spec.getGoalState());
+			Path expected = astar.search();
+			expanded[0] += astar.nodeExpanded;
+
+			for(int i=0; i<THREADS.length; i++)
+			{
+				ParallelAstar parallel = new ParallelAstar(spec.getInitialState(), spec.getGoalState(), THREADS[i]);
+				Path path = parallel.search();
+				expanded[i + 1] += parallel.nodeExpanded;
+
+				if((expected == null) != (path == null) || (path != null && path.cost != expected.cost))
+				{
+					mismatches++;
+					System.out.println(String.format("MISMATCH %s on %d threads -> %s, Astar: %s", spec, THREADS[i], path == null ? null : path.cost, expected == null ? null : expected.cost));
+				}
+			}
+		}
+
+		System.out.println(String.format("Nodes Expanded: Astar %d", expanded[0]));
+		for(int i=0; i<THREADS.length; i++)
+			System.out.println(String.format("Nodes Expanded: %d threads %d", THREADS[i], expanded[i + 1]));
+		System.out.println(String.format("Mismatched Costs: %d", mismatches));
+
+		// A thread that throws stops the search, which throws the same failure
+		Random failing = new Random(3038);
+		List<Person> westBank = new ArrayList<Person>();
+		for(int i=0; i<12; i++)
+			westBank.add(new Person(1 + failing.nextInt(100), "P" + i));
+		ProblemSpec large = new ProblemSpec(westBank, new ArrayList<Person>(), 3, TorchDirection.WEST, false);
+		AtomicInteger calls = new AtomicInteger();
+		Heuristic broken = (state, goal) ->
+		{
+			if(calls.incrementAndGet() == 500)
+				throw new AssertionError("Broken heuristic");
+			return 0;
+		};
+		String outcome;
+		try
+		{
+			new ParallelAstar(large.getInitialState(), large.getGoalState(), broken, 4).search();
+			outcome = "NOT THROWN";
+		}
+		catch(AssertionError e)
+		{
+			outcome = e.getMessage();
+		}
+		System.out.println(String.format("Failed Thread: %s", outcome));
+
+		// Every thread's heuristic evaluations end up in the search's metrics
+		AtomicInteger estimates = new AtomicInteger();
+		Heuristic counted = (state, goal) ->
+		{
+			estimates.incrementAndGet();
+			return 0;
+		};
+		SearchMetrics metrics = new SearchMetrics();
+		ParallelAstar recorded = new ParallelAstar(large.getInitialState(), large.getGoalState(), counted, 4);
+		recorded.setMetrics(metrics);
+		recorded.search();
+		System.out.println(String.format("Heuristic Calls: %d recorded, %d made%s", metrics.getHeuristicCalls(), estimates.get(), metrics.getHeuristicCalls() == estimates.get() ? "" : "  MISMATCH"));
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * The TestPatternDatabase class builds a pattern database over the slowest
+ * people of a random roster, saves it, maps it back in and checks that
+ * Astar finds the same cost with it as with the default heuristic. A damaged
+ * file should be refused and built again.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+import btp.*;
+
+public class TestPatternDatabase 
+{
+	public static void main(String[] args) throws IOException
+	{
+		Random random = new Random(3038);
+		LinkedHashSet<Person> westBank = new LinkedHashSet<Person>();
+		LinkedHashSet<Person> eastBank = new LinkedHashSet<Person>();
+		
+		for(int i=0; i<12; i++)
+			westBank.add(new Person(1 + random.nextInt(50), "P" + i));
+		
+		Bridge.setCapacity(2);
+		BridgeState initialState = new BridgeState(westBank, eastBank, TorchDirection.WEST);
+		BridgeState goalState = new BridgeState(eastBank, westBank, TorchDirection.EAST);
+		
+		long started = System.nanoTime();
+		PatternDatabase built = PatternDatabase.slowest(goalState, 10, Bridge.getCapacity());
+		System.out.println(String.format("Built %s in %d ms", built, (System.nanoTime() - started) / 1000000));
+		
+		Path file = Files.createTempFile("btp", ".pdb");
+		built.save(file);
+		
+		started = System.nanoTime();
+		PatternDatabase loaded = PatternDatabase.load(file, goalState, Bridge.getCapacity());
+		System.out.println(String.format("Loaded %s (%d bytes) in %d ms", loaded, Files.size(file), (System.nanoTime() - started) / 1000000));
+		
+		Astar plain = new Astar(initialState, goalState);
+		Astar withDatabase = new Astar(initialState, goalState, new MaxHeuristic(plain.getHeuristic(), loaded));
+		
+		double plainCost = plain.search().cost;
+		double databaseCost = withDatabase.search().cost;
+		
+		System.out.println(String.format("Default heuristic: cost %s, expanded %d", plainCost, plain.nodeExpanded));
+		System.out.println(String.format("With pattern database: cost %s, expanded %d", databaseCost, withDatabase.nodeExpanded));
+		System.out.println("Same Cost: " + (plainCost == databaseCost)); // true
+		
+		// A damaged file is refused with an IOException, so loadOrBuild builds it again
+		byte[] saved = Files.readAllBytes(file);
+		byte[] badTorch = saved.clone();
+		badTorch[39] = 9;
+		byte[][] damaged = { new byte[0], Arrays.copyOf(saved, 20), badTorch, Arrays.copyOf(saved, saved.length - 4) };
+		Path copy = Files.createTempFile("btp", ".pdb");
+		int badLoads = 0;
+		for(byte[] bytes : damaged)
+		{
+			Files.write(copy, bytes);
+			try
+			{
+				PatternDatabase.load(copy, goalState, Bridge.getCapacity());
+				badLoads++;
+			}
+			catch(IOException refused)
+			{
+				// Expected
+			}
+			
+			Files.write(copy, bytes);
+			if(PatternDatabase.loadOrBuild(copy, goalState, 10, Bridge.getCapacity()).estimate(initialState, goalState) != loaded.estimate(initialState, goalState))
+				badLoads++;
+		}
+		System.out.println(String.format("Bad Loads: %d", badLoads));
+		
+		Files.delete(copy);
+		Files.delete(file);
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * The TestProblemFile class writes a file of problems in the input format, with a
+ * buffer's worth of random problems between the basic and advanced ones so lines
+ * cross the ends of the read buffer, then solves it into a CSV and a JSONL file.
+ * The basic and advanced problems should cost 15 and 19. A line that cannot be
+ * read should fail on its own without losing the problems around it.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import btp.*;
+
+public class TestProblemFile
+{
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		Path input = Files.createTempFile("problems", ".txt");
+		Path csv = Files.createTempFile("solutions", ".csv");
+		Path jsonl = Files.createTempFile("solutions", ".jsonl");
+
+		Random random = new Random(3038);
+		List<String> lines = new ArrayList<String>();
+		lines.add("# capacity;torch;west;east");
+		lines.add(ProblemReader.format(RunProblem.configureBasicProblem()));
+		for(int i=0; i<3000; i++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			int people = 2 + random.nextInt(6);
+			for(int p=0; p<people; p++)
+				westBank.add(new Person(1 + random.nextInt(50), "Person" + p));
+			lines.add(ProblemReader.format(new ProblemSpec(westBank, new ArrayList<Person>(), 2 + random.nextInt(2), TorchDirection.WEST, false)));
+		}
+		lines.add("");
+		lines.add(ProblemReader.format(RunProblem.configureAdvancedProblem()) + "\r");
+
+		try (BufferedWriter out = Files.newBufferedWriter(input))
+		{
+			for(String line : lines)
+				out.write(line + "\n");
+		}
+		System.out.println(String.format("Basic problem: %s", lines.get(1)));
+		System.out.println(String.format("Input file: %d bytes", Files.size(input)));
+
+		int roundTrips = 0;
+		try (ProblemReader reader = ProblemReader.open(input, false))
+		{
+			for(ProblemSpec spec : reader)
+				if(lines.contains(ProblemReader.format(spec)) || lines.contains(ProblemReader.format(spec) + "\r"))
+					roundTrips++;
+		}
+		System.out.println(String.format("Problems read back unchanged: %d of %d", roundTrips, lines.size() - 2));
+
+		for(SolutionWriter.Format format : SolutionWriter.Format.values())
+		{
+			Path output = format == SolutionWriter.Format.CSV ? csv : jsonl;
+			long started = System.nanoTime();
+			try (ProblemReader reader = ProblemReader.open(input, true);
+				SolutionWriter writer = SolutionWriter.open(output, format);
+				BatchSolver solver = new BatchSolver())
+			{
+				solver.solve(reader, BatchSolver.Order.INPUT, writer);
+				writer.flush();
+				double seconds = (System.nanoTime() - started) / 1e9;
+				System.out.println(String.format("\n%s: %d instances at %.1f instances/s", format, writer.getWritten(), writer.getWritten() / seconds));
+			}
+
+			List<String> solutions = Files.readAllLines(output);
+			int first = format == SolutionWriter.Format.CSV ? 1 : 0;
+			System.out.println(solutions.get(first));
+			System.out.println(solutions.get(solutions.size() - 1));
+		}
+
+		// The problems either side of a bad line are still solved
+		Files.write(input, List.of(lines.get(1), lines.get(2), "bogus line", lines.get(3)));
+		try (ProblemReader reader = ProblemReader.open(input, false);
+			BatchSolver solver = new BatchSolver())
+		{
+			List<BatchResult> results = solver.solveAll(reader);
+			boolean readOn = results.size() == 4 && results.get(0).getCost() == 15 && results.get(2).getError() instanceof IllegalArgumentException
+					&& results.get(1).getError() == null && results.get(3).getError() == null;
+			System.out.println(String.format("\nBad line: %s", results.size() > 2 ? results.get(2) : "missing"));
+			System.out.println(String.format("Results around a bad line: %d, %s", results.size(), readOn ? "read on" : "FAILED"));
+		}
+
+		Files.delete(input);
+		Files.delete(csv);
+		Files.delete(jsonl);
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * The TestPruning class checks that pruning successor states never changes the
+ * cost of the best solution. Random rosters are spread randomly over both banks
+ * and solved with and without pruning, using a heuristic of 0 so the search is
+ * exact either way.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import cm3038.search.Path;
+import btp.*;
+
+public class TestPruning 
+{
+	public static void main(String[] args)
+	{
+		Random random = new Random(3038);
+		int mismatches = 0;
+		long fullNodes = 0, prunedNodes = 0;
+		
+		for(int run=0; run<200; run++)
+		{
+			LinkedHashSet<Person> westBank = new LinkedHashSet<Person>();
+			LinkedHashSet<Person> eastBank = new LinkedHashSet<Person>();
+			LinkedHashSet<Person> everyone = new LinkedHashSet<Person>();
+			
+			int people = 1 + random.nextInt(7);
+			for(int i=0; i<people; i++)
+			{
+				Person person = new Person(1 + random.nextInt(12), "P" + i);
+				(random.nextInt(3) == 0 ? eastBank : westBank).add(person);
+				everyone.add(person);
+			}
+			
+			Bridge.setCapacity(2 + random.nextInt(3));
+			TorchDirection torch = random.nextBoolean() ? TorchDirection.WEST : TorchDirection.EAST;
+			if(westBank.isEmpty() || eastBank.isEmpty())
+				torch = westBank.isEmpty() ? TorchDirection.EAST : TorchDirection.WEST;
+			
+			Astar full = uninformed(westBank, eastBank, everyone, torch, false);
+			Path fullPath = full.search();
+			
+			Astar pruned = uninformed(westBank, eastBank, everyone, torch, true);
+			Path prunedPath = pruned.search();
+			
+			double fullCost = fullPath == null ? -1 : fullPath.cost;
+			double prunedCost = prunedPath == null ? -1 : prunedPath.cost;
+			
+			if(fullCost != prunedCost)
+			{
+				mismatches++;
+				System.out.println(String.format("MISMATCH %s| %storch %s capacity %d -> full: %s, pruned: %s", westBank, eastBank, torch, Bridge.getCapacity(), fullCost, prunedCost));
+			}
+			
+			fullNodes += full.nodeVisited;
+			prunedNodes += pruned.nodeVisited;
+		}
+		
+		RunProblem.setPrunedStatus(false);
+		System.out.println(String.format("Nodes Explored: full %d, pruned %d", fullNodes, prunedNodes));
+		System.out.println(String.format("Mismatched Costs: %d", mismatches)); // 0
+	}
+	
+	/**
+	 * Set up a search for getting everyone onto the eastern bank. The pruned status is
+	 * read when the states are created, so it is set first.
+	 * 
+	 * @param westBank The people starting on the western bank.
+	 * @param eastBank The people starting on the eastern bank.
+	 * @param everyone Everyone on either bank.
+	 * @param torch    The bank the torch starts on.
+	 * @param pruned   true to prune successors.
+	 * @return The search, with a heuristic of 0 so it is exact whatever the successors are.
+	 */
+	private static Astar uninformed(Set<Person> westBank, Set<Person> eastBank, Set<Person> everyone, TorchDirection torch, boolean pruned)
+	{
+		RunProblem.setPrunedStatus(pruned);
+		BridgeState initialState = new BridgeState(westBank, eastBank, torch);
+		BridgeState goalState = new BridgeState(new LinkedHashSet<Person>(), everyone, TorchDirection.EAST);
+		return new Astar(initialState, goalState, Heuristic.NONE);
+	}
+}
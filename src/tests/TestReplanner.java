@@ -0,0 +1,100 @@
+/**
+ * The TestReplanner class starts from a set of random rosters and changes each
+ * one person at a time: adding someone, removing someone or changing a crossing
+ * time. After every change the replanner should find the same cost as Astar
+ * solving the new problem from scratch, with a path that really leads from the
+ * start to the goal. The nodes expanded by both are totalled for each kind of
+ * change. A problem with another capacity or torch bank should be refused.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cm3038.search.ActionStatePair;
+import cm3038.search.Path;
+import cm3038.search.State;
+import btp.*;
+
+public class TestReplanner
+{
+	private static final String[] CHANGES = {"Add", "Remove", "Slower", "Faster"};
+
+	public static void main(String[] args)
+	{
+		Random random = new Random(3038);
+		long[] cold = new long[CHANGES.length], warm = new long[CHANGES.length];
+		int mismatches = 0, badPaths = 0, named = 0;
+
+		for(int run=0; run<30; run++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			List<Person> eastBank = new ArrayList<Person>();
+			int people = 6 + random.nextInt(4);
+			for(int i=0; i<people; i++)
+				(run % 2 == 0 || random.nextBoolean() ? westBank : eastBank).add(new Person(1 + random.nextInt(30), "P" + named++));
+			Replanner replanner = new Replanner(new ProblemSpec(westBank, eastBank, 2 + random.nextInt(2), TorchDirection.WEST, false));
+
+			for(int step=0; step<8; step++)
+			{
+				List<Person> everyone = new ArrayList<Person>(replanner.getSpec().getWest());
+				everyone.addAll(replanner.getSpec().getEast());
+				Person chosen = everyone.get(random.nextInt(everyone.size()));
+
+				int change = everyone.size() <= 3 ? 0 : everyone.size() >= 11 ? 1 : random.nextInt(CHANGES.length);
+				Path path;
+				switch(change)
+				{
+					case 0: path = replanner.addPerson(new Person(1 + random.nextInt(30), "P" + named++), random.nextBoolean() ? TorchDirection.WEST : TorchDirection.EAST); break;
+					case 1: path = replanner.removePerson(chosen.getName()); break;
+					case 2: path = replanner.changeTime(chosen.getName(), chosen.getTime() + 1 + random.nextInt(10)); break;
+					default: path = replanner.changeTime(chosen.getName(), Math.max(1, chosen.getTime() - 1 - random.nextInt(10))); break;
+				}
+
+				ProblemSpec spec = replanner.getSpec();
+				Astar astar = new Astar(spec.getInitialState(), spec.getGoalState());
+				Path expected = astar.search();
+				cold[change] += astar.nodeExpanded;
+				warm[change] += replanner.getNodeExpanded();
+
+				if((expected == null) != (path == null) || (path != null && path.cost != expected.cost))
+				{
+					mismatches++;
+					System.out.println(String.format("MISMATCH %s after %s -> %s, Astar: %s", spec, CHANGES[change], path == null ? null : path.cost, expected == null ? null : expected.cost));
+				}
+				if(path != null && !PathReplay.replays(spec, path))
+				{
+					badPaths++;
+					System.out.println(String.format("BAD PATH %s after %s", spec, CHANGES[change]));
+				}
+			}
+		}
+
+		// A new bridge or torch bank cannot reuse the last search
+		int accepted = 0;
+		Replanner replanner = new Replanner(RunProblem.configureBasicProblem());
+		ProblemSpec basic = replanner.getSpec();
+		ProblemSpec[] others = {
+			new ProblemSpec(basic.getWest(), basic.getEast(), 3, basic.getTorchLocation(), false),
+			new ProblemSpec(basic.getEast(), basic.getWest(), basic.getCapacity(), TorchDirection.EAST, false)};
+		for(ProblemSpec other : others)
+		{
+			try
+			{
+				replanner.resolve(other);
+				accepted++;
+				System.out.println(String.format("ACCEPTED %s after %s", other, basic));
+			}
+			catch(IllegalArgumentException refused)
+			{
+				// A different capacity or torch bank
+			}
+		}
+
+		for(int i=0; i<CHANGES.length; i++)
+			System.out.println(String.format("%-7s Nodes Expanded: from scratch %d, replanned %d", CHANGES[i], cold[i], warm[i]));
+		System.out.println(String.format("Mismatched Costs: %d\nBad Paths: %d\nOther Bridges Accepted: %d", mismatches, badPaths, accepted));
+	}
+}
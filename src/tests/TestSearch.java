@@ -0,0 +1,70 @@
+/**
+ * The TestSearch class checks that the heap based search in Astar finds
+ * solutions with the same cost as the list based search in the cm3038 jar
+ * on a set of random rosters. Both searches use the original torch-side heuristic.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+import cm3038.search.Node;
+import cm3038.search.Path;
+import cm3038.search.State;
+import cm3038.search.informed.BestFirstSearchProblem;
+import btp.*;
+
+public class TestSearch 
+{
+	public static void main(String[] args)
+	{
+		Random random = new Random(3038);
+		Bridge.setCapacity(2);
+		int mismatches = 0;
+		
+		for(int run=0; run<50; run++)
+		{
+			LinkedHashSet<Person> westBank = new LinkedHashSet<Person>();
+			LinkedHashSet<Person> eastBank = new LinkedHashSet<Person>();
+			
+			int people = 2 + random.nextInt(5);
+			for(int i=0; i<people; i++)
+				westBank.add(new Person(1 + random.nextInt(20), "P" + i));
+			
+			BridgeState initialState = new BridgeState(westBank, eastBank, TorchDirection.WEST);
+			BridgeState goalState = new BridgeState(eastBank, westBank, TorchDirection.EAST);
+			
+			Astar astar = new Astar(initialState, goalState, new TorchSideHeuristic());
+			Path heapPath = astar.search();
+			Path listPath = listSearch(astar, initialState, goalState).search();
+			
+			if(heapPath.cost != listPath.cost)
+				mismatches++;
+			
+			System.out.println(String.format("%s -> heap: %s (%d nodes), list: %s", westBank, heapPath.cost, astar.nodeVisited, listPath.cost));
+		}
+		
+		System.out.println(String.format("\nMismatched Costs: %d", mismatches)); // 0
+	}
+	
+	/**
+	 * Wrap the evaluation of an Astar object in the jar's own best-first search.
+	 * 
+	 * @param astar The Astar object that supplies the evaluation function.
+	 * @param start The initial state.
+	 * @param goal  The goal state.
+	 * @return The jar's search problem.
+	 */
+	private static BestFirstSearchProblem listSearch(Astar astar, State start, State goal)
+	{
+		return new BestFirstSearchProblem(start, goal)
+		{
+			@Override
+			public double evaluation(Node node) { return astar.evaluation(node); }
+			
+			@Override
+			public boolean isGoal(State state) { return astar.isGoal(state); }
+		};
+	}
+}
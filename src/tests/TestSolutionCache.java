@@ -0,0 +1,107 @@
+/**
+ * The TestSolutionCache class solves a set of random rosters through a solution
+ * cache, then asks for each again with the people renamed and listed in a
+ * different order. Every repeat should be a hit costing the same as a fresh
+ * search, with a path that really moves the renamed people from the start to the
+ * goal. A second cache on the same directory should find every solution on disk,
+ * and a cache too small for the set should evict.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import cm3038.search.ActionStatePair;
+import cm3038.search.Path;
+import btp.*;
+
+public class TestSolutionCache
+{
+	public static void main(String[] args) throws IOException
+	{
+		java.nio.file.Path directory = Files.createTempDirectory("solutions");
+		SolutionCache cache = new SolutionCache(1000, directory);
+
+		Random random = new Random(3038);
+		List<ProblemSpec> specs = new ArrayList<ProblemSpec>();
+		for(int run=0; run<100; run++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			List<Person> eastBank = new ArrayList<Person>();
+			int people = 2 + random.nextInt(8);
+			for(int i=0; i<people; i++)
+				(run % 2 == 0 || random.nextBoolean() ? westBank : eastBank).add(new Person(1 + random.nextInt(10), "P" + i));
+			specs.add(new ProblemSpec(westBank, eastBank, 2 + random.nextInt(3), random.nextBoolean() ? TorchDirection.WEST : TorchDirection.EAST, false));
+		}
+
+		int mismatches = 0, badPaths = 0;
+		for(ProblemSpec spec : specs)
+			cache.solve(spec, TestSolutionCache::search);
+
+		long hitNanos = 0;
+		for(ProblemSpec spec : specs)
+		{
+			ProblemSpec renamed = rename(spec, random);
+			long started = System.nanoTime();
+			Path path = cache.lookup(renamed);
+			hitNanos += System.nanoTime() - started;
+
+			Path expected = search(renamed);
+			if((expected == null) != (path == null) || (path != null && path.cost != expected.cost))
+			{
+				mismatches++;
+				System.out.println(String.format("MISMATCH %s -> %s, Astar: %s", renamed, path == null ? null : path.cost, expected == null ? null : expected.cost));
+			}
+			if(path != null && !PathReplay.replays(renamed, path))
+			{
+				badPaths++;
+				System.out.println(String.format("BAD PATH %s", renamed));
+			}
+		}
+		System.out.println(String.format("Memory: %s", cache));
+		System.out.println(String.format("Mean Hit: %.1f microseconds", hitNanos / 1e3 / specs.size()));
+
+		SolutionCache reopened = new SolutionCache(1000, directory);
+		for(ProblemSpec spec : specs)
+			reopened.lookup(rename(spec, random));
+		System.out.println(String.format("Reopened: %s", reopened));
+
+		SolutionCache small = new SolutionCache(10);
+		for(ProblemSpec spec : specs)
+			small.solve(spec, TestSolutionCache::search);
+		System.out.println(String.format("Small: %s", small));
+
+		try (java.util.stream.Stream<java.nio.file.Path> files = Files.list(directory))
+		{
+			files.forEach(file -> file.toFile().delete());
+		}
+		Files.delete(directory);
+
+		System.out.println(String.format("Mismatched Costs: %d\nBad Paths: %d", mismatches, badPaths));
+	}
+
+	private static Path search(ProblemSpec spec)
+	{
+		return new Astar(spec.getInitialState(), spec.getGoalState()).search();
+	}
+
+	/**
+	 * Give everyone a new name and shuffle the order they are listed in.
+	 */
+	private static ProblemSpec rename(ProblemSpec spec, Random random)
+	{
+		List<Person> westBank = new ArrayList<Person>(), eastBank = new ArrayList<Person>();
+		for(Person person : spec.getWest())
+			westBank.add(new Person(person.getTime(), "W" + random.nextInt(1000)));
+		for(Person person : spec.getEast())
+			eastBank.add(new Person(person.getTime(), "E" + random.nextInt(1000)));
+		Collections.shuffle(westBank, random);
+		Collections.shuffle(eastBank, random);
+		return new ProblemSpec(westBank, eastBank, spec.getCapacity(), spec.getTorchLocation(), false);
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * The TestSolveProblem class runs the command line solver on the basic and
+ * advanced problems, on problems read from standard input and with every engine,
+ * and checks the costs it prints and the status it exits with, including for
+ * arguments it cannot understand and a problem with no solution.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import btp.SolveProblem;
+
+public class TestSolveProblem
+{
+	private static int failures;
+
+	public static void main(String[] args) throws IOException
+	{
+		check("basic", SolveProblem.SOLVED, "Solution Cost: 15.0", "", "basic");
+		check("advanced as csv", SolveProblem.SOLVED, "0,19,47,", "", "-f", "csv", "advanced");
+		check("standard input", SolveProblem.SOLVED, "{\"index\":1,\"cost\":15,", "# two problems\n2;W;A:1,B:2;\n\n2;W;Adam:1,Ben:2,Claire:5,Doris:8;\n", "-f", "jsonl");
+		check("pruned and symmetric", SolveProblem.SOLVED, "0,11,", "", "-p", "-s", "-f", "csv", "2;W;A:1,B:1,C:5,D:5,E:1;");
+
+		String[] engines = {"astar", "compact", "ida", "rbfs", "bidirectional", "parallel", "external"};
+		String[] heuristics = {"max", "trip-count", "slowest-crossing", "torch-side", "none"};
+		for(int i=0; i<engines.length; i++)
+			check(engines[i], SolveProblem.SOLVED, ",19,", "", "-e", engines[i], "-h", heuristics[i % heuristics.length], "-f", "csv", "advanced");
+
+		check("no solution", SolveProblem.UNSOLVABLE, "No solution.", "", "1;W;A:1,B:2;");
+		check("unknown option", SolveProblem.USAGE_ERROR, "", "", "--fast", "basic");
+		check("unknown engine", SolveProblem.USAGE_ERROR, "", "", "-e", "dfs", "basic");
+		check("missing value", SolveProblem.USAGE_ERROR, "", "", "basic", "-f");
+		check("bad problem", SolveProblem.USAGE_ERROR, "", "", "2;N;A:1;");
+
+		System.out.println(String.format("Failures: %d", failures));
+	}
+
+	/**
+	 * Run the solver and check its status and that what it printed contains the expected text.
+	 */
+	private static void check(String name, int status, String expected, String input, String... args) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream(), err = new ByteArrayOutputStream();
+		int exit = SolveProblem.run(args, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+		String printed = out.toString(StandardCharsets.UTF_8);
+
+		if(exit != status || !printed.contains(expected))
+		{
+			failures++;
+			System.out.println(String.format("FAILED %s: exit %d, expected %d\n%s%s", name, exit, status, printed, err.toString(StandardCharsets.UTF_8)));
+		}
+		else
+			System.out.println(String.format("%s: exit %d", name, exit));
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * The TestSolverDaemon class starts a solver on a free port and sends it the
+ * basic and advanced problems over HTTP, then submits the same large problem
+ * many times at once, which should be solved only once, and many small problems
+ * at once, which should be solved in batches. Every cost should match the one
+ * found without the solver, and problems it cannot read should be refused. A
+ * request not solved within the timeout should be answered 503 without keeping
+ * the solver from answering the next one.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import btp.*;
+
+public class TestSolverDaemon
+{
+	private static int failures;
+
+	public static void main(String[] args) throws Exception
+	{
+		try (SolverDaemon daemon = new SolverDaemon(0, 2))
+		{
+			String problems = ProblemReader.format(RunProblem.configureBasicProblem()) + "\n" + ProblemReader.format(RunProblem.configureAdvancedProblem()) + "\n";
+			String answer = post(daemon, "?format=csv", problems, 200);
+			check("basic and advanced over HTTP", answer.contains("\n0,15,") && answer.contains("\n1,19,"), answer);
+			check("unreadable problem refused", post(daemon, "", "2;N;A:1;", 400) != null, "");
+			check("unknown format refused", post(daemon, "?format=xml", problems, 400) != null, "");
+
+			// The first of these is still being solved when the rest arrive
+			Random random = new Random(3038);
+			List<Person> westBank = new ArrayList<Person>();
+			for(int i=0; i<14; i++)
+				westBank.add(new Person(1 + random.nextInt(100), "P" + i));
+			ProblemSpec large = new ProblemSpec(westBank, new ArrayList<Person>(), 3, TorchDirection.WEST, false);
+			double expected = BatchSolver.solveOne(0, large).getCost();
+
+			long coalesced = daemon.getCoalesced();
+			List<CompletableFuture<BatchResult>> same = new ArrayList<CompletableFuture<BatchResult>>();
+			for(int i=0; i<8; i++)
+				same.add(daemon.submit(large));
+			for(CompletableFuture<BatchResult> result : same)
+				check("coalesced cost", result.get().getCost() == expected, String.format("%s, expected %s", result.get().getCost(), expected));
+			check("identical problems coalesced", daemon.getCoalesced() - coalesced == 7, String.format("%d coalesced", daemon.getCoalesced() - coalesced));
+
+			// Small problems submitted together share batches
+			long batches = daemon.getBatches();
+			List<ProblemSpec> specs = new ArrayList<ProblemSpec>();
+			List<CompletableFuture<BatchResult>> results = new ArrayList<CompletableFuture<BatchResult>>();
+			for(int run=0; run<200; run++)
+			{
+				List<Person> west = new ArrayList<Person>();
+				int people = 1 + random.nextInt(SolverDaemon.SMALL_ROSTER);
+				for(int i=0; i<people; i++)
+					west.add(new Person(1 + random.nextInt(30), "P" + i));
+				ProblemSpec spec = new ProblemSpec(west, new ArrayList<Person>(), 2 + random.nextInt(3), TorchDirection.WEST, false);
+				specs.add(spec);
+				results.add(daemon.submit(spec));
+			}
+			for(int i=0; i<specs.size(); i++)
+			{
+				double cost = BatchSolver.solveOne(0, specs.get(i)).getCost();
+				check("batched cost", results.get(i).get().getCost() == cost, String.format("%s: %s, expected %s", specs.get(i), results.get(i).get().getCost(), cost));
+			}
+			check("small problems batched", daemon.getBatches() - batches < specs.size(), String.format("%d batches", daemon.getBatches() - batches));
+
+			// A request that is not solved in time is answered 503 while the solver still answers others
+			daemon.setTimeout(TimeUnit.MILLISECONDS.toNanos(1));
+			westBank.add(new Person(1 + random.nextInt(100), "P14"));
+			check("slow request timed out", post(daemon, "", ProblemReader.format(new ProblemSpec(westBank, new ArrayList<Person>(), 3, TorchDirection.WEST, false)), 503) != null, "");
+			daemon.setTimeout(TimeUnit.SECONDS.toNanos(60));
+			answer = post(daemon, "?format=csv", problems, 200);
+			check("answered after a timeout", answer != null && answer.contains("\n0,15,"), String.valueOf(answer));
+			check("timeout counted", daemon.getTimeouts() == 1, String.format("%d timeouts", daemon.getTimeouts()));
+
+			System.out.println(String.format("Solver: %s", daemon));
+		}
+
+		SolverDaemon closed = new SolverDaemon(0, 1);
+		closed.close();
+		try
+		{
+			closed.submit(RunProblem.configureBasicProblem());
+			check("closed solver refuses problems", false, "");
+		}
+		catch(IllegalStateException refused)
+		{
+			// Closed
+		}
+		System.out.println(String.format("Failures: %d", failures));
+	}
+
+	/**
+	 * Post problems to the solver and return its answer if it has the expected status.
+	 */
+	private static String post(SolverDaemon daemon, String query, String body, int status) throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection) new URL(String.format("http://127.0.0.1:%d/solve%s", daemon.getPort(), query)).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		try (OutputStream out = connection.getOutputStream())
+		{
+			out.write(body.getBytes(StandardCharsets.UTF_8));
+		}
+
+		int code = connection.getResponseCode();
+		ByteArrayOutputStream answer = new ByteArrayOutputStream();
+		try (InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream())
+		{
+			if(in != null)
+				in.transferTo(answer);
+		}
+		if(code != status)
+		{
+			failures++;
+			System.out.println(String.format("STATUS %d, expected %d: %s", code, status, answer.toString(StandardCharsets.UTF_8)));
+			return null;
+		}
+		return answer.toString(StandardCharsets.UTF_8);
+	}
+
+	private static void check(String name, boolean passed, String detail)
+	{
+		if(!passed)
+		{
+			failures++;
+			System.out.println(String.format("FAILED %s: %s", name, detail));
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * The TestSymmetry class solves random rosters with many repeated crossing times,
+ * with and without treating people of the same time as interchangeable, which
+ * should cost the same whether everyone starts on one bank or people swap banks.
+ * Every named path is replayed to check that the people in each action really
+ * are with the torch, that the costs add up and that everyone ends on the other
+ * bank. People of the same time starting on different banks must not stand in
+ * for each other.
+ * @author Kyle McPherson
+ */
+
+package tests;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import cm3038.search.ActionStatePair;
+import cm3038.search.Path;
+import btp.*;
+
+public class TestSymmetry
+{
+	public static void main(String[] args)
+	{
+		Random random = new Random(3038);
+		int mismatches = 0, badPaths = 0;
+		long plainNodes = 0, symmetricNodes = 0;
+
+		for(int run=0; run<150; run++)
+		{
+			List<Person> westBank = new ArrayList<Person>();
+			List<Person> eastBank = new ArrayList<Person>();
+			int people = 2 + random.nextInt(9);
+			for(int i=0; i<people; i++)
+				(run % 3 != 0 || random.nextBoolean() ? westBank : eastBank).add(new Person(1 + random.nextInt(3) * 4, "P" + i));
+
+			int capacity = 2 + random.nextInt(2);
+			boolean pruned = random.nextBoolean();
+			ProblemSpec plain = new ProblemSpec(westBank, eastBank, capacity, TorchDirection.WEST, pruned, false);
+			ProblemSpec symmetric = new ProblemSpec(westBank, eastBank, capacity, TorchDirection.WEST, pruned, true);
+
+			BatchResult plainResult = BatchSolver.solveOne(run, plain);
+			BatchResult symmetricResult = BatchSolver.solveOne(run, symmetric);
+
+			if(plainResult.getCost() != symmetricResult.getCost())
+			{
+				mismatches++;
+				System.out.println(String.format("MISMATCH %s capacity %d -> plain: %s, symmetric: %s", plain, capacity, plainResult.getCost(), symmetricResult.getCost()));
+			}
+
+			if(symmetricResult.getPath() != null && !PathReplay.replays(symmetric, symmetricResult.getPath()))
+			{
+				badPaths++;
+				System.out.println(String.format("BAD PATH %s", symmetric));
+			}
+
+			// The closed form is used for the plain classic problems, so only count searches
+			if(plainResult.getNodes() > 0)
+			{
+				plainNodes += plainResult.getNodes();
+				symmetricNodes += symmetricResult.getNodes();
+			}
+		}
+
+		// A and B share a time but start on different banks, so they still have to swap
+		ProblemSpec mixed = ProblemReader.parse("2;W;A:3,C:1;B:3", false);
+		ProblemSpec mixedSymmetric = new ProblemSpec(mixed.getWest(), mixed.getEast(), 2, TorchDirection.WEST, false, true);
+		BatchResult mixedResult = BatchSolver.solveOne(0, mixedSymmetric);
+		if(mixedResult.getCost() != 7)
+		{
+			mismatches++;
+			System.out.println(String.format("MISMATCH %s -> symmetric: %s, expected 7.0", mixedSymmetric, mixedResult.getCost()));
+		}
+		if(mixedResult.getPath() == null || !PathReplay.replays(mixedSymmetric, mixedResult.getPath()))
+		{
+			badPaths++;
+			System.out.println(String.format("BAD PATH %s", mixedSymmetric));
+		}
+
+		Set<Person> tied = new LinkedHashSet<Person>();
+		tied.add(new Person(3, "A")); tied.add(new Person(3, "B")); tied.add(new Person(1, "C"));
+
+		System.out.println(String.format("Nodes Explored: plain %d, symmetric %d", plainNodes, symmetricNodes));
+		System.out.println(String.format("Mismatched Costs: %d\nBad Named Paths: %d", mismatches, badPaths));
+		System.out.println(String.format("Sorted with ties: %s", RunProblem.sortListByTime(tied)));
+	}
+}